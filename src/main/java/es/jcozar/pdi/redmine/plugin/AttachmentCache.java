@@ -0,0 +1,339 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Remembers the attachments already on Redmine by the SHA-256 hash of their
+ * content, so a file attached again is referenced instead of uploaded again.
+ *
+ * The hash of a file is memoized by path, size and modification time. An
+ * upload is only remembered once the issue it was sent with is created, its
+ * attachment id being the numeric prefix of the upload token. Meanwhile its
+ * content is claimed, so the same content attached by another row waits for
+ * it instead of being uploaded again.
+ *
+ * The cache can be kept in a local file to survive between runs. The file
+ * holds the memoized hashes followed by the known attachments.
+ */
+public class AttachmentCache {
+
+	private static final int MAGIC = 0x52414331; // "RAC1"
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Map<String, FileHash> hashes = new HashMap<String, FileHash>();
+	private final Map<String, Reference> attachments = new HashMap<String, Reference>();
+	private final Map<String, String> uploads = new HashMap<String, String>();
+	private final Set<String> claimed = new HashSet<String>();
+	private final File file;
+
+	/**
+	 * An attachment on Redmine.
+	 */
+	public static class Reference {
+
+		private final int id;
+		private final String filename;
+
+		Reference(int id, String filename) {
+			this.id = id;
+			this.filename = filename;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getFilename() {
+			return filename;
+		}
+	}
+
+	private static class FileHash {
+
+		private final long size;
+		private final long modified;
+		private final String hash;
+
+		FileHash(long size, long modified, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * @param file the file keeping the cache between runs, null to keep it in memory only
+	 */
+	public AttachmentCache(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * @return the hex SHA-256 hash of the file content, read again only when
+	 *         the file size or modification time changed
+	 */
+	public String hash(File content) throws IOException {
+		String path = content.getAbsolutePath();
+		long size = content.length();
+		long modified = content.lastModified();
+		synchronized (this) {
+			FileHash known = hashes.get(path);
+			if (known != null && known.size == size && known.modified == modified) {
+				return known.hash;
+			}
+		}
+
+		String hash = digest(content);
+		synchronized (this) {
+			hashes.put(path, new FileHash(size, modified, hash));
+		}
+		return hash;
+	}
+
+	/**
+	 * @return the hex SHA-256 hash of an in-memory content
+	 */
+	public static String hash(byte[] content) {
+		MessageDigest digest = newDigest();
+		digest.update(content);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @return the attachment holding the content, or null if none is known
+	 */
+	public synchronized Reference get(String hash) {
+		return attachments.get(hash);
+	}
+
+	/**
+	 * Claims the upload of the content, unless another upload of it is under
+	 * way. The claim ends when the upload is attached or released.
+	 * 
+	 * @return true if the caller is to upload the content
+	 */
+	public synchronized boolean claim(String hash) {
+		return claimed.add(hash);
+	}
+
+	/**
+	 * Waits for the claim of the content to end, at most the given time.
+	 * 
+	 * @return the attachment holding the content, or null if the claimed
+	 *         upload was not attached
+	 */
+	public synchronized Reference await(String hash, long timeout) throws InterruptedException {
+		long end = System.currentTimeMillis() + timeout;
+		long left = timeout;
+		while (claimed.contains(hash) && left > 0) {
+			wait(left);
+			left = end - System.currentTimeMillis();
+		}
+		return attachments.get(hash);
+	}
+
+	/**
+	 * Records the upload of the content, until the issue it is sent with is
+	 * created.
+	 */
+	public synchronized void uploaded(String token, String hash) {
+		uploads.put(token, hash);
+	}
+
+	/**
+	 * @return the hash of the content of an upload not attached yet, or null
+	 */
+	public synchronized String hashOf(String token) {
+		return uploads.get(token);
+	}
+
+	/**
+	 * Records the upload as an attachment of a created issue.
+	 */
+	public synchronized void attached(String token, String filename) {
+		String hash = uploads.remove(token);
+		int dot = token.indexOf('.');
+		if (hash == null) {
+			return;
+		}
+		release(hash);
+		if (dot <= 0) {
+			return;
+		}
+		try {
+			attachments.put(hash, new Reference(Integer.parseInt(token.substring(0, dot)), filename));
+		} catch (NumberFormatException e) {
+			// token format of an older Redmine, the attachment id is unknown
+		}
+	}
+
+	/**
+	 * Forgets an upload that was not attached, the issue it was sent with
+	 * failed. Does nothing once the upload is attached.
+	 */
+	public synchronized void discarded(String token) {
+		String hash = uploads.remove(token);
+		if (hash != null) {
+			release(hash);
+		}
+	}
+
+	/**
+	 * Ends the claim of the content, waking up the uploads waiting for it.
+	 */
+	public synchronized void release(String hash) {
+		if (claimed.remove(hash)) {
+			notifyAll();
+		}
+	}
+
+	public synchronized int size() {
+		return attachments.size();
+	}
+
+	/**
+	 * Restores the hashes and attachments saved by a previous run.
+	 */
+	public synchronized void load() throws KettleException {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new KettleException("File " + file + " is not an attachment cache file");
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					String path = in.readUTF();
+					long size = in.readLong();
+					long modified = in.readLong();
+					hashes.put(path, new FileHash(size, modified, in.readUTF()));
+				}
+				count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					String hash = in.readUTF();
+					int id = in.readInt();
+					attachments.put(hash, new Reference(id, in.readUTF()));
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new KettleException("Unable to read attachment cache file " + file, e);
+		}
+	}
+
+	/**
+	 * Writes the hashes and attachments, replacing the file atomically.
+	 */
+	public synchronized void save() throws KettleException {
+		if (file == null) {
+			return;
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(hashes.size());
+				for (Map.Entry<String, FileHash> entry : hashes.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeLong(entry.getValue().size);
+					out.writeLong(entry.getValue().modified);
+					out.writeUTF(entry.getValue().hash);
+				}
+				out.writeInt(attachments.size());
+				for (Map.Entry<String, Reference> entry : attachments.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeInt(entry.getValue().id);
+					out.writeUTF(entry.getValue().filename);
+				}
+			} finally {
+				out.close();
+			}
+			if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+				throw new IOException("Unable to replace " + file);
+			}
+		} catch (IOException e) {
+			throw new KettleException("Unable to write attachment cache file " + file, e);
+		}
+	}
+
+	private static String digest(File content) throws IOException {
+		MessageDigest digest = newDigest();
+		FileInputStream in = new FileInputStream(content);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			in.close();
+		}
+		return toHex(digest.digest());
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.File;
+
+import org.apache.http.HttpEntity;
+
+import es.jcozar.pdi.redmine.plugin.utils.BandwidthLimiter;
+import es.jcozar.pdi.redmine.plugin.utils.ByteArrayUploadEntity;
+import es.jcozar.pdi.redmine.plugin.utils.FileUploadEntity;
+
+/**
+ * The content of an attachment: a file on disk, or the value of a row field
+ * uploaded straight from memory.
+ */
+public class AttachmentContent {
+
+	private final File file;
+	private final byte[] bytes;
+	private final String filename;
+	private final String contentType;
+
+	private AttachmentContent(File file, byte[] bytes, String filename, String contentType) {
+		this.file = file;
+		this.bytes = bytes;
+		this.filename = filename;
+		this.contentType = contentType;
+	}
+
+	/**
+	 * @param file        the file to attach
+	 * @param contentType the content type, null or empty to let Redmine guess it
+	 */
+	public static AttachmentContent fromFile(File file, String contentType) {
+		return new AttachmentContent(file, null, file.getName(), contentType);
+	}
+
+	/**
+	 * @param filename    the name of the attachment
+	 * @param contentType the content type, null or empty to let Redmine guess it
+	 * @param bytes       the content, sent without copying it
+	 */
+	public static AttachmentContent fromBytes(String filename, String contentType, byte[] bytes) {
+		return new AttachmentContent(null, bytes, filename, contentType);
+	}
+
+	/**
+	 * @return the file to attach, null when the content comes from a field
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the content, null when it comes from a file
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public long getLength() {
+		return file != null ? file.length() : bytes.length;
+	}
+
+	/**
+	 * @return the request body uploading the content
+	 */
+	public HttpEntity toEntity(BandwidthLimiter limiter) {
+		return file != null ? new FileUploadEntity(file, limiter) : new ByteArrayUploadEntity(bytes, limiter);
+	}
+
+	@Override
+	public String toString() {
+		return file != null ? file.getPath() : filename + " (" + bytes.length + " bytes)";
+	}
+}
@@ -0,0 +1,193 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.taskadapter.redmineapi.RedmineException;
+import com.taskadapter.redmineapi.RedmineFormatException;
+
+/**
+ * Downloads attachments into a directory, each to a file named after its id
+ * and file name.
+ *
+ * The content is streamed from the response to the file through a fixed
+ * size buffer, so concurrent downloads hold one buffer each whatever the size
+ * of the files. It is written to a temporary file first, renamed once the
+ * size, and the checksum when Redmine sends it, are verified. A file already
+ * on disk with the same size and checksum is not downloaded again.
+ */
+public class AttachmentDownloader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final RedmineRestClient client;
+	private final File directory;
+
+	/**
+	 * @param client    the client the content is read with
+	 * @param directory the directory the files are written to
+	 */
+	public AttachmentDownloader(RedmineRestClient client, File directory) {
+		this.client = client;
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the local file of the attachment
+	 */
+	public File getFile(RemoteAttachment attachment) {
+		return new File(directory, attachment.getId() + "-" + attachment.getFileName().replaceAll("[\\\\/:*?\"<>|]", "_"));
+	}
+
+	/**
+	 * Downloads the attachment, unless its file is already on disk.
+	 * 
+	 * @return false when the file on disk already matched
+	 */
+	public boolean download(final RemoteAttachment attachment) throws RedmineException, IOException {
+		final File file = getFile(attachment);
+		if (matches(file, attachment)) {
+			return false;
+		}
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Unable to create " + directory);
+		}
+		// a name of its own, two downloads of the same attachment do not share it
+		final File temp = File.createTempFile("attachment-" + attachment.getId() + "-", ".part", directory);
+		try {
+			client.getUrl(attachment.getContentUrl(), new RedmineRestClient.ResponseReader<Void>() {
+				public Void read(InputStream content) throws IOException, RedmineException {
+					write(content, temp, attachment);
+					return null;
+				}
+			});
+			if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+				throw new IOException("Unable to replace " + file);
+			}
+		} finally {
+			temp.delete();
+		}
+		return true;
+	}
+
+	/**
+	 * Copies the content to the file, checking its size and checksum.
+	 */
+	private static void write(InputStream content, File file, RemoteAttachment attachment)
+			throws IOException, RedmineException {
+		MessageDigest digest = newDigest(attachment.getDigest());
+		ReadableByteChannel source = Channels.newChannel(content);
+		FileOutputStream out = new FileOutputStream(file);
+		long size = 0;
+		try {
+			FileChannel channel = out.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			while (source.read(buffer) != -1) {
+				buffer.flip();
+				if (digest != null) {
+					digest.update(buffer);
+					buffer.rewind();
+				}
+				while (buffer.hasRemaining()) {
+					size += channel.write(buffer);
+				}
+				buffer.clear();
+			}
+		} finally {
+			out.close();
+		}
+		if (attachment.getFileSize() >= 0 && size != attachment.getFileSize()) {
+			throw new RedmineFormatException("Downloaded " + size + " bytes of " + attachment.getFileSize()
+					+ " for " + attachment);
+		}
+		if (digest != null && !toHex(digest.digest()).equalsIgnoreCase(attachment.getDigest())) {
+			throw new RedmineFormatException("Checksum mismatch downloading " + attachment);
+		}
+	}
+
+	/**
+	 * @return whether the file holds the content of the attachment: same size
+	 *         and, when Redmine sends it, same checksum
+	 */
+	private static boolean matches(File file, RemoteAttachment attachment) throws IOException {
+		if (!file.isFile() || file.length() != attachment.getFileSize()) {
+			return false;
+		}
+		MessageDigest digest = newDigest(attachment.getDigest());
+		if (digest == null) {
+			return true;
+		}
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		} finally {
+			in.close();
+		}
+		return toHex(digest.digest()).equalsIgnoreCase(attachment.getDigest());
+	}
+
+	/**
+	 * Redmine digests are MD5, or SHA-256 in recent versions.
+	 * 
+	 * @return the digest the checksum was computed with, null when unknown
+	 */
+	private static MessageDigest newDigest(String checksum) {
+		try {
+			if (checksum != null && checksum.length() == 32) {
+				return MessageDigest.getInstance("MD5");
+			}
+			if (checksum != null && checksum.length() == 64) {
+				return MessageDigest.getInstance("SHA-256");
+			}
+			return null;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+}
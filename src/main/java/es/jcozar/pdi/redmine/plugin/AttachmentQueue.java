@@ -0,0 +1,186 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import com.taskadapter.redmineapi.RedmineException;
+import com.taskadapter.redmineapi.RedmineTransportException;
+
+/**
+ * Attaches files to issues already created, in the background. Jobs run on
+ * their own workers, so creating an issue no longer waits for its uploads.
+ * 
+ * The queue is bounded: submitting blocks while it is full, which holds the
+ * step back instead of buffering every pending upload. Transport failures are
+ * retried with a doubling delay. Jobs still failing are kept, one per issue,
+ * for the step thread to report.
+ */
+public class AttachmentQueue {
+
+	/**
+	 * The work attaching the files of an issue. A retried job runs again on the
+	 * same instance, so it may keep the uploads already sent.
+	 */
+	public interface Job {
+		void run() throws RedmineException;
+	}
+
+	/**
+	 * A job that failed for good.
+	 */
+	public static class Failure {
+
+		private final int issueId;
+		private final String description;
+		private final RedmineException cause;
+
+		private Failure(int issueId, String description, RedmineException cause) {
+			this.issueId = issueId;
+			this.description = description;
+			this.cause = cause;
+		}
+
+		public int getIssueId() {
+			return issueId;
+		}
+
+		/**
+		 * @return the files the job was attaching
+		 */
+		public String getDescription() {
+			return description;
+		}
+
+		public RedmineException getCause() {
+			return cause;
+		}
+	}
+
+	private final ExecutorService executor;
+	private final Semaphore slots;
+	private final int capacity;
+	private final int retries;
+	private final long retryDelay;
+	private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<Failure>();
+
+	/**
+	 * @param threadName the name prefix of the worker threads
+	 * @param threads    the number of workers
+	 * @param capacity   the maximum number of jobs queued or running
+	 * @param retries    the number of times a failed job is run again
+	 * @param retryDelay the delay before the first retry, in milliseconds
+	 */
+	public AttachmentQueue(final String threadName, int threads, int capacity, int retries, long retryDelay) {
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadName + "-" + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.capacity = Math.max(1, capacity);
+		this.slots = new Semaphore(this.capacity);
+		this.retries = Math.max(0, retries);
+		this.retryDelay = retryDelay;
+	}
+
+	/**
+	 * Queues a job, blocking while the queue is full.
+	 * 
+	 * @param issueId     the issue receiving the files
+	 * @param description the files, for the failure report
+	 */
+	public void submit(final int issueId, final String description, final Job job) throws InterruptedException {
+		slots.acquire();
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						execute(issueId, description, job);
+					} finally {
+						slots.release();
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			slots.release();
+			throw e;
+		}
+	}
+
+	private void execute(int issueId, String description, Job job) {
+		long delay = retryDelay;
+		for (int attempt = 0;; attempt++) {
+			try {
+				job.run();
+				return;
+			} catch (RedmineTransportException e) {
+				// the connection or the server failed, worth another try
+				if (attempt >= retries) {
+					failures.add(new Failure(issueId, description, e));
+					return;
+				}
+			} catch (RedmineException e) {
+				failures.add(new Failure(issueId, description, e));
+				return;
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failures.add(new Failure(issueId, description, new RedmineException("Interrupted while attaching " + description, e)));
+				return;
+			}
+			delay *= 2;
+		}
+	}
+
+	/**
+	 * @return the next failure to report, null if none
+	 */
+	public Failure pollFailure() {
+		return failures.poll();
+	}
+
+	/**
+	 * Waits until every queued job has finished.
+	 */
+	public void await() throws InterruptedException {
+		slots.acquire(capacity);
+		slots.release(capacity);
+	}
+
+	/**
+	 * Stops the workers, abandoning the jobs not yet finished.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,232 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Binary file holding the actions computed by the plan mode, executed later by
+ * the apply mode without reading Redmine again.
+ *
+ * The file starts with a header holding the row meta, followed by one record
+ * per row: action, target issue id, JSON payload of the call and the row
+ * data. Attachments are read again from the row when the plan is applied.
+ */
+public class ChangePlan {
+
+	private static final int MAGIC = 0x52504C31; // "RPL1"
+
+	/**
+	 * Planned actions.
+	 */
+	public static final byte CREATE = 1;
+	public static final byte UPDATE = 2;
+	public static final byte SKIP = 3;
+	public static final byte CONFLICT = 4;
+
+	private static final String[] ACTION_NAMES = { null, "create", "update", "skip", "conflict" };
+
+	private ChangePlan() {
+	}
+
+	/**
+	 * @return the name of an action, as written to the outcome field by the
+	 *         plan mode
+	 */
+	public static String getActionName(byte action) {
+		return ACTION_NAMES[action];
+	}
+
+	/**
+	 * A planned row.
+	 */
+	public static class Entry {
+
+		private final byte action;
+		private final int issueId;
+		private final String payload;
+		private final Object[] row;
+
+		/**
+		 * @param action  one of the action constants
+		 * @param issueId the existing issue the action targets, 0 if none
+		 * @param payload the issue attributes to send as JSON, null if none
+		 * @param row     the input row
+		 */
+		public Entry(byte action, int issueId, String payload, Object[] row) {
+			this.action = action;
+			this.issueId = issueId;
+			this.payload = payload;
+			this.row = row;
+		}
+
+		public byte getAction() {
+			return action;
+		}
+
+		public int getIssueId() {
+			return issueId;
+		}
+
+		public String getPayload() {
+			return payload;
+		}
+
+		public Object[] getRow() {
+			return row;
+		}
+	}
+
+	/**
+	 * Sequential writer of a plan file, replacing any previous plan.
+	 */
+	public static class Writer implements Closeable {
+
+		private final DataOutputStream out;
+		private final RowMetaInterface rowMeta;
+		private long written;
+
+		public Writer(File file, RowMetaInterface rowMeta) throws KettleException {
+			this.rowMeta = rowMeta;
+			try {
+				if (file.getParentFile() != null) {
+					file.getParentFile().mkdirs();
+				}
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+				out.writeInt(MAGIC);
+				rowMeta.writeMeta(out);
+			} catch (IOException e) {
+				throw new KettleException("Unable to open plan file " + file, e);
+			}
+		}
+
+		public void write(Entry entry) throws KettleException {
+			try {
+				out.writeByte(entry.getAction());
+				out.writeInt(entry.getIssueId());
+				writeString(out, entry.getPayload());
+				rowMeta.writeData(out, entry.getRow());
+				written++;
+			} catch (IOException e) {
+				throw new KettleException("Unable to write plan record", e);
+			}
+		}
+
+		/**
+		 * @return the number of rows planned
+		 */
+		public long getWritten() {
+			return written;
+		}
+
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	/**
+	 * Sequential reader of a plan file.
+	 */
+	public static class Reader implements Closeable {
+
+		private final DataInputStream in;
+		private final RowMetaInterface rowMeta;
+
+		public Reader(File file) throws KettleException {
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+				if (in.readInt() != MAGIC) {
+					in.close();
+					throw new KettleException("File " + file + " is not a plan file");
+				}
+				rowMeta = new RowMeta(in);
+			} catch (IOException e) {
+				throw new KettleException("Unable to read plan file " + file, e);
+			}
+		}
+
+		public RowMetaInterface getRowMeta() {
+			return rowMeta;
+		}
+
+		/**
+		 * @return the next planned row, or null at end of file
+		 */
+		public Entry next() throws KettleException {
+			byte action;
+			try {
+				action = in.readByte();
+			} catch (EOFException e) {
+				return null;
+			} catch (IOException e) {
+				throw new KettleException("Unable to read plan record", e);
+			}
+			try {
+				int issueId = in.readInt();
+				String payload = readString(in);
+				Object[] row = rowMeta.readData(in);
+				return new Entry(action, issueId, payload, row);
+			} catch (IOException e) {
+				throw new KettleException("Truncated plan record", e);
+			}
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
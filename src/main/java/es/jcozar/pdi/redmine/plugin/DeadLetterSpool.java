@@ -0,0 +1,292 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.pentaho.di.core.exception.KettleEOFException;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+/**
+ * Append-only binary spool for the rows the step could not send to Redmine.
+ *
+ * The file starts with a header holding the row meta, followed by one record
+ * per failed row: attempt count, failure class, failure message and the row
+ * data, all written with the Kettle row serialization. Records are queued by
+ * the step thread and written by a background thread, so a failing row does
+ * not wait on disk I/O.
+ */
+public class DeadLetterSpool implements Closeable {
+
+	private static final int MAGIC = 0x52444C31; // "RDL1"
+
+	private static final int QUEUE_SIZE = 10000;
+
+	private static final Entry POISON = new Entry(null, null, null, 0);
+
+	private final File file;
+	private final RowMetaInterface rowMeta;
+	private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<Entry>(QUEUE_SIZE);
+	private final Thread writer;
+
+	private volatile Exception writeError;
+	private long written;
+
+	/**
+	 * A spooled row.
+	 */
+	public static class Entry {
+
+		private final Object[] row;
+		private final String failureClass;
+		private final String message;
+		private final int attempts;
+
+		public Entry(Object[] row, String failureClass, String message, int attempts) {
+			this.row = row;
+			this.failureClass = failureClass;
+			this.message = message;
+			this.attempts = attempts;
+		}
+
+		public Object[] getRow() {
+			return row;
+		}
+
+		public String getFailureClass() {
+			return failureClass;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		public int getAttempts() {
+			return attempts;
+		}
+	}
+
+	/**
+	 * Opens the spool for appending. If the file already holds records, its row
+	 * layout must match the given one.
+	 *
+	 * @param file    the spool file
+	 * @param rowMeta the layout of the spooled rows
+	 */
+	public DeadLetterSpool(File file, RowMetaInterface rowMeta) throws KettleException {
+		this.file = file;
+		this.rowMeta = rowMeta;
+
+		final DataOutputStream out;
+		try {
+			boolean append = file.exists() && file.length() > 0;
+			if (append) {
+				Reader existing = new Reader(file);
+				try {
+					if (!Arrays.equals(existing.getRowMeta().getFieldNames(), rowMeta.getFieldNames())) {
+						throw new KettleException("Dead letter file " + file + " was written with a different row layout");
+					}
+				} finally {
+					existing.close();
+				}
+			} else if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append), 64 * 1024));
+			if (!append) {
+				out.writeInt(MAGIC);
+				rowMeta.writeMeta(out);
+				out.flush();
+			}
+		} catch (IOException e) {
+			throw new KettleException("Unable to open dead letter file " + file, e);
+		}
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				write(out);
+			}
+		}, "redmine-dead-letter-" + file.getName());
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Queues a failed row. Only blocks if the writer is more than QUEUE_SIZE
+	 * records behind.
+	 */
+	public void append(Object[] row, Throwable failure, int attempts) throws KettleException {
+		if (writeError != null) {
+			throw new KettleException("Unable to write dead letter file " + file, writeError);
+		}
+		try {
+			queue.put(new Entry(row.clone(), failure.getClass().getName(), String.valueOf(failure.getMessage()), attempts));
+			written++;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KettleException("Interrupted while spooling row", e);
+		}
+	}
+
+	/**
+	 * @return the number of rows appended through this instance
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Flushes the pending records and closes the file.
+	 */
+	public void close() throws IOException {
+		try {
+			queue.put(POISON);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (writeError != null) {
+			throw new IOException("Unable to write dead letter file " + file, writeError);
+		}
+	}
+
+	private void write(DataOutputStream out) {
+		try {
+			while (true) {
+				Entry entry = queue.take();
+				if (entry == POISON) {
+					break;
+				}
+				if (writeError != null) {
+					continue;
+				}
+				out.writeInt(entry.getAttempts());
+				out.writeUTF(entry.getFailureClass());
+				writeString(out, entry.getMessage());
+				rowMeta.writeData(out, entry.getRow());
+
+				if (queue.isEmpty()) {
+					out.flush();
+				}
+			}
+		} catch (Exception e) {
+			writeError = e;
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				if (writeError == null) {
+					writeError = e;
+				}
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Sequential reader over a spool file.
+	 */
+	public static class Reader implements Closeable {
+
+		private final DataInputStream in;
+		private final RowMetaInterface rowMeta;
+
+		public Reader(File file) throws KettleException {
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+				if (in.readInt() != MAGIC) {
+					in.close();
+					throw new KettleException("File " + file + " is not a dead letter file");
+				}
+				rowMeta = new RowMeta(in);
+			} catch (IOException e) {
+				throw new KettleException("Unable to read dead letter file " + file, e);
+			}
+		}
+
+		public RowMetaInterface getRowMeta() {
+			return rowMeta;
+		}
+
+		/**
+		 * @return the next spooled row, or null at end of file
+		 */
+		public Entry next() throws KettleException {
+			try {
+				// the file only ends cleanly before the first byte of a record
+				in.mark(1);
+				if (in.read() == -1) {
+					return null;
+				}
+				in.reset();
+			} catch (IOException e) {
+				throw new KettleException("Unable to read dead letter record", e);
+			}
+			try {
+				int attempts = in.readInt();
+				String failureClass = in.readUTF();
+				String message = readString(in);
+				Object[] row = rowMeta.readData(in);
+				return new Entry(row, failureClass, message, attempts);
+			} catch (IOException e) {
+				throw new KettleException("Truncated dead letter record", e);
+			} catch (KettleEOFException e) {
+				throw new KettleException("Truncated dead letter record", e);
+			}
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.pentaho.di.i18n.BaseMessages;
+
+import com.taskadapter.redmineapi.bean.Issue;
+
+/**
+ * Rows sharing the same duplicate key, collected during an aggregation window.
+ * The issue mapped from the first row is the one sent to Redmine, together with
+ * a summary of the whole group.
+ */
+public class IssueAggregate {
+
+	private static final Class<?> PKG = RedmineStep.class; // for i18n purposes
+
+	/**
+	 * Maximum number of distinct descriptions kept as a sample.
+	 */
+	private static final int SAMPLE_SIZE = 5;
+
+	private final String key;
+	private final Issue issue;
+	private final List<Object[]> rows = new ArrayList<Object[]>();
+	private final Set<String> sample = new LinkedHashSet<String>();
+	private final long firstSeen;
+	private long lastSeen;
+
+	public IssueAggregate(String key, Issue issue, long now) {
+		this.key = key;
+		this.issue = issue;
+		this.firstSeen = now;
+		this.lastSeen = now;
+	}
+
+	/**
+	 * Adds a row to the group.
+	 *
+	 * @param row         the input row
+	 * @param description the description mapped from the row
+	 * @param now         arrival time in milliseconds
+	 */
+	public void add(Object[] row, String description, long now) {
+		rows.add(row);
+		lastSeen = now;
+		if (description != null && sample.size() < SAMPLE_SIZE) {
+			sample.add(description);
+		}
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public Issue getIssue() {
+		return issue;
+	}
+
+	public List<Object[]> getRows() {
+		return rows;
+	}
+
+	public int getCount() {
+		return rows.size();
+	}
+
+	public long getFirstSeen() {
+		return firstSeen;
+	}
+
+	public long getLastSeen() {
+		return lastSeen;
+	}
+
+	/**
+	 * Renders the occurrence count, first/last arrival time and the sample of
+	 * distinct descriptions, in Redmine textile.
+	 */
+	public String getSummary() {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		StringBuilder summary = new StringBuilder();
+		summary.append(BaseMessages.getString(PKG, "RedmineStep.Aggregate.Occurrences", getCount(),
+				format.format(new Date(firstSeen)), format.format(new Date(lastSeen))));
+		if (!sample.isEmpty()) {
+			summary.append("\n\n").append(BaseMessages.getString(PKG, "RedmineStep.Aggregate.Sample")).append("\n");
+			for (String value : sample) {
+				summary.append("\n* ").append(value.replace('\n', ' '));
+			}
+		}
+		return summary.toString();
+	}
+}
@@ -0,0 +1,136 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * The position of an issue in the order of its last update: the updated_on
+ * timestamp, with the issue id breaking the ties.
+ *
+ * The latest position read is kept in a local file as the watermark of the
+ * next incremental run. Timestamps are compared as text, which matches their
+ * order as long as they are all in the ISO 8601 UTC form Redmine returns.
+ */
+public class IssueCheckpoint implements Comparable<IssueCheckpoint> {
+
+	private static final int MAGIC = 0x52434B31; // "RCK1"
+
+	private final String updatedOn;
+	private final int id;
+
+	/**
+	 * @param updatedOn the updated_on timestamp of the issue, as returned by Redmine
+	 * @param id        the issue id
+	 */
+	public IssueCheckpoint(String updatedOn, int id) {
+		this.updatedOn = updatedOn;
+		this.id = id;
+	}
+
+	public String getUpdatedOn() {
+		return updatedOn;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int compareTo(IssueCheckpoint other) {
+		int result = updatedOn.compareTo(other.updatedOn);
+		return result != 0 ? result : Integer.compare(id, other.id);
+	}
+
+	/**
+	 * @return the latest of both positions, either may be null
+	 */
+	public static IssueCheckpoint max(IssueCheckpoint a, IssueCheckpoint b) {
+		if (a == null) {
+			return b;
+		}
+		return b == null || a.compareTo(b) >= 0 ? a : b;
+	}
+
+	/**
+	 * @return the position saved by a previous run, null when there is none
+	 */
+	public static IssueCheckpoint load(File file) throws KettleException {
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new KettleException("File " + file + " is not a checkpoint file");
+				}
+				String updatedOn = in.readUTF();
+				return new IssueCheckpoint(updatedOn, in.readInt());
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new KettleException("Unable to read checkpoint file " + file, e);
+		}
+	}
+
+	/**
+	 * Writes the position, replacing the file atomically.
+	 */
+	public void save(File file) throws KettleException {
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeUTF(updatedOn);
+				out.writeInt(id);
+			} finally {
+				out.close();
+			}
+			if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+				throw new IOException("Unable to replace " + file);
+			}
+		} catch (IOException e) {
+			throw new KettleException("Unable to write checkpoint file " + file, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return updatedOn + " #" + id;
+	}
+}
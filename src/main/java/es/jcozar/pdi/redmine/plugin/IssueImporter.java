@@ -0,0 +1,340 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+
+import com.taskadapter.redmineapi.RedmineAuthenticationException;
+import com.taskadapter.redmineapi.RedmineException;
+import com.taskadapter.redmineapi.RedmineFormatException;
+import com.taskadapter.redmineapi.RedmineTransportException;
+import com.taskadapter.redmineapi.bean.Issue;
+
+/**
+ * Bulk creation of issues through the Redmine CSV import (Redmine 4.1+).
+ *
+ * Rows are streamed into a temporary CSV file. The file is then sent through
+ * the import screens: upload, CSV settings, column mapping and run, polled
+ * until the import is finished, and the failed positions are read back from
+ * the result page. The import screens are not part of the REST API and do not
+ * accept API keys, so the importer signs in with a login and password and
+ * keeps its own HTTP session.
+ */
+public class IssueImporter implements Closeable {
+
+	private static final Pattern AUTHENTICITY_TOKEN = Pattern
+			.compile("name=\"authenticity_token\"[^>]*value=\"([^\"]+)\"");
+	private static final Pattern IMPORT_ID = Pattern.compile("/imports/([^/?#]+)");
+	private static final Pattern FAILED_ITEM = Pattern.compile("<td>\\s*(\\d+)\\s*</td>\\s*<td>(.*?)</td>",
+			Pattern.DOTALL);
+	private static final Pattern TAG = Pattern.compile("<[^>]+>");
+
+	private static final String[] COLUMNS = { "subject", "description", "category", "assigned_to" };
+
+	private final String baseUrl;
+	private final File file;
+	private final Writer writer;
+	private final CloseableHttpClient httpClient;
+	private int count;
+
+	/**
+	 * Opens the CSV file the rows are written to.
+	 *
+	 * @param url the Redmine base URL
+	 */
+	public IssueImporter(String url) throws IOException {
+		this.baseUrl = url.endsWith("/") ? url : url + "/";
+		this.file = File.createTempFile("redmine-import", ".csv");
+		this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8),
+				64 * 1024);
+		// the session cookie is kept by this client only
+		this.httpClient = RedmineRestClient.newHttpClient(1);
+		writeLine(COLUMNS);
+	}
+
+	/**
+	 * Appends an issue to the CSV file. Its position in the import is the
+	 * number of issues added before it plus one.
+	 *
+	 * @param issue    the issue mapped from the row
+	 * @param category the category name, null if none
+	 * @param assignee the assignee name or login, null if none
+	 */
+	public void add(Issue issue, String category, String assignee) throws IOException {
+		writeLine(new String[] { issue.getSubject(), issue.getDescription(), category, assignee });
+		count++;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Runs the import and waits for it to finish.
+	 *
+	 * @param login     the Redmine login the import runs as
+	 * @param password  its password
+	 * @param projectId the target project
+	 * @param trackerId the tracker of the imported issues
+	 *
+	 * @return the error message of every failed position, the positions not
+	 *         listed were imported
+	 */
+	public Map<Integer, String> run(String login, String password, int projectId, int trackerId) throws RedmineException {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			throw new RedmineTransportException("Unable to write import file " + file, e);
+		}
+
+		// sign in, the token protects every form of the session
+		String token = authenticityToken(get("login"));
+		List<NameValuePair> form = new ArrayList<NameValuePair>();
+		form.add(new BasicNameValuePair("authenticity_token", token));
+		form.add(new BasicNameValuePair("username", login));
+		form.add(new BasicNameValuePair("password", password));
+		String location = post("login", form);
+		if (location == null || location.contains("/login")) {
+			throw new RedmineAuthenticationException("Redmine rejected the import login " + login);
+		}
+		token = authenticityToken(get("issues/imports/new"));
+
+		// upload the file
+		location = upload(token, projectId);
+		Matcher id = IMPORT_ID.matcher(location == null ? "" : location);
+		if (!id.find()) {
+			throw new RedmineFormatException("Redmine did not create the import, redirected to " + location);
+		}
+		String path = "imports/" + id.group(1);
+
+		// CSV settings
+		form = new ArrayList<NameValuePair>();
+		form.add(new BasicNameValuePair("authenticity_token", token));
+		form.add(new BasicNameValuePair("import_settings[separator]", ","));
+		form.add(new BasicNameValuePair("import_settings[wrapper]", "\""));
+		form.add(new BasicNameValuePair("import_settings[encoding]", "UTF-8"));
+		form.add(new BasicNameValuePair("import_settings[date_format]", "%Y-%m-%d"));
+		post(path + "/settings", form);
+
+		// column mapping, by position in the file
+		form = new ArrayList<NameValuePair>();
+		form.add(new BasicNameValuePair("authenticity_token", token));
+		form.add(new BasicNameValuePair("import_settings[mapping][project_id]", String.valueOf(projectId)));
+		form.add(new BasicNameValuePair("import_settings[mapping][tracker]", "value:" + trackerId));
+		for (int i = 0; i < COLUMNS.length; i++) {
+			form.add(new BasicNameValuePair("import_settings[mapping][" + COLUMNS[i] + "]", String.valueOf(i)));
+		}
+		post(path + "/mapping", form);
+
+		// every run request imports a slice of the file and redirects to itself
+		// until the import is finished
+		form = new ArrayList<NameValuePair>();
+		form.add(new BasicNameValuePair("authenticity_token", token));
+		do {
+			location = post(path + "/run", form);
+		} while (location != null && location.endsWith("/run"));
+
+		Map<Integer, String> failures = new LinkedHashMap<Integer, String>();
+		Matcher item = FAILED_ITEM.matcher(get(path));
+		while (item.find()) {
+			failures.put(Integer.valueOf(item.group(1)), unescape(TAG.matcher(item.group(2)).replaceAll("").trim()));
+		}
+		return failures;
+	}
+
+	/**
+	 * Deletes the CSV file and releases the session.
+	 */
+	public void close() throws IOException {
+		try {
+			writer.close();
+		} finally {
+			try {
+				httpClient.close();
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	private void writeLine(String[] values) throws IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				writer.write(',');
+			}
+			String value = values[i] == null ? "" : values[i];
+			writer.write('"');
+			writer.write(value.replace("\"", "\"\""));
+			writer.write('"');
+		}
+		writer.write("\r\n");
+	}
+
+	/**
+	 * Posts the file as multipart form data, streaming it from disk.
+	 *
+	 * @return the redirect location
+	 */
+	private String upload(String token, int projectId) throws RedmineException {
+		final String boundary = "----redmine-import-" + UUID.randomUUID();
+		final byte[] head = ("--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"authenticity_token\"\r\n\r\n" + token + "\r\n"
+				+ "--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"type\"\r\n\r\nIssueImport\r\n"
+				+ "--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"project_id\"\r\n\r\n" + projectId + "\r\n"
+				+ "--" + boundary + "\r\n"
+				+ "Content-Disposition: form-data; name=\"file\"; filename=\"" + file.getName() + "\"\r\n"
+				+ "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+		final byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+		AbstractHttpEntity entity = new AbstractHttpEntity() {
+			public boolean isRepeatable() {
+				return true;
+			}
+
+			public long getContentLength() {
+				return head.length + file.length() + tail.length;
+			}
+
+			public InputStream getContent() throws IOException {
+				// reopened for every call, so retries send the same bytes again
+				return new SequenceInputStream(Collections.enumeration(Arrays.<InputStream> asList(
+						new ByteArrayInputStream(head), new FileInputStream(file), new ByteArrayInputStream(tail))));
+			}
+
+			public void writeTo(OutputStream out) throws IOException {
+				InputStream in = getContent();
+				try {
+					byte[] buffer = new byte[64 * 1024];
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						out.write(buffer, 0, read);
+					}
+				} finally {
+					in.close();
+				}
+				out.flush();
+			}
+
+			public boolean isStreaming() {
+				return false;
+			}
+		};
+		entity.setContentType("multipart/form-data; boundary=" + boundary);
+
+		HttpPost request = new HttpPost(baseUrl + "imports");
+		request.setEntity(entity);
+		return redirect(request);
+	}
+
+	private String get(String path) throws RedmineException {
+		HttpGet request = new HttpGet(baseUrl + path);
+		try {
+			HttpResponse response = httpClient.execute(request);
+			String content = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+			if (response.getStatusLine().getStatusCode() >= 300) {
+				throw new RedmineTransportException("Server returned HTTP " + response.getStatusLine().getStatusCode()
+						+ " for GET " + request.getURI());
+			}
+			return content;
+		} catch (IOException e) {
+			request.abort();
+			throw new RedmineTransportException("Cannot GET " + request.getURI(), e);
+		}
+	}
+
+	private String post(String path, List<NameValuePair> form) throws RedmineException {
+		HttpPost request = new HttpPost(baseUrl + path);
+		request.setEntity(new UrlEncodedFormEntity(form, StandardCharsets.UTF_8));
+		return redirect(request);
+	}
+
+	/**
+	 * Sends a form expecting a redirect, as every step of the import does.
+	 *
+	 * @return the redirect location
+	 */
+	private String redirect(HttpRequestBase request) throws RedmineException {
+		try {
+			HttpResponse response = httpClient.execute(request);
+			int status = response.getStatusLine().getStatusCode();
+			EntityUtils.consume(response.getEntity());
+			Header location = response.getFirstHeader("Location");
+			if (status < 300 || status >= 400 || location == null) {
+				throw new RedmineTransportException("Server returned HTTP " + status + " for " + request.getMethod() + " "
+						+ request.getURI() + ", the import step was not accepted");
+			}
+			return location.getValue();
+		} catch (IOException e) {
+			request.abort();
+			throw new RedmineTransportException("Cannot " + request.getMethod() + " " + request.getURI(), e);
+		}
+	}
+
+	private static String authenticityToken(String page) throws RedmineException {
+		Matcher token = AUTHENTICITY_TOKEN.matcher(page);
+		if (!token.find()) {
+			throw new RedmineFormatException("No authenticity token found, is the import available on this Redmine?");
+		}
+		return unescape(token.group(1));
+	}
+
+	private static String unescape(String html) {
+		return html.replace("&quot;", "\"").replace("&#39;", "'").replace("&lt;", "<").replace("&gt;", ">")
+				.replace("&amp;", "&");
+	}
+}
@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import com.taskadapter.redmineapi.RedmineException;
+import com.taskadapter.redmineapi.bean.Issue;
+
+/**
+ * The issues a new issue refers to by external key: its parent and the issues
+ * it is related to. They were submitted earlier in the same run, so their
+ * calls may still be running. A new issue only waits for the calls of the
+ * issues it refers to.
+ */
+public class IssueLinks {
+
+	private String parentKey;
+	private Future<PendingCall.Result> parent;
+	private final List<String> relationTypes = new ArrayList<String>();
+	private final List<String> relationKeys = new ArrayList<String>();
+	private final List<Future<PendingCall.Result>> relations = new ArrayList<Future<PendingCall.Result>>();
+
+	/**
+	 * @param key  the external key of the parent
+	 * @param call the call creating the parent
+	 */
+	public void setParent(String key, Future<PendingCall.Result> call) {
+		this.parentKey = key;
+		this.parent = call;
+	}
+
+	/**
+	 * @param type the relation type, as in the API
+	 * @param key  the external key of the related issue
+	 * @param call the call creating the related issue
+	 */
+	public void addRelation(String type, String key, Future<PendingCall.Result> call) {
+		relationTypes.add(type);
+		relationKeys.add(key);
+		relations.add(call);
+	}
+
+	/**
+	 * @return the id of the parent, waiting for it to be created, null if the
+	 *         issue has no parent
+	 */
+	public Integer awaitParent() throws RedmineException {
+		return parent == null ? null : Integer.valueOf(await(parentKey, parent));
+	}
+
+	public int getRelationCount() {
+		return relations.size();
+	}
+
+	public String getRelationType(int index) {
+		return relationTypes.get(index);
+	}
+
+	/**
+	 * @return the id of the related issue, waiting for it to be created
+	 */
+	public int awaitRelation(int index) throws RedmineException {
+		return await(relationKeys.get(index), relations.get(index));
+	}
+
+	/**
+	 * @return the id of the issue created, or matched as duplicate, by the call
+	 */
+	private static int await(String key, Future<PendingCall.Result> call) throws RedmineException {
+		PendingCall.Result result;
+		try {
+			result = call.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RedmineException("Interrupted while waiting for the issue of key " + key, e);
+		} catch (ExecutionException e) {
+			throw new RedmineException("The issue of key " + key + " failed", e.getCause());
+		}
+		Issue target = result.getIssue() != null ? result.getIssue() : result.getDuplicate();
+		if (target == null) {
+			throw new RedmineException("The issue of key " + key + " was not created: " + result.getOutcome(),
+					result.getFailure());
+		}
+		return target.getId();
+	}
+}
@@ -0,0 +1,65 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.util.List;
+
+/**
+ * A page of an issue listing, already mapped to output rows.
+ */
+public class IssuePage {
+
+	private final int offset;
+	private final int totalCount;
+	private final List<Object[]> rows;
+	private final List<IssueCheckpoint> positions;
+
+	/**
+	 * @param offset     the offset of the first issue of the page
+	 * @param totalCount the number of issues of the whole listing
+	 * @param rows       the rows of the page
+	 * @param positions  the update position of the issue of each row
+	 */
+	public IssuePage(int offset, int totalCount, List<Object[]> rows, List<IssueCheckpoint> positions) {
+		this.offset = offset;
+		this.totalCount = totalCount;
+		this.rows = rows;
+		this.positions = positions;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getTotalCount() {
+		return totalCount;
+	}
+
+	public List<Object[]> getRows() {
+		return rows;
+	}
+
+	public List<IssueCheckpoint> getPositions() {
+		return positions;
+	}
+}
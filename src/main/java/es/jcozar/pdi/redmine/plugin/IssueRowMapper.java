@@ -0,0 +1,567 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.pentaho.di.core.row.ValueMetaInterface;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import com.taskadapter.redmineapi.RedmineFormatException;
+
+/**
+ * Maps the issues of a Redmine listing to output rows. Each output field is
+ * bound to an issue attribute, given by its JSON path: "subject", "status.name",
+ * or "custom_fields.ID" for the value of a custom field.
+ * 
+ * Listings are parsed as a stream of tokens: the value of each bound
+ * attribute is converted straight into its row, and the other attributes,
+ * journals and unbound custom fields included, are skipped without being
+ * built. Only the id and updated_on of each issue are always read, for the
+ * incremental checkpoint.
+ * 
+ * The journals of an issue are read the same way, into one row per change
+ * detail bound to the JOURNAL_ATTRIBUTES, and so are its attachments, bound
+ * to the ATTACHMENT_ATTRIBUTES.
+ * 
+ * The date formats are not thread safe, so each thread fetching pages needs
+ * its own mapper.
+ */
+public class IssueRowMapper {
+
+	/**
+	 * The attributes offered by the dialog. Any other custom field may be read
+	 * with its "custom_fields.ID" path.
+	 */
+	public static final String[] ATTRIBUTES = { "id", "project.id", "project.name", "tracker.id", "tracker.name",
+			"status.id", "status.name", "priority.id", "priority.name", "author.id", "author.name", "assigned_to.id",
+			"assigned_to.name", "category.id", "category.name", "fixed_version.id", "fixed_version.name", "parent.id",
+			"subject", "description", "start_date", "due_date", "done_ratio", "is_private", "estimated_hours",
+			"created_on", "updated_on", "closed_on" };
+
+	/**
+	 * The attributes of the journal details, one row per detail. The journal
+	 * attributes are repeated on the rows of each of its details.
+	 */
+	public static final String[] JOURNAL_ATTRIBUTES = { "issue_id", "journal_id", "user.id", "user.name",
+			"created_on", "notes", "property", "name", "old_value", "new_value" };
+
+	/**
+	 * The attributes of the attachments, one row per attachment. The path and
+	 * downloaded attributes are set by the download, not read from Redmine.
+	 */
+	public static final String[] ATTACHMENT_ATTRIBUTES = { "issue_id", "id", "filename", "filesize", "content_type",
+			"description", "content_url", "digest", "author.id", "author.name", "created_on", "path", "downloaded" };
+
+	public static final String CUSTOM_FIELDS = "custom_fields.";
+
+	private static final JsonFactory JSON = new JsonFactory();
+
+	private static final int[] NO_FIELDS = new int[0];
+
+	private final String[] attributes;
+	private final int[] types;
+	private final int rowSize;
+	private final SimpleDateFormat timestampFormat;
+	private final SimpleDateFormat dateFormat;
+
+	// output fields by attribute name, by attribute name inside each nested
+	// object, and by custom field id
+	private final Map<String, int[]> issueFields = new HashMap<String, int[]>();
+	private final Map<String, Map<String, int[]>> objectFields = new HashMap<String, Map<String, int[]>>();
+	private final Map<String, int[]> customFields = new HashMap<String, int[]>();
+
+	/**
+	 * @param attributes the attribute of each output field, in row order
+	 * @param rowSize    the size of the rows to allocate, at least the number of fields
+	 */
+	public IssueRowMapper(String[] attributes, int rowSize) {
+		this.attributes = attributes;
+		this.types = new int[attributes.length];
+		for (int i = 0; i < attributes.length; i++) {
+			types[i] = getType(attributes[i]);
+		}
+		this.rowSize = rowSize;
+		this.timestampFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		this.timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		this.dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		for (int i = 0; i < attributes.length; i++) {
+			String path = attributes[i];
+			int dot = path.indexOf('.');
+			if (path.startsWith(CUSTOM_FIELDS)) {
+				bind(customFields, path.substring(CUSTOM_FIELDS.length()), i);
+			} else if (dot < 0) {
+				bind(issueFields, path, i);
+			} else {
+				String object = path.substring(0, dot);
+				Map<String, int[]> fields = objectFields.get(object);
+				if (fields == null) {
+					fields = new HashMap<String, int[]>();
+					objectFields.put(object, fields);
+				}
+				bind(fields, path.substring(dot + 1), i);
+			}
+		}
+	}
+
+	/**
+	 * Adds the field to those reading the attribute.
+	 */
+	private static void bind(Map<String, int[]> fields, String name, int field) {
+		int[] bound = fields.get(name);
+		int[] extended = bound == null ? new int[1] : Arrays.copyOf(bound, bound.length + 1);
+		extended[extended.length - 1] = field;
+		fields.put(name, extended);
+	}
+
+	/**
+	 * @return the Kettle value type of the attribute
+	 */
+	public static int getType(String attribute) {
+		if ("id".equals(attribute) || attribute.endsWith(".id") || "done_ratio".equals(attribute)
+				|| "issue_id".equals(attribute) || "journal_id".equals(attribute) || "filesize".equals(attribute)) {
+			return ValueMetaInterface.TYPE_INTEGER;
+		}
+		if (attribute.endsWith("_on") || attribute.endsWith("_date")) {
+			return ValueMetaInterface.TYPE_DATE;
+		}
+		if ("estimated_hours".equals(attribute)) {
+			return ValueMetaInterface.TYPE_NUMBER;
+		}
+		if ("is_private".equals(attribute) || "downloaded".equals(attribute)) {
+			return ValueMetaInterface.TYPE_BOOLEAN;
+		}
+		return ValueMetaInterface.TYPE_STRING;
+	}
+
+	/**
+	 * @return the attributes of the output fields, in row order
+	 */
+	public String[] getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * Parses a page of an issue listing.
+	 * 
+	 * @param content the listing response, as it is received
+	 * @param offset  the offset of the page in the listing
+	 */
+	public IssuePage readPage(InputStream content, int offset) throws IOException, RedmineFormatException {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		List<IssueCheckpoint> positions = new ArrayList<IssueCheckpoint>();
+		int totalCount = -1;
+		try {
+			JsonParser parser = JSON.createParser(content);
+			try {
+				if (parser.nextToken() != JsonToken.START_OBJECT) {
+					throw new RedmineFormatException("Unexpected response reading the issues at offset " + offset);
+				}
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String name = parser.getCurrentName();
+					JsonToken token = parser.nextToken();
+					if ("issues".equals(name) && token == JsonToken.START_ARRAY) {
+						while (parser.nextToken() == JsonToken.START_OBJECT) {
+							readIssue(parser, rows, positions);
+						}
+					} else if ("total_count".equals(name) && token == JsonToken.VALUE_NUMBER_INT) {
+						totalCount = parser.getIntValue();
+					} else {
+						parser.skipChildren();
+					}
+				}
+			} finally {
+				parser.close();
+			}
+		} catch (JsonParseException e) {
+			throw new RedmineFormatException("Unexpected response reading the issues at offset " + offset, e);
+		}
+		if (totalCount < 0) {
+			throw new RedmineFormatException("No total count reading the issues at offset " + offset);
+		}
+		return new IssuePage(offset, totalCount, rows, positions);
+	}
+
+	/**
+	 * Reads an issue object, the parser being on its start, into a new row.
+	 */
+	private void readIssue(JsonParser parser, List<Object[]> rows, List<IssueCheckpoint> positions)
+			throws IOException, RedmineFormatException {
+		Object[] row = new Object[rowSize];
+		int id = -1;
+		String updatedOn = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.START_OBJECT) {
+				Map<String, int[]> fields = objectFields.get(name);
+				if (fields != null) {
+					readObject(parser, fields, row);
+				} else {
+					parser.skipChildren();
+				}
+			} else if (token == JsonToken.START_ARRAY) {
+				if ("custom_fields".equals(name) && !customFields.isEmpty()) {
+					readCustomFields(parser, row);
+				} else {
+					parser.skipChildren();
+				}
+			} else {
+				String text = text(parser, token);
+				if ("id".equals(name)) {
+					id = parser.getIntValue();
+				} else if ("updated_on".equals(name)) {
+					updatedOn = text;
+				}
+				set(row, issueFields.get(name), text);
+			}
+		}
+		if (id < 0 || updatedOn == null) {
+			throw new RedmineFormatException("Issue without id or updated_on in the listing");
+		}
+		rows.add(row);
+		positions.add(new IssueCheckpoint(updatedOn, id));
+	}
+
+	/**
+	 * Parses the journals of an issue into one row per change detail. Journals
+	 * without details, holding only a note, give no row.
+	 * 
+	 * @param content the issue response, read with include=journals
+	 * @param issueId the id of the issue
+	 */
+	public List<Object[]> readJournals(InputStream content, long issueId) throws IOException, RedmineFormatException {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		try {
+			JsonParser parser = JSON.createParser(content);
+			try {
+				if (parser.nextToken() != JsonToken.START_OBJECT) {
+					throw new RedmineFormatException("Unexpected response reading the journals of issue " + issueId);
+				}
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String name = parser.getCurrentName();
+					if (parser.nextToken() != JsonToken.START_OBJECT || !"issue".equals(name)) {
+						parser.skipChildren();
+						continue;
+					}
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						name = parser.getCurrentName();
+						if (parser.nextToken() == JsonToken.START_ARRAY && "journals".equals(name)) {
+							while (parser.nextToken() == JsonToken.START_OBJECT) {
+								readJournal(parser, issueId, rows);
+							}
+						} else {
+							parser.skipChildren();
+						}
+					}
+				}
+			} finally {
+				parser.close();
+			}
+		} catch (JsonParseException e) {
+			throw new RedmineFormatException("Unexpected response reading the journals of issue " + issueId, e);
+		}
+		return rows;
+	}
+
+	/**
+	 * Reads a journal, the parser being on its start, into a row per detail.
+	 * The journal attributes are copied to the rows of its details once the
+	 * whole journal is read, as they may follow the details.
+	 */
+	private void readJournal(JsonParser parser, long issueId, List<Object[]> rows)
+			throws IOException, RedmineFormatException {
+		Object[] journal = new Object[rowSize];
+		set(journal, issueFields.get("issue_id"), Long.toString(issueId));
+		int first = rows.size();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.START_OBJECT) {
+				Map<String, int[]> fields = objectFields.get(name);
+				if (fields != null) {
+					readObject(parser, fields, journal);
+				} else {
+					parser.skipChildren();
+				}
+			} else if (token == JsonToken.START_ARRAY) {
+				if ("details".equals(name)) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						Object[] detail = new Object[rowSize];
+						readObject(parser, issueFields, detail);
+						rows.add(detail);
+					}
+				} else {
+					parser.skipChildren();
+				}
+			} else {
+				set(journal, issueFields.get("id".equals(name) ? "journal_id" : name), text(parser, token));
+			}
+		}
+		for (int i = first; i < rows.size(); i++) {
+			Object[] detail = rows.get(i);
+			for (int field = 0; field < attributes.length; field++) {
+				if (journal[field] != null) {
+					detail[field] = journal[field];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Parses the attachments of an issue, or a single attachment.
+	 * 
+	 * @param content the issue response, read with include=attachments, or
+	 *                the attachment response
+	 * @param issueId the id of the issue, null for a single attachment
+	 */
+	public List<RemoteAttachment> readAttachments(InputStream content, Long issueId)
+			throws IOException, RedmineFormatException {
+		List<RemoteAttachment> attachments = new ArrayList<RemoteAttachment>();
+		try {
+			JsonParser parser = JSON.createParser(content);
+			try {
+				if (parser.nextToken() != JsonToken.START_OBJECT) {
+					throw new RedmineFormatException("Unexpected response reading attachments");
+				}
+				while (parser.nextToken() == JsonToken.FIELD_NAME) {
+					String name = parser.getCurrentName();
+					if (parser.nextToken() != JsonToken.START_OBJECT) {
+						parser.skipChildren();
+					} else if ("attachment".equals(name)) {
+						attachments.add(readAttachment(parser, issueId));
+					} else if ("issue".equals(name)) {
+						while (parser.nextToken() == JsonToken.FIELD_NAME) {
+							name = parser.getCurrentName();
+							if (parser.nextToken() == JsonToken.START_ARRAY && "attachments".equals(name)) {
+								while (parser.nextToken() == JsonToken.START_OBJECT) {
+									attachments.add(readAttachment(parser, issueId));
+								}
+							} else {
+								parser.skipChildren();
+							}
+						}
+					} else {
+						parser.skipChildren();
+					}
+				}
+			} finally {
+				parser.close();
+			}
+		} catch (JsonParseException e) {
+			throw new RedmineFormatException("Unexpected response reading attachments", e);
+		}
+		return attachments;
+	}
+
+	/**
+	 * Reads an attachment, the parser being on its start, into a new row.
+	 */
+	private RemoteAttachment readAttachment(JsonParser parser, Long issueId) throws IOException, RedmineFormatException {
+		Object[] row = new Object[rowSize];
+		if (issueId != null) {
+			set(row, issueFields.get("issue_id"), issueId.toString());
+		}
+		int id = -1;
+		long fileSize = -1;
+		String fileName = null;
+		String contentUrl = null;
+		String digest = null;
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.START_OBJECT) {
+				Map<String, int[]> fields = objectFields.get(name);
+				if (fields != null) {
+					readObject(parser, fields, row);
+				} else {
+					parser.skipChildren();
+				}
+			} else if (token == JsonToken.START_ARRAY) {
+				parser.skipChildren();
+			} else {
+				String text = text(parser, token);
+				if ("id".equals(name)) {
+					id = parser.getIntValue();
+				} else if ("filesize".equals(name)) {
+					fileSize = parser.getLongValue();
+				} else if ("filename".equals(name)) {
+					fileName = text;
+				} else if ("content_url".equals(name)) {
+					contentUrl = text;
+				} else if ("digest".equals(name)) {
+					digest = text;
+				}
+				set(row, issueFields.get(name), text);
+			}
+		}
+		if (id < 0 || fileName == null || contentUrl == null) {
+			throw new RedmineFormatException("Attachment without id, filename or content_url");
+		}
+		return new RemoteAttachment(id, fileName, fileSize, contentUrl, digest, row);
+	}
+
+	/**
+	 * Sets a value not read from Redmine into the fields bound to the
+	 * attribute, if any.
+	 */
+	public void setValue(Object[] row, String attribute, Object value) {
+		int[] fields = issueFields.get(attribute);
+		if (fields != null) {
+			for (int field : fields) {
+				row[field] = value;
+			}
+		}
+	}
+
+	/**
+	 * Reads the bound attributes of a nested object, like the status of the
+	 * issue.
+	 */
+	private void readObject(JsonParser parser, Map<String, int[]> fields, Object[] row)
+			throws IOException, RedmineFormatException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+				parser.skipChildren();
+			} else {
+				set(row, fields.get(name), text(parser, token));
+			}
+		}
+	}
+
+	/**
+	 * Reads the values of the bound custom fields. The value of a custom field
+	 * may come before its id, so it is kept as text until the whole field is
+	 * read, and only converted when the field is bound.
+	 */
+	private void readCustomFields(JsonParser parser, Object[] row) throws IOException, RedmineFormatException {
+		while (parser.nextToken() == JsonToken.START_OBJECT) {
+			int[] fields = NO_FIELDS;
+			String value = null;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String name = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if ("id".equals(name) && token == JsonToken.VALUE_NUMBER_INT) {
+					int[] bound = customFields.get(parser.getText());
+					fields = bound != null ? bound : NO_FIELDS;
+				} else if ("value".equals(name) && token != JsonToken.START_OBJECT) {
+					value = token == JsonToken.START_ARRAY ? join(parser) : text(parser, token);
+				} else {
+					parser.skipChildren();
+				}
+			}
+			set(row, fields, value);
+		}
+	}
+
+	/**
+	 * Converts the text into each bound field of the row.
+	 * 
+	 * @param fields the fields bound to the attribute, null for none
+	 */
+	private void set(Object[] row, int[] fields, String text) throws RedmineFormatException {
+		if (fields != null) {
+			for (int field : fields) {
+				row[field] = toValue(field, text);
+			}
+		}
+	}
+
+	/**
+	 * Converts the text of an attribute to the value of the output field.
+	 * 
+	 * @param field the index of the output field
+	 * @param text  the attribute as sent by Redmine, null if missing
+	 */
+	public Object toValue(int field, String text) throws RedmineFormatException {
+		if (text == null || text.isEmpty()) {
+			return null;
+		}
+		try {
+			switch (types[field]) {
+			case ValueMetaInterface.TYPE_INTEGER:
+				return Long.valueOf(text);
+			case ValueMetaInterface.TYPE_NUMBER:
+				return Double.valueOf(text);
+			case ValueMetaInterface.TYPE_BOOLEAN:
+				return Boolean.valueOf(text);
+			case ValueMetaInterface.TYPE_DATE:
+				return parseDate(text);
+			default:
+				return text;
+			}
+		} catch (NumberFormatException e) {
+			throw new RedmineFormatException("Invalid " + attributes[field] + ": " + text, e);
+		}
+	}
+
+	private Date parseDate(String text) throws RedmineFormatException {
+		try {
+			return text.length() > 10 ? timestampFormat.parse(text) : dateFormat.parse(text);
+		} catch (ParseException e) {
+			throw new RedmineFormatException("Invalid date: " + text, e);
+		}
+	}
+
+	/**
+	 * @return the values of a multiple custom field, joined with commas
+	 */
+	private static String join(JsonParser parser) throws IOException {
+		StringBuilder text = new StringBuilder();
+		JsonToken token;
+		while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+				parser.skipChildren();
+				continue;
+			}
+			if (text.length() > 0) {
+				text.append(',');
+			}
+			text.append(parser.getText());
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @return the text of the scalar value, null for a JSON null
+	 */
+	private static String text(JsonParser parser, JsonToken token) throws IOException {
+		return token == JsonToken.VALUE_NULL ? null : parser.getText();
+	}
+}
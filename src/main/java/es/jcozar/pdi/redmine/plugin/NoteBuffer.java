@@ -0,0 +1,110 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Rows adding a note to the same issue, buffered so their notes are sent as a
+ * single journal entry.
+ */
+public class NoteBuffer {
+
+	private final int issueId;
+	private final List<Object[]> rows = new ArrayList<Object[]>();
+	private final List<String> notes = new ArrayList<String>();
+	private final List<Long> times = new ArrayList<Long>();
+	private final long firstSeen;
+
+	public NoteBuffer(int issueId, long now) {
+		this.issueId = issueId;
+		this.firstSeen = now;
+	}
+
+	/**
+	 * Adds a row to the buffer.
+	 *
+	 * @param row  the input row
+	 * @param note the note read from the row, empty notes are not rendered
+	 * @param now  arrival time in milliseconds
+	 */
+	public void add(Object[] row, String note, long now) {
+		rows.add(row);
+		if (note != null && !note.trim().isEmpty()) {
+			notes.add(note);
+			times.add(Long.valueOf(now));
+		}
+	}
+
+	public int getIssueId() {
+		return issueId;
+	}
+
+	public List<Object[]> getRows() {
+		return rows;
+	}
+
+	public int getCount() {
+		return rows.size();
+	}
+
+	public long getFirstSeen() {
+		return firstSeen;
+	}
+
+	/**
+	 * Renders the buffered notes as a Redmine textile table, one line per note
+	 * with its arrival time. A single note is sent as it is.
+	 *
+	 * @return the note body, or null if no row had a note
+	 */
+	public String getNote() {
+		if (notes.isEmpty()) {
+			return null;
+		}
+		if (notes.size() == 1) {
+			return notes.get(0);
+		}
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+		StringBuilder note = new StringBuilder();
+		for (int i = 0; i < notes.size(); i++) {
+			if (i > 0) {
+				note.append('\n');
+			}
+			note.append("|").append(format.format(new Date(times.get(i).longValue())))
+					.append("|").append(escape(notes.get(i))).append("|");
+		}
+		return note.toString();
+	}
+
+	/**
+	 * Keeps a note inside its table cell: textile cells cannot span lines and
+	 * pipes would end the cell.
+	 */
+	private static String escape(String value) {
+		return value.trim().replace("\r\n", " ").replace('\n', ' ').replace("|", "&#124;");
+	}
+}
@@ -0,0 +1,143 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import com.taskadapter.redmineapi.RedmineException;
+import com.taskadapter.redmineapi.bean.Issue;
+import com.taskadapter.redmineapi.bean.IssueFactory;
+
+/**
+ * The rows sharing a submitted Redmine call, usually a single one. Calls may
+ * run on the step's worker threads, but their results are passed on by the
+ * step thread in the order they were submitted.
+ */
+public class PendingCall {
+
+	private final List<Object[]> rows;
+	private final long start;
+	private final Future<Result> result;
+
+	/**
+	 * @param rows   the input rows answered by the call
+	 * @param start  System.nanoTime() when the rows started calling Redmine
+	 * @param result the outcome of the call
+	 */
+	public PendingCall(List<Object[]> rows, long start, Future<Result> result) {
+		this.rows = rows;
+		this.start = start;
+		this.result = result;
+	}
+
+	public List<Object[]> getRows() {
+		return rows;
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public Future<Result> getResult() {
+		return result;
+	}
+
+	/**
+	 * The outcome of a Redmine call: the issue created or changed, the duplicate
+	 * matched, the time entry logged, or the failure.
+	 */
+	public static class Result {
+
+		private final Issue issue;
+		private final Issue duplicate;
+		private final String outcome;
+		private final RedmineException failure;
+		private final Integer timeEntryId;
+
+		private Result(Issue issue, Issue duplicate, String outcome, RedmineException failure, Integer timeEntryId) {
+			this.issue = issue;
+			this.duplicate = duplicate;
+			this.outcome = outcome;
+			this.failure = failure;
+			this.timeEntryId = timeEntryId;
+		}
+
+		/**
+		 * @param issue     the issue created or changed, null if none
+		 * @param duplicate the existing issue matched by the duplicate search, if any
+		 * @param outcome   one of the RedmineStep.OUTCOME_* values
+		 */
+		public static Result done(Issue issue, Issue duplicate, String outcome) {
+			return new Result(issue, duplicate, outcome, null, null);
+		}
+
+		/**
+		 * @param issue       the issue the time was logged on, null if logged on the project
+		 * @param timeEntryId the id of the created time entry
+		 */
+		public static Result timeEntry(Issue issue, int timeEntryId) {
+			return new Result(issue, null, RedmineStep.OUTCOME_CREATED, null, Integer.valueOf(timeEntryId));
+		}
+
+		/**
+		 * @param failure   the error returned by Redmine
+		 * @param duplicate the existing issue matched before the failure, if any
+		 */
+		public static Result failed(RedmineException failure, Issue duplicate) {
+			return new Result(null, duplicate, RedmineStep.OUTCOME_FAILED, failure, null);
+		}
+
+		public Issue getIssue() {
+			return issue;
+		}
+
+		public Issue getDuplicate() {
+			return duplicate;
+		}
+
+		public String getOutcome() {
+			return outcome;
+		}
+
+		public RedmineException getFailure() {
+			return failure;
+		}
+
+		/**
+		 * @return the id of the logged time entry, null if none
+		 */
+		public Integer getTimeEntryId() {
+			return timeEntryId;
+		}
+
+		/**
+		 * @return the same outcome with the issues reduced to their ids, for
+		 *         results kept after the call
+		 */
+		public Result compact() {
+			return new Result(issue != null ? IssueFactory.create(issue.getId()) : null,
+					duplicate != null ? IssueFactory.create(duplicate.getId()) : null, outcome, failure, timeEntryId);
+		}
+	}
+}
@@ -0,0 +1,735 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransAdapter;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import com.taskadapter.redmineapi.NotFoundException;
+import com.taskadapter.redmineapi.RedmineException;
+
+import es.jcozar.pdi.redmine.plugin.utils.BandwidthLimiter;
+import es.jcozar.pdi.redmine.plugin.utils.TtlCache;
+
+/**
+ * Reads the issues of a Redmine listing into the row stream, page by page.
+ * The next pages are fetched while the rows of the current one are passed on,
+ * so at most one page per fetcher thread, plus the current one, is held in
+ * memory whatever the size of the listing.
+ * 
+ * Step copies split the listing: each copy reads every copies-th page,
+ * starting at its copy number.
+ * 
+ * In incremental mode only the issues updated since the checkpoint of the
+ * previous run are read. The checkpoint is moved to the latest issue passed
+ * on once the transformation finishes without errors. The listing is then
+ * read in update order, each page starting after the last issue of the
+ * previous one instead of at an offset: an issue updated during the run
+ * moves to the end of the listing, and with offsets it would shift the
+ * following pages and hide an issue the checkpoint moves past. Those pages
+ * are read one after the other, by the first copy only.
+ * 
+ * In journals mode the change history of the issues is read instead, one row
+ * per change detail. The issues come from the listing, or from the input rows,
+ * and their journals are fetched concurrently by the fetcher threads.
+ * 
+ * In attachments mode the attachments of the issues, or the attachments whose
+ * ids come from the input rows, are downloaded to a directory by the fetcher
+ * threads, one row per attachment. Files already downloaded with the same size
+ * and digest are kept.
+ * 
+ * When the issues themselves are read from the input rows, the step looks them
+ * up: the attributes of the issue are appended to each input row, keeping the
+ * input order. The issues of a batch of rows are read with a single listing
+ * call, and kept in memory for the next rows.
+ */
+public class RedmineInputStep extends BaseStep implements StepInterface {
+
+	private static final Class<?> PKG = RedmineInputStep.class; // for i18n purposes
+
+	// the listing only gives the issues whose journals are read
+	private static final String[] ISSUE_ID = { "id" };
+
+	// Redmine caps the issues of a listing call
+	private static final int MAX_LIMIT = RedmineInputStepMeta.MAX_PAGE_SIZE;
+
+	public RedmineInputStep(StepMeta s, StepDataInterface stepDataInterface, int c, TransMeta t, Trans dis) {
+		super(s, stepDataInterface, c, t, dis);
+	}
+
+	/**
+	 * Creates the client, builds the listing query and, unless the issues come
+	 * from the input rows, starts fetching the first page.
+	 */
+	public boolean init(StepMetaInterface smi, StepDataInterface sdi) {
+		RedmineInputStepMeta meta = (RedmineInputStepMeta) smi;
+		RedmineInputStepData data = (RedmineInputStepData) sdi;
+		if (!super.init(meta, data)) {
+			return false;
+		}
+
+		String url = environmentSubstitute(meta.getRedmineUrl());
+		String token = environmentSubstitute(meta.getRedmineToken());
+		data.threads = Math.max(1, Const.toInt(environmentSubstitute(meta.getRedmineThreads()), 1));
+		data.httpClient = RedmineRestClient.newHttpClient(data.threads);
+		data.restClient = new RedmineRestClient(url, token, data.httpClient);
+
+		data.outputRowMeta = new RowMeta();
+		try {
+			meta.getFields(data.outputRowMeta, getStepname(), null, null, this, getRepository(), getMetaStore());
+		} catch (KettleException e) {
+			logError(e.getMessage(), e);
+			return false;
+		}
+		data.attributes = meta.getFieldAttribute();
+		data.mode = meta.getMode();
+		data.fromInput = meta.isFromInput();
+		data.lookup = meta.isLookup();
+		boolean issues = RedmineInputStepMeta.MODE_ISSUES.equals(data.mode);
+		data.pageAttributes = issues ? data.attributes : ISSUE_ID;
+		data.pageRowSize = issues ? data.outputRowMeta.size() : ISSUE_ID.length;
+		if (RedmineInputStepMeta.MODE_ATTACHMENTS.equals(data.mode)) {
+			data.attachmentIds = !Const.isEmpty(meta.getRedmineAttachmentIdField());
+			data.downloader = new AttachmentDownloader(data.restClient, new File(environmentSubstitute(meta.getRedmineDownloadDir())));
+		}
+		long rate = Const.toLong(environmentSubstitute(meta.getRedmineRate()), 0);
+		if (rate > 0) {
+			// the limiter paces requests instead of bytes
+			data.rateLimiter = new BandwidthLimiter(rate);
+		}
+		// offsets advance by the page size, so a page larger than the server cap
+		// would skip issues
+		data.pageSize = Math.min(MAX_LIMIT, Math.max(1, Const.toInt(environmentSubstitute(meta.getRedminePageSize()), 100)));
+		if (data.lookup) {
+			data.lookupBatch = Math.min(MAX_LIMIT, Math.max(1, Const.toInt(environmentSubstitute(meta.getRedmineLookupBatch()), 50)));
+			long ttl = Const.toLong(environmentSubstitute(meta.getRedmineCacheTtl()), 600) * 1000L;
+			int cacheSize = Const.toInt(environmentSubstitute(meta.getRedmineCacheSize()), 10000);
+			data.cache = new TtlCache<Long, Object[]>(ttl, cacheSize, true);
+		}
+		if (meta.isRedmineIncremental()) {
+			try {
+				data.checkpointFile = new File(environmentSubstitute(meta.getRedmineCheckpointFile()));
+				data.checkpoint = IssueCheckpoint.load(data.checkpointFile);
+			} catch (KettleException e) {
+				logError(e.getMessage(), e);
+				return false;
+			}
+			if (data.checkpoint != null) {
+				logBasic(BaseMessages.getString( PKG, "RedmineInputStep.Info.Checkpoint", data.checkpoint ));
+			}
+			// the first copy writes the checkpoint of all of them
+			if (getCopy() == 0) {
+				getTrans().addTransListener(new TransAdapter() {
+					public void transFinished(Trans trans) throws KettleException {
+						saveCheckpoint(trans);
+					}
+				});
+			}
+		}
+		data.keyset = meta.isRedmineIncremental() && !data.fromInput;
+		data.query = buildQuery(meta, data.keyset);
+		if (data.keyset) {
+			data.cursorFilter = data.checkpoint != null
+					? ">=" + data.checkpoint.getUpdatedOn() : environmentSubstitute(meta.getRedmineUpdatedOn());
+		}
+
+		final String threadName = "redmine-input-" + getStepname() + "." + getCopy();
+		data.fetcher = Executors.newFixedThreadPool(data.threads, new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadName + "-" + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		if (!meta.isRedmineOrdered()) {
+			data.completion = new ExecutorCompletionService<IssuePage>(data.fetcher);
+		}
+		// looked up rows keep the input order
+		if (!meta.isRedmineOrdered() && !data.lookup) {
+			data.rowCompletion = new ExecutorCompletionService<List<Object[]>>(data.fetcher);
+		}
+		
+		// the first page of the copy tells the size of the listing, the other
+		// pages are only fetched once it is known
+		data.copies = Math.max(1, getStepMeta().getCopies());
+		if (data.fromInput || data.keyset && getCopy() > 0) {
+			return true;
+		}
+		data.nextPage = getCopy();
+		fetch(data, data.nextPage);
+		data.nextPage += data.copies;
+		return true;
+	}
+
+	/**
+	 * Passes on one issue, looked up input row, change detail in journals mode
+	 * or attachment in attachments mode, per call.
+	 */
+	public boolean processRow(StepMetaInterface smi, StepDataInterface sdi) throws KettleException {
+		RedmineInputStepMeta meta = (RedmineInputStepMeta) smi;
+		RedmineInputStepData data = (RedmineInputStepData) sdi;
+
+		Object[] row = data.fromInput || !RedmineInputStepMeta.MODE_ISSUES.equals(data.mode)
+				? nextFetchedRow(meta, data) : nextIssue(data);
+		if (row == null) {
+			data.finished = true;
+			setOutputDone();
+			return false;
+		}
+		putRow(data.outputRowMeta, row);
+		incrementLinesInput();
+		return true;
+	}
+
+	/**
+	 * Moves to the next issue of the listing not passed on by the previous
+	 * incremental run. Once the rows of a page are exhausted, the next fetched
+	 * page takes its place and another page starts loading.
+	 * 
+	 * @return the row of the issue, null at the end of the listing
+	 */
+	private Object[] nextIssue(RedmineInputStepData data) throws KettleException {
+		IssueCheckpoint position;
+		Object[] row;
+		do {
+			if (!nextRow(data)) {
+				return null;
+			}
+			// the page keeps no reference to the rows already passed on
+			position = data.page.getPositions().get(data.index);
+			row = data.page.getRows().set(data.index++, null);
+		} while (!isNew(data, position));
+
+		data.watermark = IssueCheckpoint.max(data.watermark, position);
+		return row;
+	}
+
+	/**
+	 * Moves to the next change detail or looked up row. Once the rows fetched
+	 * for an issue or batch are exhausted, the next fetched ones take their
+	 * place and more start loading.
+	 * 
+	 * @return the next row, null once every issue has been read
+	 */
+	private Object[] nextFetchedRow(RedmineInputStepMeta meta, RedmineInputStepData data) throws KettleException {
+		while (data.rows == null || data.rowIndex >= data.rows.size()) {
+			while (!data.idsDone && data.rowsInFlight < 2 * data.threads) {
+				if (data.lookup) {
+					data.idsDone = !lookupBatch(meta, data);
+					continue;
+				}
+				Long id = nextId(meta, data);
+				if (id == null) {
+					data.idsDone = true;
+				} else if (RedmineInputStepMeta.MODE_JOURNALS.equals(data.mode)) {
+					fetchJournals(data, id.longValue());
+				} else {
+					fetchAttachments(data, id.longValue());
+				}
+			}
+			if (data.rowsInFlight == 0) {
+				return null;
+			}
+			data.rows = take(data.rowCompletion, data.rowFetching);
+			data.rowsInFlight--;
+			data.rowIndex = 0;
+		}
+		return data.rows.set(data.rowIndex++, null);
+	}
+
+	/**
+	 * @return the next issue to read the journals or attachments of, from the
+	 *         listing or the input rows, or the next input attachment, null
+	 *         when there are no more
+	 */
+	private Long nextId(RedmineInputStepMeta meta, RedmineInputStepData data) throws KettleException {
+		if (!data.fromInput) {
+			Object[] row = nextIssue(data);
+			return row == null ? null : (Long) row[0];
+		}
+		while (true) {
+			Object[] row = nextInputRow(meta, data);
+			if (row == null) {
+				return null;
+			}
+			Long id = data.inputRowMeta.getInteger(row, data.indexOfIdField);
+			if (id != null) {
+				return id;
+			}
+			incrementLinesSkipped();
+		}
+	}
+
+	/**
+	 * @return the next input row, null when there are no more
+	 */
+	private Object[] nextInputRow(RedmineInputStepMeta meta, RedmineInputStepData data) throws KettleException {
+		Object[] row = getRow();
+		if (row != null && first) {
+			first = false;
+			data.inputRowMeta = getInputRowMeta();
+			data.indexOfIdField = data.inputRowMeta.indexOfValue(environmentSubstitute(meta.getInputIdField()));
+			if (data.indexOfIdField < 0) {
+				throw new KettleException(BaseMessages.getString( PKG, "RedmineInputStep.Error.IdField", meta.getInputIdField() ));
+			}
+			if (data.lookup) {
+				// the looked up attributes are appended to the input rows
+				data.outputRowMeta = data.inputRowMeta.clone();
+				meta.getFields(data.outputRowMeta, getStepname(), null, null, this, getRepository(), getMetaStore());
+			}
+		}
+		return row;
+	}
+
+	/**
+	 * Reads the next batch of input rows and starts looking up their issues
+	 * missing from the cache, all with one listing call. A batch whose issues
+	 * are all cached is completed on the step thread.
+	 * 
+	 * @return false when there are no more input rows
+	 */
+	private boolean lookupBatch(RedmineInputStepMeta meta, final RedmineInputStepData data) throws KettleException {
+		final List<Object[]> batch = new ArrayList<Object[]>(data.lookupBatch);
+		final List<Long> issueIds = new ArrayList<Long>(data.lookupBatch);
+		final Map<Long, Object[]> values = new HashMap<Long, Object[]>();
+		final Set<Long> missing = new LinkedHashSet<Long>();
+		long now = System.currentTimeMillis();
+		while (batch.size() < data.lookupBatch) {
+			Object[] row = nextInputRow(meta, data);
+			if (row == null) {
+				break;
+			}
+			Long issueId = data.inputRowMeta.getInteger(row, data.indexOfIdField);
+			batch.add(row);
+			issueIds.add(issueId);
+			if (issueId != null && !values.containsKey(issueId) && !missing.contains(issueId)) {
+				Object[] cached = data.cache.get(issueId, now);
+				if (cached != null) {
+					values.put(issueId, cached);
+				} else {
+					missing.add(issueId);
+				}
+			}
+		}
+		if (batch.isEmpty()) {
+			return false;
+		}
+
+		final int offset = data.inputRowMeta.size();
+		final int rowSize = data.outputRowMeta.size();
+		Callable<List<Object[]>> call = new Callable<List<Object[]>>() {
+			public List<Object[]> call() throws RedmineException, InterruptedException {
+				if (!missing.isEmpty()) {
+					pace(data);
+					values.putAll(lookup(data, missing));
+				}
+				List<Object[]> rows = new ArrayList<Object[]>(batch.size());
+				for (int i = 0; i < batch.size(); i++) {
+					Object[] row = RowDataUtil.resizeArray(batch.get(i), rowSize);
+					Object[] issue = values.get(issueIds.get(i));
+					if (issue != null) {
+						System.arraycopy(issue, 0, row, offset, issue.length);
+					}
+					rows.add(row);
+				}
+				return rows;
+			}
+		};
+		if (missing.isEmpty()) {
+			FutureTask<List<Object[]>> task = new FutureTask<List<Object[]>>(call);
+			task.run();
+			data.rowFetching.add(task);
+		} else {
+			data.rowFetching.add(data.fetcher.submit(call));
+		}
+		data.rowsInFlight++;
+		return true;
+	}
+
+	/**
+	 * Reads the issues with one listing call, whatever their status, and
+	 * caches their attributes. The issues not found, deleted or not visible,
+	 * are cached too, with no attributes.
+	 * 
+	 * @return the attribute values by issue id
+	 */
+	private Map<Long, Object[]> lookup(RedmineInputStepData data, Collection<Long> issueIds) throws RedmineException {
+		StringBuilder ids = new StringBuilder();
+		for (Long issueId : issueIds) {
+			if (ids.length() > 0) {
+				ids.append(',');
+			}
+			ids.append(issueId);
+		}
+		final IssueRowMapper mapper = new IssueRowMapper(data.attributes, data.attributes.length);
+		IssuePage page = data.restClient.get("issues.json?issue_id=" + ids + "&status_id=*&limit=" + issueIds.size(),
+				new RedmineRestClient.ResponseReader<IssuePage>() {
+					public IssuePage read(InputStream content) throws IOException, RedmineException {
+						return mapper.readPage(content, 0);
+					}
+				});
+
+		Map<Long, Object[]> values = new HashMap<Long, Object[]>();
+		for (int i = 0; i < page.getRows().size(); i++) {
+			values.put(Long.valueOf(page.getPositions().get(i).getId()), page.getRows().get(i));
+		}
+		long now = System.currentTimeMillis();
+		for (Long issueId : issueIds) {
+			Object[] issue = values.get(issueId);
+			if (issue == null) {
+				issue = new Object[data.attributes.length];
+				values.put(issueId, issue);
+			}
+			data.cache.put(issueId, issue, now);
+		}
+		return values;
+	}
+
+	/**
+	 * Moves to the next fetched page once the rows of the current one are
+	 * exhausted, and starts loading the following pages.
+	 * 
+	 * @return false when every page of the copy has been passed on
+	 */
+	private boolean nextRow(RedmineInputStepData data) throws KettleException {
+		while (data.page == null || data.index >= data.page.getRows().size()) {
+			if (data.inFlight == 0) {
+				return false;
+			}
+			data.page = take(data.completion, data.fetching);
+			data.inFlight--;
+			data.index = 0;
+			if (data.pageCount < 0) {
+				data.pageCount = (data.page.getTotalCount() + data.pageSize - 1) / data.pageSize;
+				logBasic(BaseMessages.getString( PKG, "RedmineInputStep.Info.TotalCount", data.page.getTotalCount() ));
+			}
+			if (data.keyset) {
+				// a full page may be followed by more issues
+				if (moveCursor(data, data.page) && data.page.getRows().size() >= data.pageSize) {
+					fetch(data, 0);
+				}
+				continue;
+			}
+			while (data.inFlight < data.threads && data.nextPage < data.pageCount) {
+				fetch(data, data.nextPage);
+				data.nextPage += data.copies;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The listing starts at the second of the checkpoint, so it repeats the
+	 * issues updated in that second before the previous run ended. Those are
+	 * skipped by their id.
+	 * 
+	 * @return whether the issue was not passed on by the previous run
+	 */
+	private boolean isNew(RedmineInputStepData data, IssueCheckpoint position) {
+		// the pages of an incremental listing are in update order, so a position
+		// not after the last one passed on was read by the previous page
+		boolean seen = data.keyset && data.watermark != null && position.compareTo(data.watermark) <= 0;
+		if (!seen && (data.checkpoint == null || position.compareTo(data.checkpoint) > 0)) {
+			return true;
+		}
+		incrementLinesSkipped();
+		return false;
+	}
+
+	/**
+	 * Moves the checkpoint to the latest issue passed on by any copy, unless
+	 * the transformation failed or was stopped, or a copy did not read its
+	 * whole share of the listing.
+	 */
+	private void saveCheckpoint(Trans trans) throws KettleException {
+		if (trans.getErrors() > 0 || trans.isStopped()) {
+			logBasic(BaseMessages.getString( PKG, "RedmineInputStep.Info.CheckpointKept" ));
+			return;
+		}
+		RedmineInputStepData data = (RedmineInputStepData) trans.getStepDataInterface(getStepname(), 0);
+		IssueCheckpoint watermark = null;
+		for (int copy = 0; copy < data.copies; copy++) {
+			RedmineInputStepData copyData = (RedmineInputStepData) trans.getStepDataInterface(getStepname(), copy);
+			if (copyData == null || !copyData.finished) {
+				logBasic(BaseMessages.getString( PKG, "RedmineInputStep.Info.CheckpointKept" ));
+				return;
+			}
+			watermark = IssueCheckpoint.max(watermark, copyData.watermark);
+		}
+		if (watermark != null) {
+			watermark.save(data.checkpointFile);
+			logBasic(BaseMessages.getString( PKG, "RedmineInputStep.Info.CheckpointSaved", watermark ));
+		}
+	}
+
+	/**
+	 * @param keyset whether the listing is read from a cursor, the updated_on
+	 *               filter is then added for each page
+	 * 
+	 * @return the listing path with the configured filters. Issues are sorted
+	 *         by id, so that pages do not overlap, or in update order when
+	 *         read from a cursor.
+	 */
+	private String buildQuery(RedmineInputStepMeta meta, boolean keyset) {
+		List<NameValuePair> parameters = new ArrayList<NameValuePair>();
+		addParameter(parameters, "project_id", meta.getRedmineProject());
+		addParameter(parameters, "query_id", meta.getRedmineQueryId());
+		addParameter(parameters, "status_id", meta.getRedmineStatus());
+		addParameter(parameters, "tracker_id", meta.getRedmineTracker());
+		if (!keyset) {
+			addParameter(parameters, "updated_on", meta.getRedmineUpdatedOn());
+		}
+		parameters.add(new BasicNameValuePair("sort", keyset ? "updated_on,id" : "id"));
+		return "issues.json?" + URLEncodedUtils.format(parameters, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Moves the cursor of an incremental listing after the last issue of the
+	 * page. Issues sharing the timestamp of the cursor are skipped by offset,
+	 * since the filter only compares timestamps.
+	 * 
+	 * @return false if the page was empty
+	 */
+	private boolean moveCursor(RedmineInputStepData data, IssuePage page) {
+		List<IssueCheckpoint> positions = page.getPositions();
+		if (positions.isEmpty()) {
+			return false;
+		}
+		String last = positions.get(positions.size() - 1).getUpdatedOn();
+		int same = 0;
+		for (int i = positions.size() - 1; i >= 0 && positions.get(i).getUpdatedOn().equals(last); i--) {
+			same++;
+		}
+		// the page starts at the cursor, so it only ends there when it is all
+		// of the same timestamp
+		data.cursorSkip = last.equals(data.cursor) ? data.cursorSkip + same : same;
+		data.cursor = last;
+		data.cursorFilter = ">=" + last;
+		return true;
+	}
+
+	private void addParameter(List<NameValuePair> parameters, String name, String value) {
+		String realValue = environmentSubstitute(value);
+		if (!Const.isEmpty(realValue)) {
+			parameters.add(new BasicNameValuePair(name, realValue));
+		}
+	}
+
+	/**
+	 * Starts fetching a page on the fetcher threads.
+	 * 
+	 * @param page the number of the page in the listing
+	 */
+	private void fetch(final RedmineInputStepData data, int page) {
+		final int offset = data.keyset ? data.cursorSkip : page * data.pageSize;
+		final String query = data.keyset && !Const.isEmpty(data.cursorFilter)
+				? data.query + "&" + URLEncodedUtils.format(Collections.singletonList(
+						new BasicNameValuePair("updated_on", data.cursorFilter)), StandardCharsets.UTF_8)
+				: data.query;
+		Callable<IssuePage> call = new Callable<IssuePage>() {
+			public IssuePage call() throws RedmineException, InterruptedException {
+				pace(data);
+				return fetchPage(data, query, offset);
+			}
+		};
+		if (data.completion != null) {
+			data.completion.submit(call);
+		} else {
+			data.fetching.add(data.fetcher.submit(call));
+		}
+		data.inFlight++;
+	}
+
+	/**
+	 * Reads a page of the listing, mapping its issues to output rows while
+	 * the response is received.
+	 */
+	private IssuePage fetchPage(RedmineInputStepData data, String query, final int offset) throws RedmineException {
+		final IssueRowMapper mapper = new IssueRowMapper(data.pageAttributes, data.pageRowSize);
+		return data.restClient.get(query + "&offset=" + offset + "&limit=" + data.pageSize,
+				new RedmineRestClient.ResponseReader<IssuePage>() {
+					public IssuePage read(InputStream content) throws IOException, RedmineException {
+						return mapper.readPage(content, offset);
+					}
+				});
+	}
+
+	/**
+	 * Starts fetching the journals of an issue on the fetcher threads.
+	 */
+	private void fetchJournals(final RedmineInputStepData data, final long issueId) {
+		Callable<List<Object[]>> call = new Callable<List<Object[]>>() {
+			public List<Object[]> call() throws RedmineException, InterruptedException {
+				pace(data);
+				final IssueRowMapper mapper = new IssueRowMapper(data.attributes, data.outputRowMeta.size());
+				try {
+					return data.restClient.get("issues/" + issueId + ".json?include=journals",
+							new RedmineRestClient.ResponseReader<List<Object[]>>() {
+								public List<Object[]> read(InputStream content) throws IOException, RedmineException {
+									return mapper.readJournals(content, issueId);
+								}
+							});
+				} catch (NotFoundException e) {
+					// the issue was deleted since it was listed
+					return new ArrayList<Object[]>();
+				}
+			}
+		};
+		if (data.rowCompletion != null) {
+			data.rowCompletion.submit(call);
+		} else {
+			data.rowFetching.add(data.fetcher.submit(call));
+		}
+		data.rowsInFlight++;
+	}
+
+	/**
+	 * Starts reading the attachments of an issue, or a single attachment, and
+	 * downloading them on the fetcher threads. The attachments of an issue are
+	 * downloaded one after the other.
+	 * 
+	 * @param id the issue id, or the attachment id when they come from the
+	 *           input rows
+	 */
+	private void fetchAttachments(final RedmineInputStepData data, final long id) {
+		Callable<List<Object[]>> call = new Callable<List<Object[]>>() {
+			public List<Object[]> call() throws RedmineException, IOException, InterruptedException {
+				pace(data);
+				final IssueRowMapper mapper = new IssueRowMapper(data.attributes, data.outputRowMeta.size());
+				final Long issueId = data.attachmentIds ? null : Long.valueOf(id);
+				String path = data.attachmentIds ? "attachments/" + id + ".json" : "issues/" + id + ".json?include=attachments";
+				List<RemoteAttachment> attachments;
+				try {
+					attachments = data.restClient.get(path, new RedmineRestClient.ResponseReader<List<RemoteAttachment>>() {
+						public List<RemoteAttachment> read(InputStream content) throws IOException, RedmineException {
+							return mapper.readAttachments(content, issueId);
+						}
+					});
+				} catch (NotFoundException e) {
+					// deleted since it was listed or given
+					return new ArrayList<Object[]>();
+				}
+
+				List<Object[]> rows = new ArrayList<Object[]>(attachments.size());
+				for (RemoteAttachment attachment : attachments) {
+					pace(data);
+					boolean downloaded = data.downloader.download(attachment);
+					mapper.setValue(attachment.getRow(), "path", data.downloader.getFile(attachment).getPath());
+					mapper.setValue(attachment.getRow(), "downloaded", Boolean.valueOf(downloaded));
+					rows.add(attachment.getRow());
+				}
+				return rows;
+			}
+		};
+		if (data.rowCompletion != null) {
+			data.rowCompletion.submit(call);
+		} else {
+			data.rowFetching.add(data.fetcher.submit(call));
+		}
+		data.rowsInFlight++;
+	}
+
+	/**
+	 * Waits for the configured rate to allow another request.
+	 */
+	private void pace(RedmineInputStepData data) throws InterruptedException {
+		if (data.rateLimiter != null) {
+			data.rateLimiter.acquire(1);
+		}
+	}
+
+	/**
+	 * Waits for the next result to pass on: the first one submitted in order,
+	 * the first one to arrive otherwise.
+	 * 
+	 * @param completion the results as they arrive, null in order
+	 * @param fetching   the results in submission order
+	 */
+	private <T> T take(CompletionService<T> completion, Deque<Future<T>> fetching) throws KettleException {
+		try {
+			Future<T> result = completion != null ? completion.take() : fetching.poll();
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KettleException(e);
+		} catch (ExecutionException e) {
+			throw new KettleException(BaseMessages.getString( PKG, "RedmineInputStep.Error.Fetch" ), e.getCause());
+		}
+	}
+
+	public void dispose(StepMetaInterface smi, StepDataInterface sdi) {
+		RedmineInputStepMeta meta = (RedmineInputStepMeta) smi;
+		RedmineInputStepData data = (RedmineInputStepData) sdi;
+
+		if (data.fetcher != null) {
+			data.fetcher.shutdownNow();
+		}
+		if (data.httpClient != null) {
+			try {
+				data.httpClient.close();
+			} catch (IOException e) {
+				logError(e.getMessage(), e);
+			}
+		}
+
+		super.dispose(meta, data);
+	}
+}
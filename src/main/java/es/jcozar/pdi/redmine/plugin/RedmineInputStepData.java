@@ -0,0 +1,132 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import es.jcozar.pdi.redmine.plugin.utils.BandwidthLimiter;
+import es.jcozar.pdi.redmine.plugin.utils.TtlCache;
+
+/**
+ * keep track of per-thread resources during step execution.
+ */
+public class RedmineInputStepData extends BaseStepData implements StepDataInterface {
+
+	public RowMetaInterface outputRowMeta;
+	
+	public CloseableHttpClient httpClient;
+	public RedmineRestClient restClient;
+	
+	// listing path with the filters, the page offset and limit are appended
+	public String query;
+	public int pageSize;
+	
+	// issue attribute of each output field
+	public String[] attributes;
+	
+	// issue attributes read from the listing, and size of their rows: the
+	// output fields, or only the issue id when reading journals or attachments
+	public String[] pageAttributes;
+	public int pageRowSize;
+	
+	// requests paced to the configured rate, null when not capped
+	public BandwidthLimiter rateLimiter;
+	
+	// pages of the copy: number of pages of the listing, -1 until known, and
+	// next page to fetch. Copies take every copies-th page, starting at their
+	// copy number.
+	public int pageCount = -1;
+	public int nextPage;
+	public int copies;
+	public int threads;
+	
+	// the page being passed on, and the pages being fetched meanwhile. In
+	// order they are taken from the queue, unordered from the completion
+	// service as they arrive.
+	public ExecutorService fetcher;
+	public IssuePage page;
+	public int index;
+	public Deque<Future<IssuePage>> fetching = new ArrayDeque<Future<IssuePage>>();
+	public CompletionService<IssuePage> completion;
+	public int inFlight;
+	
+	// incremental read: the position saved by the previous run, null on the
+	// first run, and the latest position passed on by this copy. The
+	// checkpoint is only written once every copy has finished.
+	public File checkpointFile;
+	public IssueCheckpoint checkpoint;
+	public volatile IssueCheckpoint watermark;
+	public volatile boolean finished;
+	
+	// incremental listing read from a cursor: the updated_on filter of the
+	// next page, the timestamp of the last issue read, and the issues of that
+	// timestamp already read
+	public boolean keyset;
+	public String cursorFilter;
+	public String cursor;
+	public int cursorSkip;
+	
+	// what is read for each issue, one of the MODE_* codes
+	public String mode;
+	
+	// issue or attachment ids from the input rows. Input issues are looked
+	// up in issues mode.
+	public boolean fromInput;
+	public boolean lookup;
+	public boolean attachmentIds;
+	public RowMetaInterface inputRowMeta;
+	public int indexOfIdField;
+	public boolean idsDone;
+	
+	// attachments mode, files written to the download directory
+	public AttachmentDownloader downloader;
+	
+	// looked up issues: attribute values by issue id, and input rows per
+	// listing call
+	public TtlCache<Long, Object[]> cache;
+	public int lookupBatch;
+	
+	// rows fetched for the issues: the journal details or attachments of an
+	// issue, or a looked up batch of input rows. Up to two per fetcher thread are read
+	// ahead, and those of the current one passed on.
+	public List<Object[]> rows;
+	public int rowIndex;
+	public Deque<Future<List<Object[]>>> rowFetching = new ArrayDeque<Future<List<Object[]>>>();
+	public CompletionService<List<Object[]>> rowCompletion;
+	public int rowsInFlight;
+	
+	public RedmineInputStepData() {
+		super();
+	}
+}
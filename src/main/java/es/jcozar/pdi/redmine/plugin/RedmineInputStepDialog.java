@@ -0,0 +1,447 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.custom.CTabFolder;
+import org.eclipse.swt.events.FocusAdapter;
+import org.eclipse.swt.events.FocusEvent;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.layout.FormAttachment;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Event;
+import org.eclipse.swt.widgets.Group;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.ui.core.PropsUI;
+import org.pentaho.di.ui.core.widget.ColumnInfo;
+import org.pentaho.di.ui.core.widget.ComboVar;
+import org.pentaho.di.ui.core.widget.LabelText;
+import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+import es.jcozar.pdi.redmine.plugin.utils.SwtUtils;
+
+/**
+ * Settings dialog of the Redmine input step.
+ */
+public class RedmineInputStepDialog extends BaseStepDialog implements StepDialogInterface {
+
+  private static Class<?> PKG = RedmineInputStepMeta.class; // for i18n purposes
+
+  private RedmineInputStepMeta meta;
+  
+  private CTabFolder wTabFolder;
+  
+  private LabelText wRedmineURL, wRedmineToken, wPageSize, wThreads, wRate, wProject, wQueryId, wStatus, wTracker, wUpdatedOn, wCheckpointFile,
+                    wLookupBatch, wCacheSize, wCacheTtl, wDownloadDir;
+  
+  private Button wOrdered, wIncremental;
+  
+  private CCombo wMode;
+  private ComboVar wIssueIdField, wAttachmentIdField;
+  
+  private ColumnInfo attributeColumn;
+  
+  private TableView wFields;
+
+  public RedmineInputStepDialog( Shell parent, Object in, TransMeta transMeta, String sname ) {
+    super( parent, (BaseStepMeta) in, transMeta, sname );
+    meta = (RedmineInputStepMeta) in;
+  }
+
+  public String open() {
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, meta );
+
+    changed = meta.hasChanged();
+
+    ModifyListener lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        meta.setChanged();
+      }
+    };
+
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginWidth = Const.FORM_MARGIN;
+    formLayout.marginHeight = Const.FORM_MARGIN;
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "RedmineInput.Shell.Title" ) );
+    int middle = props.getMiddlePct();
+    int margin = Const.MARGIN;
+
+    // Stepname line
+    wlStepname = new Label( shell, SWT.RIGHT );
+    wlStepname.setText( BaseMessages.getString( PKG, "System.Label.StepName" ) );
+    props.setLook( wlStepname );
+    fdlStepname = new FormData();
+    fdlStepname.left = new FormAttachment( 0, 0 );
+    fdlStepname.right = new FormAttachment( middle, -margin );
+    fdlStepname.top = new FormAttachment( 0, margin );
+    wlStepname.setLayoutData( fdlStepname );
+
+    wStepname = new Text( shell, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    wStepname.setText( stepname );
+    props.setLook( wStepname );
+    wStepname.addModifyListener( lsMod );
+    fdStepname = new FormData();
+    fdStepname.left = new FormAttachment( middle, 0 );
+    fdStepname.top = new FormAttachment( 0, margin );
+    fdStepname.right = new FormAttachment( 100, 0 );
+    wStepname.setLayoutData( fdStepname );
+    
+    wTabFolder = new CTabFolder( shell, SWT.BORDER );
+    props.setLook( wTabFolder, PropsUI.WIDGET_STYLE_TAB );
+    
+    // ------------------------- //
+    // settings tab              //
+    // ------------------------- //
+    Composite generalTab = SwtUtils.addTab(shell, wTabFolder, "Settings", wStepname);
+    
+    Group gSettings = SwtUtils.addGroup(generalTab, BaseMessages.getString( PKG, "Redmine.SettingsGroup.Label" ), wStepname);
+
+    wRedmineURL = SwtUtils.addLabelText(gSettings, BaseMessages.getString( PKG, "Redmine.URL.Label" ), wStepname);
+    wRedmineURL.addModifyListener( lsMod );
+    
+    wRedmineToken = SwtUtils.addLabelText(gSettings, BaseMessages.getString( PKG, "Redmine.Token.Label" ), wRedmineURL); 
+    wRedmineToken.addModifyListener( lsMod );
+    
+    wPageSize = SwtUtils.addLabelText(gSettings, BaseMessages.getString( PKG, "RedmineInput.PageSize.Label" ), wRedmineToken); 
+    wPageSize.addModifyListener( lsMod );
+    
+    // concurrent page fetches
+    wThreads = SwtUtils.addLabelText(gSettings, BaseMessages.getString( PKG, "Redmine.Threads.Label" ), wPageSize);
+    wThreads.addModifyListener( lsMod );
+    
+    wRate = SwtUtils.addLabelText(gSettings, BaseMessages.getString( PKG, "RedmineInput.Rate.Label" ), wThreads);
+    wRate.addModifyListener( lsMod );
+    
+    wOrdered = SwtUtils.addCheckBox(gSettings, BaseMessages.getString( PKG, "RedmineInput.Ordered.Label" ), wRate);
+    wOrdered.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	      }
+	} );
+    
+    // ------------------------- //
+    // filters group             //
+    // ------------------------- //
+    Group gFilters = SwtUtils.addGroup(generalTab, BaseMessages.getString( PKG, "RedmineInput.FiltersGroup.Label" ), gSettings);
+
+    wProject = SwtUtils.addLabelText(gFilters, BaseMessages.getString( PKG, "Redmine.Project.Label" ), gFilters);
+    wProject.addModifyListener( lsMod );
+    
+    wQueryId = SwtUtils.addLabelText(gFilters, BaseMessages.getString( PKG, "RedmineInput.QueryId.Label" ), wProject);
+    wQueryId.addModifyListener( lsMod );
+    
+    wStatus = SwtUtils.addLabelText(gFilters, BaseMessages.getString( PKG, "RedmineInput.Status.Label" ), wQueryId);
+    wStatus.addModifyListener( lsMod );
+    
+    wTracker = SwtUtils.addLabelText(gFilters, BaseMessages.getString( PKG, "RedmineInput.Tracker.Label" ), wStatus);
+    wTracker.addModifyListener( lsMod );
+    
+    wUpdatedOn = SwtUtils.addLabelText(gFilters, BaseMessages.getString( PKG, "RedmineInput.UpdatedOn.Label" ), wTracker);
+    wUpdatedOn.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // incremental group         //
+    // ------------------------- //
+    Group gIncremental = SwtUtils.addGroup(generalTab, BaseMessages.getString( PKG, "RedmineInput.IncrementalGroup.Label" ), gFilters);
+    
+    wIncremental = SwtUtils.addCheckBox(gIncremental, BaseMessages.getString( PKG, "RedmineInput.Incremental.Label" ), gIncremental);
+    wIncremental.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeIncremental();
+	      }
+	} );
+    
+    wCheckpointFile = SwtUtils.addLabelText(gIncremental, BaseMessages.getString( PKG, "RedmineInput.CheckpointFile.Label" ), wIncremental);
+    wCheckpointFile.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // mode group                //
+    // ------------------------- //
+    Group gMode = SwtUtils.addGroup(generalTab, BaseMessages.getString( PKG, "RedmineInput.ModeGroup.Label" ), gIncremental);
+    
+    String[] modes = new String[RedmineInputStepMeta.MODE_CODES.length];
+    for ( int i = 0; i < modes.length; i++ ) {
+    	modes[i] = RedmineInputStepMeta.getModeDescription( RedmineInputStepMeta.MODE_CODES[i] );
+    }
+    wMode = SwtUtils.addLabelCombo(gMode, BaseMessages.getString( PKG, "RedmineInput.Mode.Label" ), modes, gMode);
+    wMode.addModifyListener( lsMod );
+    wMode.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        activeMode();
+	      }
+	} );
+    
+    FocusAdapter lsInputFields = new FocusAdapter() {
+    	public void focusGained( FocusEvent e ) {
+    		setInputFields( (ComboVar) e.widget );
+    	}
+    };
+    
+    wIssueIdField = SwtUtils.addLabelComboVar(transMeta, gMode, BaseMessages.getString( PKG, "RedmineInput.IssueIdField.Label" ), wMode);
+    wIssueIdField.addModifyListener( lsMod );
+    wIssueIdField.addFocusListener( lsInputFields );
+    
+    wAttachmentIdField = SwtUtils.addLabelComboVar(transMeta, gMode, BaseMessages.getString( PKG, "RedmineInput.AttachmentIdField.Label" ), wIssueIdField);
+    wAttachmentIdField.addModifyListener( lsMod );
+    wAttachmentIdField.addFocusListener( lsInputFields );
+    
+    wDownloadDir = SwtUtils.addLabelText(gMode, BaseMessages.getString( PKG, "RedmineInput.DownloadDir.Label" ), wAttachmentIdField);
+    wDownloadDir.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // lookup group              //
+    // ------------------------- //
+    Group gLookup = SwtUtils.addGroup(generalTab, BaseMessages.getString( PKG, "RedmineInput.LookupGroup.Label" ), gMode);
+    
+    wLookupBatch = SwtUtils.addLabelText(gLookup, BaseMessages.getString( PKG, "RedmineInput.LookupBatch.Label" ), gLookup);
+    wLookupBatch.addModifyListener( lsMod );
+    
+    wCacheSize = SwtUtils.addLabelText(gLookup, BaseMessages.getString( PKG, "RedmineInput.CacheSize.Label" ), wLookupBatch);
+    wCacheSize.addModifyListener( lsMod );
+    
+    wCacheTtl = SwtUtils.addLabelText(gLookup, BaseMessages.getString( PKG, "RedmineInput.CacheTtl.Label" ), wCacheSize);
+    wCacheTtl.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // fields tab                //
+    // ------------------------- //
+    Composite fieldsTab = SwtUtils.addTab(shell, wTabFolder, "Fields", wStepname);
+    
+    attributeColumn = new ColumnInfo( BaseMessages.getString( PKG, "RedmineInput.Column.Attribute" ),
+    		ColumnInfo.COLUMN_TYPE_CCOMBO, IssueRowMapper.ATTRIBUTES );
+    ColumnInfo[] columns = new ColumnInfo[] {
+    		new ColumnInfo( BaseMessages.getString( PKG, "RedmineInput.Column.Name" ), ColumnInfo.COLUMN_TYPE_TEXT ),
+    		attributeColumn };
+    wFields = new TableView( transMeta, fieldsTab, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI, columns,
+    		meta.getFieldName().length, lsMod, props );
+    FormData fdFields = new FormData();
+    fdFields.left = new FormAttachment( 0, 0 );
+    fdFields.top = new FormAttachment( 0, margin );
+    fdFields.right = new FormAttachment( 100, 0 );
+    fdFields.bottom = new FormAttachment( 100, 0 );
+    wFields.setLayoutData( fdFields );
+    
+    FormData fdTabFolder = new FormData();
+    fdTabFolder.left = new FormAttachment( 0, 0 );
+    fdTabFolder.top = new FormAttachment( wStepname, margin );
+    fdTabFolder.right = new FormAttachment( 100, 0 );
+    fdTabFolder.bottom = new FormAttachment( 100, -50 );
+    wTabFolder.setLayoutData( fdTabFolder );
+    wTabFolder.setSelection( 0 );
+
+    // OK and cancel buttons
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+    setButtonPositions( new Button[] { wOK, wCancel }, margin, wTabFolder );
+
+    lsCancel = new Listener() {
+      public void handleEvent( Event e ) {
+        cancel();
+      }
+    };
+    lsOK = new Listener() {
+      public void handleEvent( Event e ) {
+        ok();
+      }
+    };
+    wCancel.addListener( SWT.Selection, lsCancel );
+    wOK.addListener( SWT.Selection, lsOK );
+
+    // default listener (for hitting "enter")
+    lsDef = new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    };
+    wStepname.addSelectionListener( lsDef );
+    wRedmineURL.addSelectionListener( lsDef );
+    wRedmineToken.addSelectionListener( lsDef );
+    wPageSize.addSelectionListener( lsDef );
+    wThreads.addSelectionListener( lsDef );
+    wRate.addSelectionListener( lsDef );
+    wProject.addSelectionListener( lsDef );
+    wQueryId.addSelectionListener( lsDef );
+    wStatus.addSelectionListener( lsDef );
+    wTracker.addSelectionListener( lsDef );
+    wUpdatedOn.addSelectionListener( lsDef );
+    wCheckpointFile.addSelectionListener( lsDef );
+    wLookupBatch.addSelectionListener( lsDef );
+    wCacheSize.addSelectionListener( lsDef );
+    wCacheTtl.addSelectionListener( lsDef );
+
+    // Detect X or ALT-F4 or something that kills this window and cancel the dialog properly
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    setSize(shell, 400, 350);
+
+    populateDialog();
+
+    // restore the changed flag to original value, as the modify listeners fire during dialog population  
+    meta.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() ) {
+        display.sleep();
+      }
+    }
+    return stepname;
+  }
+
+  private void populateDialog() {
+    wStepname.selectAll();
+    
+    wRedmineURL.setText( Const.NVL( meta.getRedmineUrl(), "" ) );
+    wRedmineToken.setText( Const.NVL( meta.getRedmineToken(), "" ) );
+    wPageSize.setText( Const.NVL( meta.getRedminePageSize(), "" ) );
+    wThreads.setText( Const.NVL( meta.getRedmineThreads(), "" ) );
+    wRate.setText( Const.NVL( meta.getRedmineRate(), "" ) );
+    wOrdered.setSelection( meta.isRedmineOrdered() );
+    wProject.setText( Const.NVL( meta.getRedmineProject(), "" ) );
+    wQueryId.setText( Const.NVL( meta.getRedmineQueryId(), "" ) );
+    wStatus.setText( Const.NVL( meta.getRedmineStatus(), "" ) );
+    wTracker.setText( Const.NVL( meta.getRedmineTracker(), "" ) );
+    wUpdatedOn.setText( Const.NVL( meta.getRedmineUpdatedOn(), "" ) );
+    wIncremental.setSelection( meta.isRedmineIncremental() );
+    wCheckpointFile.setText( Const.NVL( meta.getRedmineCheckpointFile(), "" ) );
+    activeIncremental();
+    wMode.setText( RedmineInputStepMeta.getModeDescription( meta.getMode() ) );
+    wIssueIdField.setText( Const.NVL( meta.getRedmineIssueIdField(), "" ) );
+    wAttachmentIdField.setText( Const.NVL( meta.getRedmineAttachmentIdField(), "" ) );
+    wDownloadDir.setText( Const.NVL( meta.getRedmineDownloadDir(), "" ) );
+    activeMode();
+    wLookupBatch.setText( Const.NVL( meta.getRedmineLookupBatch(), "" ) );
+    wCacheSize.setText( Const.NVL( meta.getRedmineCacheSize(), "" ) );
+    wCacheTtl.setText( Const.NVL( meta.getRedmineCacheTtl(), "" ) );
+    
+    for ( int i = 0; i < meta.getFieldName().length; i++ ) {
+    	TableItem item = wFields.table.getItem( i );
+    	item.setText( 1, Const.NVL( meta.getFieldName()[i], "" ) );
+    	item.setText( 2, Const.NVL( meta.getFieldAttribute()[i], "" ) );
+    }
+    wFields.setRowNums();
+    wFields.optWidth( true );
+  }
+
+  private void cancel() {
+    stepname = null;
+    meta.setChanged( changed );
+    dispose();
+  }
+
+  private void ok() {
+    stepname = wStepname.getText();
+    
+    meta.setRedmineUrl( wRedmineURL.getText() );
+    meta.setRedmineToken( wRedmineToken.getText() );
+    meta.setRedminePageSize( wPageSize.getText() );
+    meta.setRedmineThreads( wThreads.getText() );
+    meta.setRedmineRate( wRate.getText() );
+    meta.setRedmineOrdered( wOrdered.getSelection() );
+    meta.setRedmineProject( wProject.getText() );
+    meta.setRedmineQueryId( wQueryId.getText() );
+    meta.setRedmineStatus( wStatus.getText() );
+    meta.setRedmineTracker( wTracker.getText() );
+    meta.setRedmineUpdatedOn( wUpdatedOn.getText() );
+    meta.setRedmineIncremental( wIncremental.getSelection() );
+    meta.setRedmineCheckpointFile( wCheckpointFile.getText() );
+    meta.setRedmineMode( RedmineInputStepMeta.getModeCode( wMode.getText() ) );
+    meta.setRedmineIssueIdField( wIssueIdField.getText() );
+    meta.setRedmineAttachmentIdField( wAttachmentIdField.getText() );
+    meta.setRedmineDownloadDir( wDownloadDir.getText() );
+    meta.setRedmineLookupBatch( wLookupBatch.getText() );
+    meta.setRedmineCacheSize( wCacheSize.getText() );
+    meta.setRedmineCacheTtl( wCacheTtl.getText() );
+    
+    int nrFields = wFields.nrNonEmpty();
+    meta.allocate( nrFields );
+    for ( int i = 0; i < nrFields; i++ ) {
+    	TableItem item = wFields.getNonEmpty( i );
+    	meta.getFieldName()[i] = item.getText( 1 );
+    	meta.getFieldAttribute()[i] = item.getText( 2 );
+    }
+    
+    dispose();
+  }
+  
+  private void activeIncremental() {
+    wCheckpointFile.setEnabled( wIncremental.getSelection() );
+  }
+  
+  private void activeMode() {
+    String mode = RedmineInputStepMeta.getModeCode( wMode.getText() );
+    boolean attachments = RedmineInputStepMeta.MODE_ATTACHMENTS.equals( mode );
+    wAttachmentIdField.setEnabled( attachments );
+    wDownloadDir.setEnabled( attachments );
+    attributeColumn.setComboValues( RedmineInputStepMeta.getModeAttributes( mode ) );
+  }
+  
+  /**
+   * Offers the fields of the previous steps as id field.
+   */
+  private void setInputFields( ComboVar wField ) {
+    String field = wField.getText();
+    try {
+      RowMetaInterface row = transMeta.getPrevStepFields( stepname );
+      wField.setItems( row.getFieldNames() );
+    } catch ( KettleException e ) {
+      logError( BaseMessages.getString( PKG, "System.Dialog.GetFieldsFailed.Message" ) );
+    }
+    wField.setText( field );
+  }
+}
@@ -0,0 +1,728 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.util.List;
+
+import org.eclipse.swt.widgets.Shell;
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.injection.Injection;
+import org.pentaho.di.core.injection.InjectionSupported;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaBoolean;
+import org.pentaho.di.core.row.value.ValueMetaDate;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+/**
+ * Settings of the Redmine input step: the connection, the filters of the
+ * issue listing and the issue attribute read into each output field.
+ */
+@Step(id = "Redmine-Input-Plugin", 
+      name = "RedmineInputStep.Name", 
+      description = "RedmineInputStep.TooltipDesc",
+      image = "es/jcozar/pdi/redmine/plugin/resources/logo.svg", 
+      categoryDescription = "i18n:org.pentaho.di.trans.step:BaseStep.Category.Input", 
+      i18nPackageName = "es.jcozar.pdi.redmine.plugin")
+@InjectionSupported(localizationPrefix = "RedmineInputStepMeta.Injection.", groups = { "FIELDS" })
+public class RedmineInputStepMeta extends BaseStepMeta implements StepMetaInterface {
+
+	private static final Class<?> PKG = RedmineInputStepMeta.class; // for i18n purposes
+
+	/**
+	 * Mode codes, as stored in the transformation: what is read for each
+	 * issue.
+	 */
+	public static final String MODE_ISSUES = "issues";
+	public static final String MODE_JOURNALS = "journals";
+	public static final String MODE_ATTACHMENTS = "attachments";
+
+	public static final String[] MODE_CODES = { MODE_ISSUES, MODE_JOURNALS, MODE_ATTACHMENTS };
+
+	/**
+	 * Redmine caps the issues of a listing call, larger pages are clamped.
+	 */
+	public static final int MAX_PAGE_SIZE = 100;
+
+	@Injection(name = "REDMINE_URL")
+	private String redmineUrl;
+
+	@Injection(name = "REDMINE_TOKEN")
+	private String redmineToken;
+
+	/*
+	 * FILTERS, not applied when empty
+	 */
+	@Injection(name = "REDMINE_PROJECT")
+	private String redmineProject;
+
+	@Injection(name = "REDMINE_QUERY_ID")
+	private String redmineQueryId;
+
+	@Injection(name = "REDMINE_STATUS")
+	private String redmineStatus;
+
+	@Injection(name = "REDMINE_TRACKER")
+	private String redmineTracker;
+
+	@Injection(name = "REDMINE_UPDATED_ON")
+	private String redmineUpdatedOn;
+
+	@Injection(name = "REDMINE_PAGE_SIZE")
+	private String redminePageSize;
+
+	@Injection(name = "REDMINE_THREADS")
+	private String redmineThreads;
+
+	@Injection(name = "REDMINE_ORDERED")
+	private boolean redmineOrdered;
+
+	@Injection(name = "REDMINE_INCREMENTAL")
+	private boolean redmineIncremental;
+
+	@Injection(name = "REDMINE_CHECKPOINT_FILE")
+	private String redmineCheckpointFile;
+
+	@Injection(name = "REDMINE_MODE")
+	private String redmineMode;
+
+	@Injection(name = "REDMINE_ISSUE_ID_FIELD")
+	private String redmineIssueIdField;
+
+	@Injection(name = "REDMINE_ATTACHMENT_ID_FIELD")
+	private String redmineAttachmentIdField;
+
+	@Injection(name = "REDMINE_DOWNLOAD_DIR")
+	private String redmineDownloadDir;
+
+	@Injection(name = "REDMINE_RATE")
+	private String redmineRate;
+
+	@Injection(name = "REDMINE_LOOKUP_BATCH")
+	private String redmineLookupBatch;
+
+	@Injection(name = "REDMINE_CACHE_SIZE")
+	private String redmineCacheSize;
+
+	@Injection(name = "REDMINE_CACHE_TTL")
+	private String redmineCacheTtl;
+
+	/*
+	 * OUTPUT FIELDS, the issue attribute read into each field
+	 */
+	@Injection(name = "FIELD_NAME", group = "FIELDS")
+	private String[] fieldName;
+
+	@Injection(name = "FIELD_ATTRIBUTE", group = "FIELDS")
+	private String[] fieldAttribute;
+
+	public RedmineInputStepMeta() {
+		super();
+	}
+
+	public StepDialogInterface getDialog(Shell shell, StepMetaInterface meta, TransMeta transMeta, String name) {
+		return new RedmineInputStepDialog(shell, meta, transMeta, name);
+	}
+
+	public StepInterface getStep(StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta transMeta,
+			Trans disp) {
+		return new RedmineInputStep(stepMeta, stepDataInterface, cnr, transMeta, disp);
+	}
+
+	public StepDataInterface getStepData() {
+		return new RedmineInputStepData();
+	}
+
+	/**
+	 * Sets the defaults of a new step: every issue of the project, with a
+	 * few common attributes.
+	 */
+	public void setDefault() {
+		setRedmineUrl("http://localhost:8080/Redmine/api");
+		setRedmineToken("");
+		setRedmineProject("");
+		setRedmineQueryId("");
+		setRedmineStatus("*");
+		setRedmineTracker("");
+		setRedmineUpdatedOn("");
+		setRedminePageSize("100");
+		
+		setRedmineThreads("1");
+		setRedmineOrdered(true);
+		setRedmineIncremental(false);
+		setRedmineCheckpointFile("${java.io.tmpdir}/redmine-input-checkpoint.bin");
+		setRedmineMode(MODE_ISSUES);
+		setRedmineIssueIdField("");
+		setRedmineAttachmentIdField("");
+		setRedmineDownloadDir("${java.io.tmpdir}/redmine-attachments");
+		setRedmineRate("");
+		setRedmineLookupBatch("50");
+		setRedmineCacheSize("10000");
+		setRedmineCacheTtl("600");
+		String[] attributes = { "id", "tracker.name", "status.name", "subject", "assigned_to.name", "updated_on" };
+		allocate(attributes.length);
+		for (int i = 0; i < attributes.length; i++) {
+			fieldName[i] = "issue_" + attributes[i].replace('.', '_');
+			fieldAttribute[i] = attributes[i];
+		}
+	}
+
+	/**
+	 * Allocates the output field arrays.
+	 */
+	public void allocate(int nrFields) {
+		fieldName = new String[nrFields];
+		fieldAttribute = new String[nrFields];
+	}
+
+	public String getRedmineUrl() {
+		return redmineUrl;
+	}
+
+	public void setRedmineUrl(String redmineUrl) {
+		this.redmineUrl = redmineUrl;
+	}
+
+	public String getRedmineToken() {
+		return redmineToken;
+	}
+
+	public void setRedmineToken(String redmineToken) {
+		this.redmineToken = redmineToken;
+	}
+
+	/**
+	 * @return the identifier of the project to read, empty for every project
+	 */
+	public String getRedmineProject() {
+		return redmineProject;
+	}
+
+	public void setRedmineProject(String redmineProject) {
+		this.redmineProject = redmineProject;
+	}
+
+	/**
+	 * @return the id of a saved query filtering the issues
+	 */
+	public String getRedmineQueryId() {
+		return redmineQueryId;
+	}
+
+	public void setRedmineQueryId(String redmineQueryId) {
+		this.redmineQueryId = redmineQueryId;
+	}
+
+	/**
+	 * @return the status filter: a status id, "open", "closed" or "*" for all
+	 */
+	public String getRedmineStatus() {
+		return redmineStatus;
+	}
+
+	public void setRedmineStatus(String redmineStatus) {
+		this.redmineStatus = redmineStatus;
+	}
+
+	public String getRedmineTracker() {
+		return redmineTracker;
+	}
+
+	public void setRedmineTracker(String redmineTracker) {
+		this.redmineTracker = redmineTracker;
+	}
+
+	/**
+	 * @return the updated_on filter, as in the API: "&gt;=2020-01-01",
+	 *         "&gt;&lt;2020-01-01|2020-12-31"...
+	 */
+	public String getRedmineUpdatedOn() {
+		return redmineUpdatedOn;
+	}
+
+	public void setRedmineUpdatedOn(String redmineUpdatedOn) {
+		this.redmineUpdatedOn = redmineUpdatedOn;
+	}
+
+	public String getRedminePageSize() {
+		return redminePageSize;
+	}
+
+	public void setRedminePageSize(String redminePageSize) {
+		this.redminePageSize = redminePageSize;
+	}
+
+	/**
+	 * @return the number of pages fetched at once by each step copy
+	 */
+	public String getRedmineThreads() {
+		return redmineThreads;
+	}
+
+	public void setRedmineThreads(String redmineThreads) {
+		this.redmineThreads = redmineThreads;
+	}
+
+	/**
+	 * @return true to emit the issues in id order, false to emit each page as soon as it arrives
+	 */
+	public boolean isRedmineOrdered() {
+		return redmineOrdered;
+	}
+
+	public void setRedmineOrdered(boolean redmineOrdered) {
+		this.redmineOrdered = redmineOrdered;
+	}
+
+	public boolean isRedmineIncremental() {
+		return redmineIncremental;
+	}
+
+	public void setRedmineIncremental(boolean redmineIncremental) {
+		this.redmineIncremental = redmineIncremental;
+	}
+
+	public String getRedmineCheckpointFile() {
+		return redmineCheckpointFile;
+	}
+
+	public void setRedmineCheckpointFile(String redmineCheckpointFile) {
+		this.redmineCheckpointFile = redmineCheckpointFile;
+	}
+
+	/**
+	 * @return one of the MODE_* codes
+	 */
+	public String getRedmineMode() {
+		return redmineMode;
+	}
+
+	public void setRedmineMode(String redmineMode) {
+		this.redmineMode = redmineMode;
+	}
+
+	/**
+	 * @return the mode code, issues when not set
+	 */
+	public String getMode() {
+		return Const.isEmpty(redmineMode) ? MODE_ISSUES : redmineMode;
+	}
+
+	/**
+	 * @return the localized description of a mode code
+	 */
+	public static String getModeDescription(String code) {
+		return BaseMessages.getString(PKG, "RedmineInput.Mode." + code);
+	}
+
+	/**
+	 * @return the mode code of a localized description, issues if unknown
+	 */
+	public static String getModeCode(String description) {
+		for (String code : MODE_CODES) {
+			if (getModeDescription(code).equals(description)) {
+				return code;
+			}
+		}
+		return MODE_ISSUES;
+	}
+
+	/**
+	 * @return the issue attributes offered for the output fields of a mode
+	 */
+	public static String[] getModeAttributes(String code) {
+		if (MODE_JOURNALS.equals(code)) {
+			return IssueRowMapper.JOURNAL_ATTRIBUTES;
+		}
+		if (MODE_ATTACHMENTS.equals(code)) {
+			return IssueRowMapper.ATTACHMENT_ATTRIBUTES;
+		}
+		return IssueRowMapper.ATTRIBUTES;
+	}
+
+	/**
+	 * @return the input field holding the issues to look up, or to read the
+	 *         journals or attachments of, empty to read the listing
+	 */
+	public String getRedmineIssueIdField() {
+		return redmineIssueIdField;
+	}
+
+	public void setRedmineIssueIdField(String redmineIssueIdField) {
+		this.redmineIssueIdField = redmineIssueIdField;
+	}
+
+	/**
+	 * @return the input field holding the attachments to download, empty to
+	 *         download those of the issues
+	 */
+	public String getRedmineAttachmentIdField() {
+		return redmineAttachmentIdField;
+	}
+
+	public void setRedmineAttachmentIdField(String redmineAttachmentIdField) {
+		this.redmineAttachmentIdField = redmineAttachmentIdField;
+	}
+
+	/**
+	 * @return the directory the attachments are downloaded to
+	 */
+	public String getRedmineDownloadDir() {
+		return redmineDownloadDir;
+	}
+
+	public void setRedmineDownloadDir(String redmineDownloadDir) {
+		this.redmineDownloadDir = redmineDownloadDir;
+	}
+
+	/**
+	 * @return the maximum number of requests per second, empty for no limit
+	 */
+	public String getRedmineRate() {
+		return redmineRate;
+	}
+
+	public void setRedmineRate(String redmineRate) {
+		this.redmineRate = redmineRate;
+	}
+
+	/**
+	 * @return the number of input issues looked up with each listing call
+	 */
+	public String getRedmineLookupBatch() {
+		return redmineLookupBatch;
+	}
+
+	public void setRedmineLookupBatch(String redmineLookupBatch) {
+		this.redmineLookupBatch = redmineLookupBatch;
+	}
+
+	/**
+	 * @return the maximum number of looked up issues kept in memory
+	 */
+	public String getRedmineCacheSize() {
+		return redmineCacheSize;
+	}
+
+	public void setRedmineCacheSize(String redmineCacheSize) {
+		this.redmineCacheSize = redmineCacheSize;
+	}
+
+	/**
+	 * @return the seconds a looked up issue is kept in memory
+	 */
+	public String getRedmineCacheTtl() {
+		return redmineCacheTtl;
+	}
+
+	public void setRedmineCacheTtl(String redmineCacheTtl) {
+		this.redmineCacheTtl = redmineCacheTtl;
+	}
+
+	/**
+	 * @return the input field holding the ids read, the attachment id field
+	 *         when downloading given attachments, the issue id field
+	 *         otherwise
+	 */
+	public String getInputIdField() {
+		if (MODE_ATTACHMENTS.equals(getMode()) && !Const.isEmpty(redmineAttachmentIdField)) {
+			return redmineAttachmentIdField;
+		}
+		return redmineIssueIdField;
+	}
+
+	/**
+	 * @return whether the ids come from the input rows instead of the
+	 *         listing
+	 */
+	public boolean isFromInput() {
+		return !Const.isEmpty(getInputIdField());
+	}
+
+	/**
+	 * @return whether the input issues are looked up, their attributes being
+	 *         appended to the input rows
+	 */
+	public boolean isLookup() {
+		return isFromInput() && MODE_ISSUES.equals(getMode());
+	}
+
+	public String[] getFieldName() {
+		return fieldName;
+	}
+
+	public void setFieldName(String[] fieldName) {
+		this.fieldName = fieldName;
+	}
+
+	public String[] getFieldAttribute() {
+		return fieldAttribute;
+	}
+
+	public void setFieldAttribute(String[] fieldAttribute) {
+		this.fieldAttribute = fieldAttribute;
+	}
+
+	public Object clone() {
+		RedmineInputStepMeta retval = (RedmineInputStepMeta) super.clone();
+		retval.allocate(fieldName.length);
+		System.arraycopy(fieldName, 0, retval.fieldName, 0, fieldName.length);
+		System.arraycopy(fieldAttribute, 0, retval.fieldAttribute, 0, fieldAttribute.length);
+		return retval;
+	}
+
+	public String getXML() throws KettleValueException {
+		StringBuilder xml = new StringBuilder();
+
+		xml.append(XMLHandler.addTagValue("redmineUrl", redmineUrl));
+		xml.append(XMLHandler.addTagValue("redmineToken", redmineToken));
+		xml.append(XMLHandler.addTagValue("redmineProject", redmineProject));
+		xml.append(XMLHandler.addTagValue("redmineQueryId", redmineQueryId));
+		xml.append(XMLHandler.addTagValue("redmineStatus", redmineStatus));
+		xml.append(XMLHandler.addTagValue("redmineTracker", redmineTracker));
+		xml.append(XMLHandler.addTagValue("redmineUpdatedOn", redmineUpdatedOn));
+		xml.append(XMLHandler.addTagValue("redminePageSize", redminePageSize));
+		xml.append(XMLHandler.addTagValue("redmineThreads", redmineThreads));
+		xml.append(XMLHandler.addTagValue("redmineOrdered", redmineOrdered));
+		xml.append(XMLHandler.addTagValue("redmineIncremental", redmineIncremental));
+		xml.append(XMLHandler.addTagValue("redmineCheckpointFile", redmineCheckpointFile));
+		xml.append(XMLHandler.addTagValue("redmineMode", redmineMode));
+		xml.append(XMLHandler.addTagValue("redmineIssueIdField", redmineIssueIdField));
+		xml.append(XMLHandler.addTagValue("redmineAttachmentIdField", redmineAttachmentIdField));
+		xml.append(XMLHandler.addTagValue("redmineDownloadDir", redmineDownloadDir));
+		xml.append(XMLHandler.addTagValue("redmineRate", redmineRate));
+		xml.append(XMLHandler.addTagValue("redmineLookupBatch", redmineLookupBatch));
+		xml.append(XMLHandler.addTagValue("redmineCacheSize", redmineCacheSize));
+		xml.append(XMLHandler.addTagValue("redmineCacheTtl", redmineCacheTtl));
+		xml.append(XMLHandler.openTag("fields"));
+		for (int i = 0; i < fieldName.length; i++) {
+			xml.append(XMLHandler.openTag("field"));
+			xml.append(XMLHandler.addTagValue("name", fieldName[i]));
+			xml.append(XMLHandler.addTagValue("attribute", fieldAttribute[i]));
+			xml.append(XMLHandler.closeTag("field"));
+		}
+		xml.append(XMLHandler.closeTag("fields"));
+
+		return xml.toString();
+	}
+
+	public void loadXML(Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore) throws KettleXMLException {
+		try {
+			setRedmineUrl(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineUrl")));
+			setRedmineToken(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineToken")));
+			setRedmineProject(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineProject")));
+			setRedmineQueryId(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineQueryId")));
+			setRedmineStatus(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineStatus")));
+			setRedmineTracker(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineTracker")));
+			setRedmineUpdatedOn(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineUpdatedOn")));
+			setRedminePageSize(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redminePageSize")));
+			setRedmineThreads(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineThreads")));
+			setRedmineOrdered("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineOrdered"))));
+			setRedmineIncremental("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineIncremental"))));
+			setRedmineCheckpointFile(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineCheckpointFile")));
+			setRedmineMode(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineMode")));
+			setRedmineIssueIdField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineIssueIdField")));
+			setRedmineAttachmentIdField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachmentIdField")));
+			setRedmineDownloadDir(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineDownloadDir")));
+			setRedmineRate(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineRate")));
+			setRedmineLookupBatch(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineLookupBatch")));
+			setRedmineCacheSize(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineCacheSize")));
+			setRedmineCacheTtl(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineCacheTtl")));
+
+			Node fields = XMLHandler.getSubNode(stepnode, "fields");
+			int nrFields = XMLHandler.countNodes(fields, "field");
+			allocate(nrFields);
+			for (int i = 0; i < nrFields; i++) {
+				Node field = XMLHandler.getSubNodeByNr(fields, "field", i);
+				fieldName[i] = XMLHandler.getTagValue(field, "name");
+				fieldAttribute[i] = XMLHandler.getTagValue(field, "attribute");
+			}
+		} catch (Exception e) {
+			throw new KettleXMLException("Redmine input plugin unable to read step info from XML node", e);
+		}
+	}
+
+	public void saveRep(Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step)
+			throws KettleException {
+		try {
+			rep.saveStepAttribute(id_transformation, id_step, "redmineUrl", redmineUrl); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineToken", redmineToken); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineProject", redmineProject); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineQueryId", redmineQueryId); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineStatus", redmineStatus); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineTracker", redmineTracker); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineUpdatedOn", redmineUpdatedOn); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redminePageSize", redminePageSize); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineThreads", redmineThreads); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineOrdered", redmineOrdered); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineIncremental", redmineIncremental); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineCheckpointFile", redmineCheckpointFile); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineMode", redmineMode); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineIssueIdField", redmineIssueIdField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachmentIdField", redmineAttachmentIdField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineDownloadDir", redmineDownloadDir); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineRate", redmineRate); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineLookupBatch", redmineLookupBatch); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineCacheSize", redmineCacheSize); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineCacheTtl", redmineCacheTtl); //$NON-NLS-1$
+			for (int i = 0; i < fieldName.length; i++) {
+				rep.saveStepAttribute(id_transformation, id_step, i, "field_name", fieldName[i]); //$NON-NLS-1$
+				rep.saveStepAttribute(id_transformation, id_step, i, "field_attribute", fieldAttribute[i]); //$NON-NLS-1$
+			}
+		} catch (Exception e) {
+			throw new KettleException("Unable to save step into repository: " + id_step, e);
+		}
+	}
+
+	public void readRep(Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases) throws KettleException {
+		try {
+			redmineUrl = rep.getStepAttributeString(id_step, "redmineUrl"); //$NON-NLS-1$
+			redmineToken = rep.getStepAttributeString(id_step, "redmineToken"); //$NON-NLS-1$
+			redmineProject = rep.getStepAttributeString(id_step, "redmineProject"); //$NON-NLS-1$
+			redmineQueryId = rep.getStepAttributeString(id_step, "redmineQueryId"); //$NON-NLS-1$
+			redmineStatus = rep.getStepAttributeString(id_step, "redmineStatus"); //$NON-NLS-1$
+			redmineTracker = rep.getStepAttributeString(id_step, "redmineTracker"); //$NON-NLS-1$
+			redmineUpdatedOn = rep.getStepAttributeString(id_step, "redmineUpdatedOn"); //$NON-NLS-1$
+			redminePageSize = rep.getStepAttributeString(id_step, "redminePageSize"); //$NON-NLS-1$
+			redmineThreads = rep.getStepAttributeString(id_step, "redmineThreads"); //$NON-NLS-1$
+			redmineOrdered = rep.getStepAttributeBoolean(id_step, "redmineOrdered"); //$NON-NLS-1$
+			redmineIncremental = rep.getStepAttributeBoolean(id_step, "redmineIncremental"); //$NON-NLS-1$
+			redmineCheckpointFile = rep.getStepAttributeString(id_step, "redmineCheckpointFile"); //$NON-NLS-1$
+			redmineMode = rep.getStepAttributeString(id_step, "redmineMode"); //$NON-NLS-1$
+			redmineIssueIdField = rep.getStepAttributeString(id_step, "redmineIssueIdField"); //$NON-NLS-1$
+			redmineAttachmentIdField = rep.getStepAttributeString(id_step, "redmineAttachmentIdField"); //$NON-NLS-1$
+			redmineDownloadDir = rep.getStepAttributeString(id_step, "redmineDownloadDir"); //$NON-NLS-1$
+			redmineRate = rep.getStepAttributeString(id_step, "redmineRate"); //$NON-NLS-1$
+			redmineLookupBatch = rep.getStepAttributeString(id_step, "redmineLookupBatch"); //$NON-NLS-1$
+			redmineCacheSize = rep.getStepAttributeString(id_step, "redmineCacheSize"); //$NON-NLS-1$
+			redmineCacheTtl = rep.getStepAttributeString(id_step, "redmineCacheTtl"); //$NON-NLS-1$
+
+			int nrFields = rep.countNrStepAttributes(id_step, "field_name"); //$NON-NLS-1$
+			allocate(nrFields);
+			for (int i = 0; i < nrFields; i++) {
+				fieldName[i] = rep.getStepAttributeString(id_step, i, "field_name"); //$NON-NLS-1$
+				fieldAttribute[i] = rep.getStepAttributeString(id_step, i, "field_attribute"); //$NON-NLS-1$
+			}
+		} catch (Exception e) {
+			throw new KettleException("Unable to load step from repository", e);
+		}
+	}
+
+	/**
+	 * Adds the output fields, in the order of the settings, to the empty
+	 * row-stream of the step.
+	 */
+	public void getFields(RowMetaInterface inputRowMeta, String name, RowMetaInterface[] info, StepMeta nextStep,
+			VariableSpace space, Repository repository, IMetaStore metaStore) throws KettleStepException {
+
+		// the journals or attachments read replace the input rows
+		if (isFromInput() && !isLookup()) {
+			inputRowMeta.clear();
+		}
+		for (int i = 0; i < fieldName.length; i++) {
+			ValueMetaInterface valueMeta = createValueMeta(IssueRowMapper.getType(fieldAttribute[i]));
+			valueMeta.setName(space.environmentSubstitute(fieldName[i]));
+			valueMeta.setOrigin(name);
+			inputRowMeta.addValueMeta(valueMeta);
+		}
+	}
+
+	private static ValueMetaInterface createValueMeta(int type) {
+		switch (type) {
+		case ValueMetaInterface.TYPE_INTEGER:
+			return new ValueMetaInteger();
+		case ValueMetaInterface.TYPE_NUMBER:
+			return new ValueMetaNumber();
+		case ValueMetaInterface.TYPE_DATE:
+			return new ValueMetaDate();
+		case ValueMetaInterface.TYPE_BOOLEAN:
+			return new ValueMetaBoolean();
+		default:
+			return new ValueMetaString();
+		}
+	}
+
+	public void check(List<CheckResultInterface> remarks, TransMeta transMeta, StepMeta stepMeta, RowMetaInterface prev,
+			String[] input, String[] output, RowMetaInterface info, VariableSpace space, Repository repository,
+			IMetaStore metaStore) {
+		CheckResult cr;
+
+		// the issues come from Redmine, not from the input hops, unless the
+		// ids are read from the input rows
+		if (!isFromInput() && input != null && input.length > 0) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "RedmineInput.CheckResult.NoInputExpected.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+		if (isFromInput() && (prev == null || prev.indexOfValue(getInputIdField()) < 0)) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "RedmineInput.CheckResult.IssueIdField.ERROR", getInputIdField()), stepMeta);
+			remarks.add(cr);
+		}
+
+		String pageSize = space != null ? space.environmentSubstitute(redminePageSize) : redminePageSize;
+		if (!isFromInput() && Const.toInt(pageSize, MAX_PAGE_SIZE) > MAX_PAGE_SIZE) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING,
+					BaseMessages.getString(PKG, "RedmineInput.CheckResult.PageSize.WARNING", pageSize, MAX_PAGE_SIZE), stepMeta);
+			remarks.add(cr);
+		}
+
+		if (fieldName.length == 0) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "RedmineInput.CheckResult.NoFields.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+		for (int i = 0; i < fieldAttribute.length; i++) {
+			if (Const.isEmpty(fieldName[i]) || Const.isEmpty(fieldAttribute[i])) {
+				cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+						BaseMessages.getString(PKG, "RedmineInput.CheckResult.EmptyField.ERROR", i + 1), stepMeta);
+				remarks.add(cr);
+			}
+		}
+	}
+}
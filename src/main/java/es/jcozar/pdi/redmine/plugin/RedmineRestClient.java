@@ -0,0 +1,395 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.taskadapter.redmineapi.NotAuthorizedException;
+import com.taskadapter.redmineapi.NotFoundException;
+import com.taskadapter.redmineapi.RedmineAuthenticationException;
+import com.taskadapter.redmineapi.RedmineException;
+import com.taskadapter.redmineapi.RedmineFormatException;
+import com.taskadapter.redmineapi.RedmineProcessingException;
+import com.taskadapter.redmineapi.RedmineTransportException;
+
+import es.jcozar.pdi.redmine.plugin.utils.BandwidthLimiter;
+
+/**
+ * Minimal JSON client for the Redmine REST calls the Java API does not cover.
+ *
+ * The Java API always sends every attribute of a bean, so updating an issue
+ * through it rewrites all its fields. This client sends exactly the JSON it is
+ * given, which keeps updates limited to the changed attributes. It shares the
+ * HTTP client, and so the connections, of the step's RedmineManager.
+ */
+public class RedmineRestClient {
+
+	/**
+	 * Reads a response body as it is received.
+	 */
+	public interface ResponseReader<T> {
+
+		/**
+		 * @param content the response body, closed by the caller
+		 */
+		T read(InputStream content) throws IOException, RedmineException;
+	}
+
+	private final String baseUrl;
+	private final String apiKey;
+	private final HttpClient httpClient;
+
+	/**
+	 * @param url        the Redmine base URL
+	 * @param apiKey     the API access key
+	 * @param httpClient the HTTP client used for the calls
+	 */
+	public RedmineRestClient(String url, String apiKey, HttpClient httpClient) {
+		this.baseUrl = url.endsWith("/") ? url : url + "/";
+		this.apiKey = apiKey;
+		this.httpClient = httpClient;
+	}
+
+	/**
+	 * @param maxConnections the connections kept open at most
+	 * 
+	 * @return a pooled HTTP client for the Redmine calls, honouring the proxy
+	 *         settings of the JVM like the clients of the Java API
+	 */
+	public static CloseableHttpClient newHttpClient(int maxConnections) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnections);
+		return HttpClients.custom().setConnectionManager(connectionManager).useSystemProperties().build();
+	}
+
+	/**
+	 * Sends a sparse issue update.
+	 *
+	 * @param issueId the issue to update
+	 * @param fields  the issue attributes to change, plus "notes" to add a journal note
+	 */
+	public void updateIssue(int issueId, Map<String, Object> fields) throws RedmineException {
+		updateIssue(issueId, new JSONObject(fields));
+	}
+
+	public void updateIssue(int issueId, JSONObject fields) throws RedmineException {
+		put("issues/" + issueId + ".json", wrap("issue", fields));
+	}
+
+	/**
+	 * Creates an issue with exactly the given attributes.
+	 *
+	 * @param fields the issue attributes, as in the "issue" object of the API
+	 *
+	 * @return the id of the created issue
+	 */
+	public int createIssue(JSONObject fields) throws RedmineException {
+		JSONObject response = post("issues.json", wrap("issue", fields));
+		if (response == null) {
+			throw new RedmineFormatException("Empty response creating the issue");
+		}
+		try {
+			return response.getJSONObject("issue").getInt("id");
+		} catch (JSONException e) {
+			throw new RedmineFormatException(e);
+		}
+	}
+
+	/**
+	 * Logs a time entry.
+	 *
+	 * @param fields the time entry attributes, as in the "time_entry" object of the API
+	 *
+	 * @return the id of the created time entry
+	 */
+	public int createTimeEntry(Map<String, Object> fields) throws RedmineException {
+		JSONObject response = post("time_entries.json", wrap("time_entry", new JSONObject(fields)));
+		if (response == null) {
+			throw new RedmineFormatException("Empty response creating the time entry");
+		}
+		try {
+			return response.getJSONObject("time_entry").getInt("id");
+		} catch (JSONException e) {
+			throw new RedmineFormatException(e);
+		}
+	}
+
+	/**
+	 * @return the ids of the time entry activities by lower case name
+	 */
+	public Map<String, Integer> getTimeEntryActivities() throws RedmineException {
+		JSONObject response = get("enumerations/time_entry_activities.json");
+		Map<String, Integer> activities = new HashMap<String, Integer>();
+		if (response == null) {
+			return activities;
+		}
+		try {
+			JSONArray array = response.getJSONArray("time_entry_activities");
+			for (int i = 0; i < array.length(); i++) {
+				JSONObject activity = array.getJSONObject(i);
+				activities.put(activity.getString("name").trim().toLowerCase(), activity.getInt("id"));
+			}
+		} catch (JSONException e) {
+			throw new RedmineFormatException(e);
+		}
+		return activities;
+	}
+
+	/**
+	 * Looks a user up by login. Listing the users needs administrator rights.
+	 *
+	 * @return the id of the user, null if there is no active user with the login
+	 */
+	public Integer findUserId(String login) throws RedmineException {
+		JSONObject response;
+		try {
+			response = get("users.json?limit=100&name=" + URLEncoder.encode(login, "UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new RedmineFormatException(e);
+		}
+		if (response == null) {
+			return null;
+		}
+		try {
+			// the name filter also matches names and mails
+			JSONArray users = response.getJSONArray("users");
+			for (int i = 0; i < users.length(); i++) {
+				JSONObject user = users.getJSONObject(i);
+				if (login.equalsIgnoreCase(user.optString("login"))) {
+					return user.getInt("id");
+				}
+			}
+		} catch (JSONException e) {
+			throw new RedmineFormatException(e);
+		}
+		return null;
+	}
+
+	/**
+	 * Uploads an attachment content, streamed from disk or memory.
+	 *
+	 * @param content the content to upload
+	 * @param limiter the limiter pacing the upload, null for no limit
+	 *
+	 * @return the token attaching the upload to the issue it is sent with
+	 */
+	public String upload(AttachmentContent content, BandwidthLimiter limiter) throws RedmineException {
+		JSONObject response = execute(new HttpPost(baseUrl + "uploads.json"), content.toEntity(limiter));
+		if (response == null) {
+			throw new RedmineFormatException("Empty response uploading " + content);
+		}
+		try {
+			return response.getJSONObject("upload").getString("token");
+		} catch (JSONException e) {
+			throw new RedmineFormatException(e);
+		}
+	}
+
+	public JSONObject get(String path) throws RedmineException {
+		return execute(new HttpGet(baseUrl + path), (HttpEntity) null);
+	}
+
+	/**
+	 * Reads the response of a GET without buffering it, so it can be parsed
+	 * while it is received.
+	 */
+	public <T> T get(String path, ResponseReader<T> reader) throws RedmineException {
+		return getUrl(baseUrl + path, reader);
+	}
+
+	/**
+	 * Reads the response of a GET to a full URL, like the content URL of an
+	 * attachment, without buffering it. The API key is only sent to the
+	 * Redmine server itself.
+	 */
+	public <T> T getUrl(String url, ResponseReader<T> reader) throws RedmineException {
+		HttpGet request = new HttpGet(url);
+		if (sameOrigin(request.getURI(), baseUrl)) {
+			request.addHeader("X-Redmine-API-Key", apiKey);
+		}
+		try {
+			HttpResponse response = httpClient.execute(request);
+			int status = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			if (status >= 300 || entity == null) {
+				String content = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+				checkStatus(request, status, content);
+				throw new RedmineFormatException("Empty response for GET " + request.getURI());
+			}
+			InputStream content = entity.getContent();
+			try {
+				return reader.read(content);
+			} finally {
+				// closing the content releases the connection to the pool
+				content.close();
+			}
+		} catch (IOException e) {
+			request.abort();
+			throw new RedmineTransportException("Cannot GET " + request.getURI(), e);
+		}
+	}
+
+	/**
+	 * @return whether the URI has the scheme, host and port of the base URL
+	 */
+	static boolean sameOrigin(URI uri, String baseUrl) {
+		URI base;
+		try {
+			base = new URI(baseUrl);
+		} catch (URISyntaxException e) {
+			return false;
+		}
+		return uri.getScheme() != null && uri.getScheme().equalsIgnoreCase(base.getScheme())
+				&& uri.getHost() != null && uri.getHost().equalsIgnoreCase(base.getHost())
+				&& port(uri) == port(base);
+	}
+
+	private static int port(URI uri) {
+		if (uri.getPort() != -1) {
+			return uri.getPort();
+		}
+		return "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+	}
+
+	public JSONObject post(String path, JSONObject body) throws RedmineException {
+		return execute(new HttpPost(baseUrl + path), body);
+	}
+
+	public JSONObject put(String path, JSONObject body) throws RedmineException {
+		return execute(new HttpPut(baseUrl + path), body);
+	}
+
+	public JSONObject delete(String path) throws RedmineException {
+		return execute(new HttpDelete(baseUrl + path), (HttpEntity) null);
+	}
+
+	/**
+	 * @return a JSON object holding the value under the given name
+	 */
+	public static JSONObject wrap(String name, Object value) throws RedmineException {
+		try {
+			return new JSONObject().put(name, value);
+		} catch (JSONException e) {
+			throw new RedmineFormatException(e);
+		}
+	}
+
+	private JSONObject execute(HttpRequestBase request, JSONObject body) throws RedmineException {
+		return execute(request, body != null ? new StringEntity(body.toString(), ContentType.APPLICATION_JSON) : null);
+	}
+
+	private JSONObject execute(HttpRequestBase request, HttpEntity body) throws RedmineException {
+		request.addHeader("X-Redmine-API-Key", apiKey);
+		if (body != null) {
+			((HttpEntityEnclosingRequestBase) request).setEntity(body);
+		}
+
+		int status;
+		String content;
+		try {
+			HttpResponse response = httpClient.execute(request);
+			status = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			// consuming the entity returns the connection to the pool
+			content = entity == null ? "" : EntityUtils.toString(entity, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			request.abort();
+			throw new RedmineTransportException("Cannot " + request.getMethod() + " " + request.getURI(), e);
+		}
+		checkStatus(request, status, content);
+
+		if (content.trim().isEmpty()) {
+			return null;
+		}
+		try {
+			return new JSONObject(content);
+		} catch (JSONException e) {
+			throw new RedmineFormatException("Unexpected response: " + content, e);
+		}
+	}
+
+	/**
+	 * Throws the exception the Java API would for an error status.
+	 */
+	private static void checkStatus(HttpRequestBase request, int status, String content) throws RedmineException {
+		switch (status) {
+		case HttpStatus.SC_UNAUTHORIZED:
+			throw new RedmineAuthenticationException("Authorization error. Please check the API key");
+		case HttpStatus.SC_FORBIDDEN:
+			throw new NotAuthorizedException("Forbidden. Please check the user has proper permissions");
+		case HttpStatus.SC_NOT_FOUND:
+			throw new NotFoundException("Server returned '404 not found'. response body:" + content);
+		case HttpStatus.SC_UNPROCESSABLE_ENTITY:
+			throw new RedmineProcessingException(parseErrors(content));
+		default:
+			if (status >= 300) {
+				throw new RedmineTransportException("Server returned HTTP " + status + " for "
+						+ request.getMethod() + " " + request.getURI());
+			}
+		}
+	}
+
+	private static List<String> parseErrors(String content) {
+		List<String> errors = new ArrayList<String>();
+		try {
+			JSONArray array = new JSONObject(content).getJSONArray("errors");
+			for (int i = 0; i < array.length(); i++) {
+				errors.add(array.getString(i));
+			}
+		} catch (JSONException e) {
+			errors.add(content);
+		}
+		return errors;
+	}
+}
@@ -24,11 +24,38 @@ package es.jcozar.pdi.redmine.plugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowDataUtil;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
 import org.pentaho.di.trans.TransMeta;
@@ -40,11 +67,22 @@ import org.pentaho.di.trans.step.StepMetaInterface;
 
 import com.taskadapter.redmineapi.ProjectManager;
 import com.taskadapter.redmineapi.RedmineException;
+import com.taskadapter.redmineapi.RedmineFormatException;
 import com.taskadapter.redmineapi.RedmineManager;
 import com.taskadapter.redmineapi.RedmineManagerFactory;
+import com.taskadapter.redmineapi.RedmineProcessingException;
+import com.taskadapter.redmineapi.bean.Attachment;
+import com.taskadapter.redmineapi.bean.AttachmentFactory;
 import com.taskadapter.redmineapi.bean.Issue;
 import com.taskadapter.redmineapi.bean.IssueCategoryFactory;
+import com.taskadapter.redmineapi.bean.IssueCategory;
+import com.taskadapter.redmineapi.bean.IssueFactory;
+import com.taskadapter.redmineapi.bean.Membership;
 import com.taskadapter.redmineapi.bean.UserFactory;
+import com.taskadapter.redmineapi.bean.Watcher;
+import com.taskadapter.redmineapi.bean.WatcherFactory;
+
+import es.jcozar.pdi.redmine.plugin.utils.BandwidthLimiter;
 
 /**
  * The step will receive data and will create a redmine issue based
@@ -55,6 +93,34 @@ public class RedmineStep extends BaseStep implements StepInterface {
 
 	private static final Class<?> PKG = RedmineStep.class; // for i18n purposes
 	
+	/**
+	 * Values of the outcome output field.
+	 */
+	public static final String OUTCOME_CREATED = "created";
+	public static final String OUTCOME_DUPLICATE = "duplicate";
+	public static final String OUTCOME_UPDATED = "updated";
+	public static final String OUTCOME_FAILED = "failed";
+	public static final String OUTCOME_SUPPRESSED = "suppressed";
+	public static final String OUTCOME_DELETED = "deleted";
+	public static final String OUTCOME_UNCHANGED = "unchanged";
+	public static final String OUTCOME_CONFLICT = "conflict";
+	
+	// relation types of the relation fields, in the order of the fields
+	private static final String[] RELATION_TYPES = { "relates", "blocks", "precedes" };
+	
+	// delay before the first retry of a background attachment, doubled on each retry
+	private static final long ATTACH_RETRY_DELAY = 1000L;
+	
+	// most external keys kept per step copy
+	private static final int MAX_KEYS = 1000000;
+	
+	// longest wait for another upload of the same content to be attached
+	private static final long ATTACH_CLAIM_TIMEOUT = 60 * 1000L;
+	
+	// bounds of the flush timer period, a tenth of the shortest window
+	private static final long FLUSH_MIN_PERIOD = 100L;
+	private static final long FLUSH_MAX_PERIOD = 1000L;
+	
 	/**
 	 * The constructor should simply pass on its arguments to the parent class.
 	 * 
@@ -97,7 +163,163 @@ public class RedmineStep extends BaseStep implements StepInterface {
 			return false;
 		}
 
-		// no work needed
+		// one client per step copy, reused for every row. The REST client sends
+		// the calls the Java API does not cover through the same connections.
+		String url = environmentSubstitute(meta.getRedmineUrl());
+		String token = environmentSubstitute(meta.getRedmineToken());
+		int threads = Math.max(1, Const.toInt(environmentSubstitute(meta.getRedmineThreads()), 1));
+		data.httpClient = RedmineRestClient.newHttpClient(threads);
+		data.redmineManager = RedmineManagerFactory.createWithApiKey(url, token, data.httpClient);
+		data.restClient = new RedmineRestClient(url, token, data.httpClient);
+		
+		long uploadRate = Const.toLong(environmentSubstitute(meta.getRedmineUploadRate()), 0);
+		if (uploadRate > 0) {
+			data.uploadLimiter = new BandwidthLimiter(uploadRate * 1024L);
+		}
+		
+		if (meta.isRedmineAttachFile() && meta.isRedmineAttachDeferred()) {
+			data.attachmentQueue = new AttachmentQueue("redmine-attach-" + getStepname() + "." + getCopy(), threads,
+					Const.toInt(environmentSubstitute(meta.getRedmineAttachQueueSize()), 100),
+					Const.toInt(environmentSubstitute(meta.getRedmineAttachRetries()), 3), ATTACH_RETRY_DELAY);
+		}
+		
+		if (meta.isRedmineAttachDedup()) {
+			String filename = environmentSubstitute(meta.getRedmineAttachCacheFile());
+			File file = null;
+			if (!Const.isEmpty(filename)) {
+				file = new File(getStepMeta().getCopies() > 1 ? filename + "." + getCopy() : filename);
+			}
+			data.attachmentCache = new AttachmentCache(file);
+			try {
+				data.attachmentCache.load();
+			} catch (KettleException e) {
+				logError(e.getMessage(), e);
+				return false;
+			}
+		}
+
+		if (threads > 1) {
+			// calls run on the workers, results are passed on by the step thread.
+			// Uploads have their own workers, so a call never waits for a task
+			// queued behind it on the same pool.
+			data.executor = newPool("redmine-" + getStepname() + "." + getCopy(), threads);
+			data.uploadExecutor = newPool("redmine-upload-" + getStepname() + "." + getCopy(), threads);
+			data.maxPending = threads * 2;
+		}
+
+		data.operation = meta.getOperation();
+		data.watchersOnCreate = meta.isRedmineWatchersOnCreate();
+		data.bulk = meta.isRedmineBulk() && RedmineStepMeta.OPERATION_CREATE.equals(data.operation)
+				&& RedmineStepMeta.PLAN_MODE_NONE.equals(meta.getPlanMode());
+		if (meta.isRedmineCoalesce() && RedmineStepMeta.OPERATION_NOTE.equals(data.operation)) {
+			data.coalesce = true;
+			data.coalesceMaxRows = Const.toInt(environmentSubstitute(meta.getRedmineCoalesceMaxRows()), 100);
+			data.coalesceWindow = Const.toLong(environmentSubstitute(meta.getRedmineCoalesceWindow()), 60) * 1000L;
+		}
+		if (RedmineStepMeta.OPERATION_STATUS.equals(data.operation)) {
+			data.statusId = Const.toInt(environmentSubstitute(meta.getRedmineStatusId()), -1);
+			if (data.statusId < 0) {
+				logError(BaseMessages.getString(PKG, "RedmineStep.Error.ErrorStatusValue", meta.getRedmineStatusId()));
+				return false;
+			}
+		}
+
+		if (meta.isRedmineAggregate()) {
+			data.aggregateWindow = Const.toLong(environmentSubstitute(meta.getRedmineAggregateWindow()), 60) * 1000L;
+			data.aggregateMaxRows = Const.toInt(environmentSubstitute(meta.getRedmineAggregateMaxRows()), 1000);
+		}
+
+		if (data.coalesce || meta.isRedmineAggregate()) {
+			// windows end on time, not only when the next row arrives
+			long window = Math.min(data.coalesce ? data.coalesceWindow : Long.MAX_VALUE,
+					meta.isRedmineAggregate() ? data.aggregateWindow : Long.MAX_VALUE);
+			long period = Math.max(FLUSH_MIN_PERIOD, Math.min(FLUSH_MAX_PERIOD, window / 10));
+			data.flushTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "redmine-flush-" + getStepname() + "." + getCopy());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			data.flushTimer.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					flushExpired(meta, data);
+				}
+			}, period, period, TimeUnit.MILLISECONDS);
+		}
+
+		if (meta.isRedmineSuppress()) {
+			String filename = environmentSubstitute(meta.getRedmineSuppressFile());
+			File file = null;
+			if (!Const.isEmpty(filename)) {
+				file = new File(getStepMeta().getCopies() > 1 ? filename + "." + getCopy() : filename);
+			}
+			data.suppression = new SuppressionWindow(
+					Const.toLong(environmentSubstitute(meta.getRedmineSuppressWindow()), 1800) * 1000L,
+					Const.toInt(environmentSubstitute(meta.getRedmineSuppressMaxKeys()), 100000), file);
+			try {
+				data.suppression.load(System.currentTimeMillis());
+			} catch (KettleException e) {
+				logError(e.getMessage(), e);
+				return false;
+			}
+		}
+
+		if (meta.isRedmineDeadLetter() || meta.isRedmineReplay()) {
+			// one spool file per step copy, so copies never share a writer
+			String filename = environmentSubstitute(meta.getRedmineDeadLetterFile());
+			if (getStepMeta().getCopies() > 1) {
+				filename += "." + getCopy();
+			}
+			data.deadLetterFile = new File(filename);
+		}
+
+		if (meta.isRedmineReplay()) {
+			// claim the current spool so the rows failing again during the replay
+			// start a new one. A claimed file left by an aborted replay is reused.
+			data.replayFile = new File(data.deadLetterFile.getPath() + ".replay");
+			if (!data.replayFile.exists() && data.deadLetterFile.exists()
+					&& !data.deadLetterFile.renameTo(data.replayFile)) {
+				logError(BaseMessages.getString(PKG, "RedmineStep.Error.DeadLetterClaim", data.deadLetterFile));
+				return false;
+			}
+			if (data.replayFile.exists()) {
+				try {
+					data.replayReader = new DeadLetterSpool.Reader(data.replayFile);
+				} catch (KettleException e) {
+					logError(e.getMessage(), e);
+					return false;
+				}
+			} else {
+				logBasic(BaseMessages.getString(PKG, "RedmineStep.Info.NothingToReplay", data.deadLetterFile));
+			}
+		}
+
+		if (!RedmineStepMeta.PLAN_MODE_NONE.equals(meta.getPlanMode())) {
+			if (!RedmineStepMeta.OPERATION_CREATE.equals(data.operation)) {
+				logError(BaseMessages.getString(PKG, "RedmineStep.Error.PlanOperation"));
+				return false;
+			}
+			// one plan per step copy, the apply mode must run with the same copies
+			String filename = environmentSubstitute(meta.getRedminePlanFile());
+			if (getStepMeta().getCopies() > 1) {
+				filename += "." + getCopy();
+			}
+			data.planFile = new File(filename);
+			if (RedmineStepMeta.PLAN_MODE_APPLY.equals(meta.getPlanMode())) {
+				if (data.planFile.exists()) {
+					try {
+						data.planReader = new ChangePlan.Reader(data.planFile);
+					} catch (KettleException e) {
+						logError(e.getMessage(), e);
+						return false;
+					}
+				} else {
+					logBasic(BaseMessages.getString(PKG, "RedmineStep.Info.NothingToApply", data.planFile));
+				}
+			}
+		}
+
 		return true;
 	}
 
@@ -133,12 +355,41 @@ public class RedmineStep extends BaseStep implements StepInterface {
 		RedmineStepData data =  (RedmineStepData) sdi;
 
 		// get incoming row, getRow() potentially blocks waiting for more rows, returns
-		// null if no more rows expected
-		Object[] r = getRow();
+		// null if no more rows expected. In replay mode the rows come from the
+		// dead letter file instead of the input hops, in apply mode from the plan.
+		boolean apply = RedmineStepMeta.PLAN_MODE_APPLY.equals(meta.getPlanMode());
+		Object[] r = apply ? getPlanRow(data) : meta.isRedmineReplay() ? getReplayRow(data) : getRow();
+		
+		// the flush timer works on the same state while no row arrives
+		synchronized (data) {
+			return processRow(meta, data, r, apply);
+		}
+	}
+	
+	/**
+	 * Handles a row read by processRow(), holding the lock of the step data.
+	 * 
+	 * @param r     the row read, null at the end of the input
+	 * @param apply true when the row comes from the plan
+	 */
+	private boolean processRow(RedmineStepMeta meta, RedmineStepData data, Object[] r, boolean apply) throws KettleException {
 
 		// if no more rows are expected, indicate step is finished and processRow()
 		// should not be called again
 		if (r == null) {
+			if (data.flushTimer != null) {
+				data.flushTimer.shutdown();
+			}
+			flushNotes(meta, data, Long.MAX_VALUE);
+			flushAggregates(meta, data, Long.MAX_VALUE);
+			drain(meta, data, 0);
+			if (data.importer != null) {
+				runImport(meta, data);
+			}
+			awaitAttachments(data);
+			// the replayed rows are only safe once the new spool is closed
+			data.replaySpooled = closeDeadLetter(data);
+			closePlan(data);
 			setOutputDone();
 			return false;
 		}
@@ -146,7 +397,25 @@ public class RedmineStep extends BaseStep implements StepInterface {
 		if ( first ) {
 			
 			first = false;
-			data.inputRowMeta = getInputRowMeta();
+			if (apply) {
+				data.inputRowMeta = data.planReader.getRowMeta();
+			} else {
+				data.inputRowMeta = meta.isRedmineReplay() ? data.replayReader.getRowMeta() : getInputRowMeta();
+			}
+			
+			// the output row is the input row plus the configured result fields
+			data.outputRowMeta = data.inputRowMeta.clone();
+			meta.getFields( data.outputRowMeta, getStepname(), null, null, this, getRepository(), getMetaStore() );
+			data.indexOfOutputIssueId = indexOfOutputField( data, meta.getOutputField() );
+			data.indexOfOutputIssueUrl = indexOfOutputField( data, meta.getOutputIssueUrlField() );
+			data.indexOfOutputOutcome = indexOfOutputField( data, meta.getOutputOutcomeField() );
+			data.indexOfOutputDuplicateId = indexOfOutputField( data, meta.getOutputDuplicateIdField() );
+			data.indexOfOutputLatency = indexOfOutputField( data, meta.getOutputLatencyField() );
+			data.indexOfOutputTimeEntryId = indexOfOutputField( data, meta.getOutputTimeEntryIdField() );
+			
+			String url = environmentSubstitute( meta.getRedmineUrl() );
+			data.issuesUrl = ( url.endsWith( "/" ) ? url : url + "/" ) + "issues/";
+			data.attachmentsUrl = ( url.endsWith( "/" ) ? url : url + "/" ) + "attachments/";
 			
 			if(meta.isRedmineSubjectInField()) {
 				String realSubjectfieldName = environmentSubstitute( meta.getRedmineSubjectField() );
@@ -178,7 +447,49 @@ public class RedmineStep extends BaseStep implements StepInterface {
 				}
 			}
 			
-			if (meta.isRedmineAttachFile()) {
+			if (RedmineStepMeta.OPERATION_TIME_ENTRY.equals(data.operation)) {
+				// time entries without an issue are logged on the project
+				data.indexOfIssueIdField = indexOfOptionalInputField( data, meta.getRedmineIssueIdField() );
+				data.indexOfTimeUserField = indexOfOptionalInputField( data, meta.getRedmineTimeUserField() );
+				data.indexOfTimeHoursField = indexOfInputField( data, meta.getRedmineTimeHoursField() );
+				data.indexOfTimeActivityField = indexOfOptionalInputField( data, meta.getRedmineTimeActivityField() );
+				data.indexOfTimeDateField = indexOfOptionalInputField( data, meta.getRedmineTimeDateField() );
+				data.indexOfTimeCommentsField = indexOfOptionalInputField( data, meta.getRedmineTimeCommentsField() );
+			} else if (RedmineStepMeta.OPERATION_CREATE.equals(data.operation)) {
+				data.indexOfKeyField = indexOfOptionalInputField( data, meta.getRedmineKeyField() );
+				data.indexOfParentKeyField = indexOfOptionalInputField( data, meta.getRedmineParentKeyField() );
+				data.indexOfRelationFields = new int[] {
+						indexOfOptionalInputField( data, meta.getRedmineRelatesField() ),
+						indexOfOptionalInputField( data, meta.getRedmineBlocksField() ),
+						indexOfOptionalInputField( data, meta.getRedminePrecedesField() ) };
+				data.indexOfWatchersField = indexOfOptionalInputField( data, meta.getRedmineWatchersField() );
+			} else {
+				String realIssueIdfieldName = environmentSubstitute( meta.getRedmineIssueIdField() );
+				data.indexOfIssueIdField = data.inputRowMeta.indexOfValue( realIssueIdfieldName );
+				if ( data.indexOfIssueIdField < 0 ) {
+					logError( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorFindingField", realIssueIdfieldName ) );
+					throw new KettleException( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorFindingField", realIssueIdfieldName ) );
+				}
+			}
+			
+			data.indexOfNoteField = -1;
+			if (!Const.isEmpty(meta.getRedmineNoteField())) {
+				String realNotefieldName = environmentSubstitute( meta.getRedmineNoteField() );
+				data.indexOfNoteField = data.inputRowMeta.indexOfValue( realNotefieldName );
+				if ( data.indexOfNoteField < 0 ) {
+					logError( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorFindingField", realNotefieldName ) );
+					throw new KettleException( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorFindingField", realNotefieldName ) );
+				}
+			}
+			
+			if (meta.isRedmineAttachFile() && meta.isRedmineAttachFromField()) {
+				data.indexOfAttachContentField = indexOfInputField( data, meta.getRedmineAttachContentField() );
+				data.indexOfAttachNameField = indexOfInputField( data, meta.getRedmineAttachNameField() );
+				data.indexOfAttachTypeField = -1;
+				if (!Const.isEmpty(meta.getRedmineAttachTypeField())) {
+					data.indexOfAttachTypeField = indexOfInputField( data, meta.getRedmineAttachTypeField() );
+				}
+			} else if (meta.isRedmineAttachFile()) {
 				String realAttachedFilefieldName = environmentSubstitute( meta.getRedmineAttachFileName() );
 				data.indexOfAttachedFileFilename = data.inputRowMeta.indexOfValue( ( realAttachedFilefieldName ) );
 				if ( data.indexOfAttachedFileFilename < 0 ) {
@@ -187,142 +498,1963 @@ public class RedmineStep extends BaseStep implements StepInterface {
 		            throw new KettleException( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorFindingField", realAttachedFilefieldName ) );
 				}
 			}
+			
+			if (RedmineStepMeta.PLAN_MODE_PLAN.equals(meta.getPlanMode())) {
+				data.planWriter = new ChangePlan.Writer(data.planFile, data.inputRowMeta);
+			}
 		}
 
+		long start = System.nanoTime();
+		
+		if (apply) {
+			apply(meta, data, r, data.planEntry, start);
+			return true;
+		}
+		
+		if (RedmineStepMeta.OPERATION_TIME_ENTRY.equals(data.operation)) {
+			logTime(meta, data, r, start);
+			return true;
+		}
+		
+		Issue issue;
 		try {
-			// Create redmine client
-			RedmineManager mgr = RedmineManagerFactory.createWithApiKey(meta.getRedmineUrl(), meta.getRedmineToken());
+			issue = buildIssue(meta, data, r);
+		} catch (RedmineException e) {
+			submit(meta, data, r, start, PendingCall.Result.failed(e, null));
+			return true;
+		}
+		
+		if (!RedmineStepMeta.OPERATION_CREATE.equals(data.operation)) {
+			// values are read from the row here, value conversions are not thread safe
+			Long issueId = data.inputRowMeta.getInteger(r, data.indexOfIssueIdField);
+			if (issueId == null) {
+				RedmineException e = new RedmineException(BaseMessages.getString( PKG, "RedmineStep.Error.NoIssueId" ));
+				submit(meta, data, r, start, PendingCall.Result.failed(e, null));
+				return true;
+			}
+			final int id = issueId.intValue();
+			final String note = data.indexOfNoteField >= 0 ? data.inputRowMeta.getString(r, data.indexOfNoteField) : null;
+			if (data.coalesce) {
+				coalesce(meta, data, r, id, note);
+				return true;
+			}
+			final Issue mapped = issue;
+			final List<AttachmentContent> attachments = RedmineStepMeta.OPERATION_UPDATE.equals(data.operation)
+					? readAttachments(meta, data, r) : Collections.<AttachmentContent>emptyList();
+			submit(meta, data, r, start, new Callable<PendingCall.Result>() {
+				public PendingCall.Result call() {
+					return change(meta, data, id, mapped, note, attachments);
+				}
+			}, true);
+			return true;
+		}
+		
+		if (data.planWriter != null) {
+			plan(meta, data, r, issue, start);
+			return true;
+		}
+		
+		if (data.bulk) {
+			addToImport(meta, data, r, issue);
+			return true;
+		}
+		
+		// the external key later rows refer to this issue by
+		String key = data.indexOfKeyField >= 0 ? data.inputRowMeta.getString(r, data.indexOfKeyField) : null;
+		
+		// a key seen inside the suppression window is answered without calling Redmine
+		if (data.suppression != null) {
+			Integer suppressedBy = suppressedBy(data, issue.getSubject());
+			if (suppressedBy != null) {
+				logDetailed(BaseMessages.getString( PKG, "RedmineStep.Info.Suppressed", suppressedBy ));
+				remember(data, key, submit(meta, data, r, start,
+						PendingCall.Result.done(null, IssueFactory.create(suppressedBy), OUTCOME_SUPPRESSED)));
+				return true;
+			}
+		}
+		
+		if (meta.isRedmineAggregate()) {
+			aggregate(meta, data, r, issue);
+		} else {
+			final IssueLinks links;
+			final List<Watcher> watchers;
+			try {
+				links = readLinks(data, r);
+				watchers = readWatchers(meta, data, r);
+			} catch (RedmineException e) {
+				remember(data, key, submit(meta, data, r, start, PendingCall.Result.failed(e, null)));
+				return true;
+			}
+			final Issue mapped = issue;
+			final List<AttachmentContent> attachments = readAttachments(meta, data, r);
+			final boolean keyed = !Const.isEmpty(key);
+			// concurrent creations could race on the duplicate search, so only run
+			// them in parallel when duplicates are allowed
+			Future<PendingCall.Result> created = submit(meta, data, r, start, new Callable<PendingCall.Result>() {
+				public PendingCall.Result call() {
+					PendingCall.Result result = create(meta, data, mapped, attachments, links, watchers);
+					// a keyed result is kept for the whole run, only its ids are read
+					return keyed ? result.compact() : result;
+				}
+			}, meta.isRedmineAllowDuplicates());
+			remember(data, key, created);
+			reserve(data, issue.getSubject(), created);
+		}
 
-			Issue issue = new Issue();
-			
-			// project key
-			ProjectManager projectManager = mgr.getProjectManager();
-			issue.setProject(projectManager.getProjectByKey(meta.getRedmineProject()));
-			
-			if (meta.isRedmineSubjectInField()) {
-				issue.setSubject(data.inputRowMeta.getString( r, data.indexOfSubjectField ));
-			} else {
-				issue.setSubject(meta.getRedmineSubject());
+		// indicate that processRow() should be called again
+		return true;
+	}
+	
+	/**
+	 * Maps the row to a new issue following the step settings.
+	 */
+	private Issue buildIssue(RedmineStepMeta meta, RedmineStepData data, Object[] r) throws KettleException, RedmineException {
+		
+		Issue issue = new Issue();
+		
+		// project key, looked up once per step copy. Only new issues need it.
+		if (RedmineStepMeta.OPERATION_CREATE.equals(data.operation)) {
+			if (data.project == null) {
+				ProjectManager projectManager = data.redmineManager.getProjectManager();
+				data.project = projectManager.getProjectByKey(meta.getRedmineProject());
 			}
-			
-			if (meta.isRedmineDescriptionInField()) {
-				issue.setDescription(data.inputRowMeta.getString( r, data.indexOfDescriptionField ));
-			} else {
-				issue.setDescription(meta.getRedmineDescription());
+			issue.setProject(data.project);
+		}
+		
+		if (meta.isRedmineSubjectInField()) {
+			issue.setSubject(data.inputRowMeta.getString( r, data.indexOfSubjectField ));
+		} else {
+			issue.setSubject(meta.getRedmineSubject());
+		}
+		
+		if (meta.isRedmineDescriptionInField()) {
+			issue.setDescription(data.inputRowMeta.getString( r, data.indexOfDescriptionField ));
+		} else {
+			issue.setDescription(meta.getRedmineDescription());
+		}
+		
+		if(!Const.isEmpty(meta.getRedmineCategory())) {
+			try {
+				issue.setCategory(IssueCategoryFactory.create(Integer.parseInt(meta.getRedmineCategory())));
+			} catch (NumberFormatException e) {
+				logError( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorCategoryValue", meta.getRedmineCategory() ) );
+				putError( data.inputRowMeta, r, 1, e.getMessage(), e.toString(), "-1" );
 			}
-			
-			if(meta.getRedmineCategory() != null) {
+		}
+		
+		// assign to
+		if (meta.isRedmineAssignedToInField() && data.indexOfAssignedToField >= 0) {
+			issue.setAssignee(UserFactory.create(data.inputRowMeta.getInteger(r, data.indexOfAssignedToField).intValue()));
+		} else {
+			if(!Const.isEmpty(meta.getRedmineAssigned())) {
 				try {
-					issue.setCategory(IssueCategoryFactory.create(Integer.parseInt(meta.getRedmineCategory())));
+					issue.setAssignee(UserFactory.create(Integer.parseInt(meta.getRedmineAssigned())));
 				} catch (NumberFormatException e) {
-					logError( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorCategoryValue", meta.getRedmineCategory() ) );
-					putError( getInputRowMeta(), r, 1, e.getMessage(), e.toString(), "-1" );
+					logError( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorAssignedValue", meta.getRedmineAssigned() ) );
+					putError( data.inputRowMeta, r, 1, e.getMessage(), e.toString(), "-1" );
 				}
 			}
-			
-			// assign to
-			if (meta.isRedmineAssignedToInField() && data.indexOfAssignedToField >= 0) {
-				issue.setAssignee(UserFactory.create(data.inputRowMeta.getInteger(r, data.indexOfAssignedToField).intValue()));
+		}
+		
+		if(isRowLevel()) {
+			logRowlevel("issue project value: " + issue.getProject());
+			logRowlevel("issue subject value: " + issue.getSubject());
+			logRowlevel("issue description value: " + issue.getDescription());
+			logRowlevel("issue category value: " + issue.getCategory());
+			logRowlevel("issue assigned to value: " + issue.getAssignee());
+		}
+		
+		return issue;
+	}
+	
+	/**
+	 * Creates the issue on Redmine. Uploaded attachments are sent with the
+	 * issue, so all of them are created by the same request.
+	 * 
+	 * @param uploads  the uploaded files to attach
+	 * @param watchers the watchers, sent with the issue or added once it exists
+	 * 
+	 * @return the created issue
+	 */
+	private Issue createIssue(RedmineStepData data, Issue issue, List<Attachment> uploads, List<Watcher> watchers)
+			throws RedmineException {
+		for (Attachment upload : uploads) {
+			if (upload.getToken() != null) {
+				issue.addAttachment(upload);
 			} else {
-				if(meta.getRedmineAssigned() != null) {
-					try {
-						issue.setAssignee(UserFactory.create(Integer.parseInt(meta.getRedmineAssigned())));
-					} catch (NumberFormatException e) {
-						logError( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorAssignedValue", meta.getRedmineAssigned() ) );
-						putError( getInputRowMeta(), r, 1, e.getMessage(), e.toString(), "-1" );
-					}
+				issue.setDescription(withAttachmentLink(data, issue.getDescription(), upload));
+			}
+		}
+		if (data.watchersOnCreate) {
+			issue.addWatchers(watchers);
+		}
+		Issue created = data.redmineManager.getIssueManager().createIssue(issue);
+		logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Success" ), created.getId());
+		attached(data, uploads);
+		if (!data.watchersOnCreate) {
+			addWatchers(data, created, watchers);
+		}
+		return created;
+	}
+	
+	/**
+	 * Adds the watchers to the created issue, in parallel on the upload workers
+	 * when concurrency is enabled, so they share the connections of the step. A
+	 * watcher that cannot be added is logged, the issue is kept.
+	 */
+	private void addWatchers(final RedmineStepData data, final Issue issue, List<Watcher> watchers) {
+		List<Future<Void>> calls = new ArrayList<Future<Void>>(watchers.size());
+		for (final Watcher watcher : watchers) {
+			Callable<Void> call = new Callable<Void>() {
+				public Void call() throws RedmineException {
+					data.redmineManager.getIssueManager().addWatcherToIssue(watcher, issue);
+					return null;
 				}
+			};
+			if (data.uploadExecutor != null) {
+				calls.add(data.uploadExecutor.submit(call));
+			} else {
+				FutureTask<Void> task = new FutureTask<Void>(call);
+				task.run();
+				calls.add(task);
 			}
-			
-			if(isRowLevel()) {
-				logRowlevel("issue project value: " + issue.getProject());
-				logRowlevel("issue subject value: " + issue.getSubject());
-				logRowlevel("issue description value: " + issue.getDescription());
-				logRowlevel("issue category value: " + issue.getCategory());
-				logRowlevel("issue assigned to value: " + issue.getAssignee());
+		}
+		for (int i = 0; i < calls.size(); i++) {
+			try {
+				calls.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				logError(BaseMessages.getString( PKG, "RedmineStep.Error.WatcherFailed", watchers.get(i).getId(), issue.getId() ),
+						e.getCause());
+			}
+		}
+	}
+	
+	/**
+	 * Reads the watchers of the row, given by login or id. Runs on the step
+	 * thread.
+	 */
+	private List<Watcher> readWatchers(RedmineStepMeta meta, RedmineStepData data, Object[] r) throws KettleException, RedmineException {
+		List<Watcher> watchers = new ArrayList<Watcher>();
+		String value = data.indexOfWatchersField >= 0 ? data.inputRowMeta.getString(r, data.indexOfWatchersField) : null;
+		if (Const.isEmpty(value)) {
+			return watchers;
+		}
+		String delimiter = environmentSubstitute(meta.getRedmineWatchersDelimiter());
+		for (String user : Const.isEmpty(delimiter) ? new String[] { value } : value.split(Pattern.quote(delimiter))) {
+			if (!user.trim().isEmpty()) {
+				watchers.add(WatcherFactory.create(userId(data, user.trim())));
+			}
+		}
+		return watchers;
+	}
+	
+	/**
+	 * @param user the login or id of a user
+	 * 
+	 * @return the id of the user. Logins are looked up once per step copy and
+	 *         kept in the user dictionary, unknown ones included.
+	 */
+	private Integer userId(RedmineStepData data, String user) throws RedmineException {
+		if (user.matches("\\d+")) {
+			return Integer.valueOf(user);
+		}
+		String login = user.toLowerCase();
+		if (!data.userIds.containsKey(login)) {
+			data.userIds.put(login, data.restClient.findUserId(user));
+		}
+		Integer id = data.userIds.get(login);
+		if (id == null) {
+			throw new RedmineException(BaseMessages.getString( PKG, "RedmineStep.Error.UnknownUser", user ));
+		}
+		return id;
+	}
+	
+	/**
+	 * Remembers the content of the uploads sent with a created or updated
+	 * issue, when attachments are deduplicated.
+	 */
+	private static void attached(RedmineStepData data, List<Attachment> uploads) {
+		if (data.attachmentCache == null) {
+			return;
+		}
+		for (Attachment upload : uploads) {
+			if (upload.getToken() != null) {
+				data.attachmentCache.attached(upload.getToken(), upload.getFileName());
+			}
+		}
+	}
+	
+	/**
+	 * Forgets the uploads sent with an issue that failed, so the contents they
+	 * claimed can be uploaded by other rows.
+	 */
+	private static void discarded(RedmineStepData data, List<Attachment> uploads) {
+		if (data.attachmentCache == null) {
+			return;
+		}
+		for (Attachment upload : uploads) {
+			if (upload.getToken() != null) {
+				data.attachmentCache.discarded(upload.getToken());
 			}
+		}
+	}
+	
+	/**
+	 * @return the description followed by a link to an attachment already on
+	 *         Redmine, used instead of attaching the same content again
+	 */
+	private static String withAttachmentLink(RedmineStepData data, String description, Attachment attachment) {
+		String link = "\"" + attachment.getFileName() + "\":" + data.attachmentsUrl + attachment.getId();
+		return Const.isEmpty(description) ? link : description + "\n\n" + link;
+	}
+	
+	/**
+	 * Adds the uploads to the attributes of an issue sent through the REST
+	 * client: tokens to the uploads array, known contents as links in the
+	 * description, or in the note of an update.
+	 * 
+	 * @param linkField the text attribute receiving the links
+	 */
+	private static void addUploads(RedmineStepData data, Map<String, Object> fields, List<Attachment> uploads, String linkField) {
+		List<Map<String, Object>> tokens = new ArrayList<Map<String, Object>>();
+		for (Attachment upload : uploads) {
+			if (upload.getToken() != null) {
+				Map<String, Object> token = new LinkedHashMap<String, Object>();
+				token.put("token", upload.getToken());
+				token.put("filename", upload.getFileName());
+				if (upload.getContentType() != null) {
+					token.put("content_type", upload.getContentType());
+				}
+				tokens.add(token);
+			} else {
+				fields.put(linkField, withAttachmentLink(data, (String) fields.get(linkField), upload));
+			}
+		}
+		if (!tokens.isEmpty()) {
+			fields.put("uploads", tokens);
+		}
+	}
+	
+	/**
+	 * Creates the issue unless the duplicate search matches an existing one,
+	 * which is then updated in upsert mode. Runs on the worker threads when
+	 * duplicates are allowed.
+	 * 
+	 * @param issue      the issue mapped from the row
+	 * @param attachments the contents to attach
+	 * @param links      the parent and related issues, by external key
+	 * @param watchers   the watchers of the new issue
+	 */
+	private PendingCall.Result create(RedmineStepMeta meta, RedmineStepData data, Issue issue, List<AttachmentContent> attachments,
+			IssueLinks links, List<Watcher> watchers) {
+		Issue duplicate = null;
+		List<Future<Attachment>> uploads = null;
+		try {
+			// only waits for the parent of this issue, created by an earlier call
+			issue.setParentId(links.awaitParent());
 			
 			// check allow duplications
-			if (meta.isRedmineAllowDuplicates() || !isDuplicated(meta, mgr, issue)) {
-				issue = mgr.getIssueManager().createIssue(issue);
-				logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Success" ), issue.getId());
-				
-				if (meta.isRedmineAttachFile()) {
-					logRowlevel("adding attached document to issue");
-					addAttachedContent(issue, 
-									   mgr,
-									   data.inputRowMeta.getString(r, data.indexOfAttachedFileFilename), 
-									   meta.getRedmineAttachFileContent());
+			if (!meta.isRedmineAllowDuplicates()) {
+				// the search runs on the step thread, the uploads are sent meanwhile
+				// by the upload workers. They are left unused when a duplicate is found.
+				if (data.uploadExecutor != null && data.attachmentQueue == null) {
+					uploads = startUploads(meta, data, attachments);
 				}
-				
+				duplicate = findDuplicate(meta, data.redmineManager, issue);
+			}
+			
+			if (duplicate == null && data.attachmentQueue != null) {
+				Issue created = createIssue(data, issue, Collections.<Attachment>emptyList(), watchers);
+				suppress(data, issue.getSubject(), created);
+				relate(data, created, links);
+				deferAttachments(meta, data, created.getId(), attachments);
+				return PendingCall.Result.done(created, null, OUTCOME_CREATED);
+			} else if (duplicate == null) {
+				if (uploads == null) {
+					uploads = startUploads(meta, data, attachments);
+				}
+				Issue created = createIssue(data, issue, awaitUploads(meta, data, attachments, uploads), watchers);
+				suppress(data, issue.getSubject(), created);
+				relate(data, created, links);
+				return PendingCall.Result.done(created, null, OUTCOME_CREATED);
+			} else if (meta.isRedmineUpsert()) {
+				suppress(data, issue.getSubject(), duplicate);
+				return PendingCall.Result.done(null, duplicate, upsert(data, issue, duplicate, null));
 			} else {
 				logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Skip" ));
+				suppress(data, issue.getSubject(), duplicate);
+				return PendingCall.Result.done(null, duplicate, OUTCOME_DUPLICATE);
 			}
-			
 		} catch (RedmineException e) {
-			logError( BaseMessages.getString( PKG, "RedmineStep.Error.Api" ), e );
-			putError( getInputRowMeta(), r, 1, e.getMessage(), e.toString(), "-1" );
+			return PendingCall.Result.failed(e, duplicate);
+		} finally {
+			cancelUploads(data, uploads);
 		}
-
-		// indicate that processRow() should be called again
-		return true;
 	}
-
+	
 	/**
-	 * This method is called by PDI once the step is done processing.
-	 * 
-	 * The dispose() method is the counterpart to init() and should release any
-	 * resources acquired for step execution like file handles or database
-	 * connections.
-	 * 
-	 * The meta and data implementations passed in can safely be cast to the step's
-	 * respective implementations.
-	 * 
-	 * It is mandatory that super.dispose() is called to ensure correct behavior.
-	 * 
-	 * @param smi step meta interface implementation, containing the step settings
-	 * @param sdi step data interface implementation, used to store runtime
-	 *            information
+	 * Relates the created issue to the issues it refers to by external key,
+	 * waiting for them to be created.
 	 */
-	public void dispose(StepMetaInterface smi, StepDataInterface sdi) {
-
-		// Casting to step-specific implementation classes is safe
-		RedmineStepMeta meta = (RedmineStepMeta) smi;
-		RedmineStepData data = (RedmineStepData) sdi;
-
-		// Call superclass dispose()
-		super.dispose(meta, data);
+	private void relate(RedmineStepData data, Issue created, IssueLinks links) throws RedmineException {
+		for (int i = 0; i < links.getRelationCount(); i++) {
+			data.redmineManager.getIssueManager().createRelation(created.getId(), links.awaitRelation(i),
+					links.getRelationType(i));
+		}
 	}
 	
-	private boolean isDuplicated(RedmineStepMeta meta, RedmineManager mgr, Issue issue) throws RedmineException {
-		
-		Map<String, String> parameters = new HashMap<String, String>();
-		
-		parameters.put("project_id", issue.getProject().getIdentifier());
-		
-		if (meta.isRedmineSearchFieldSubject()) {
-			parameters.put("subject", issue.getSubject());
+	/**
+	 * Hands the contents to the background attachment queue, blocking while it
+	 * is full. The job uploads them and attaches them to the issue with a
+	 * sparse update, links to already known contents going to its note.
+	 * 
+	 * @param issueId the created issue
+	 */
+	private void deferAttachments(final RedmineStepMeta meta, final RedmineStepData data, final int issueId,
+			final List<AttachmentContent> attachments) throws RedmineException {
+		if (attachments.isEmpty()) {
+			return;
 		}
-		
-		if (meta.isRedmineSearchFieldStatus()) {
-			parameters.put("status_id", "1");
+		try {
+			data.attachmentQueue.submit(issueId, attachments.toString(), new AttachmentQueue.Job() {
+				// kept across retries, so a failed update does not upload again
+				private List<Attachment> uploads;
+				
+				public void run() throws RedmineException {
+					if (uploads == null) {
+						uploads = awaitUploads(meta, data, attachments, startUploads(meta, data, attachments));
+					}
+					Map<String, Object> fields = new LinkedHashMap<String, Object>();
+					addUploads(data, fields, uploads, "notes");
+					try {
+						data.restClient.updateIssue(issueId, fields);
+					} catch (RedmineException e) {
+						// a retry still sends the tokens, only the content is no longer claimed
+						discarded(data, uploads);
+						throw e;
+					}
+					attached(data, uploads);
+				}
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RedmineException("Interrupted while queueing the attachments", e);
 		}
-		
-		//List<Issue> result = mgr.getIssueManager().getIssuesBySummary(issue.getProject().getIdentifier(), issue.getSubject());
-		List<Issue> result = mgr.getIssueManager().getIssues(parameters);
-		
-		return result != null && !result.isEmpty();
 	}
 	
-	private void addAttachedContent(Issue issue, RedmineManager mgr,  String filename, String fileContent ) throws RedmineException {
-		
-		try {
-			logRowlevel("attached document url: " + filename);
-			logRowlevel("attached document content type: " + fileContent);
-			File attachmentFile = new File(filename);
-			mgr.getAttachmentManager().addAttachmentToIssue(issue.getId(), attachmentFile, fileContent);
+	/**
+	 * Waits for the background attachments, before the step is done.
+	 */
+	private void awaitAttachments(RedmineStepData data) throws KettleException {
+		if (data.attachmentQueue == null) {
+			return;
+		}
+		try {
+			data.attachmentQueue.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KettleException(e);
+		}
+		reportAttachmentFailures(data);
+	}
+	
+	/**
+	 * Logs the issues whose background attachments failed for good, counting
+	 * each one as an error. Runs on the step thread.
+	 */
+	private void reportAttachmentFailures(RedmineStepData data) {
+		if (data.attachmentQueue == null) {
+			return;
+		}
+		AttachmentQueue.Failure failure;
+		while ((failure = data.attachmentQueue.pollFailure()) != null) {
+			logError(BaseMessages.getString( PKG, "RedmineStep.Error.AttachmentFailed", failure.getIssueId(),
+					failure.getDescription() ), failure.getCause());
+			setErrors(getErrors() + 1);
+		}
+	}
+	
+	/**
+	 * Starts uploading the contents, in parallel on the upload workers when
+	 * concurrency is enabled, one after the other otherwise.
+	 */
+	private List<Future<Attachment>> startUploads(final RedmineStepMeta meta, final RedmineStepData data,
+			List<AttachmentContent> attachments) {
+		List<Future<Attachment>> uploads = new ArrayList<Future<Attachment>>(attachments.size());
+		for (final AttachmentContent attachment : attachments) {
+			Callable<Attachment> upload = new Callable<Attachment>() {
+				public Attachment call() throws RedmineException {
+					return uploadAttachment(meta, data, attachment);
+				}
+			};
+			if (data.uploadExecutor != null) {
+				uploads.add(data.uploadExecutor.submit(upload));
+			} else {
+				FutureTask<Attachment> task = new FutureTask<Attachment>(upload);
+				task.run();
+				uploads.add(task);
+			}
+		}
+		return uploads;
+	}
+	
+	/**
+	 * Waits for every upload, failing with the first upload failure. A content
+	 * claimed by another upload is waited for here, on the calling thread, and
+	 * referenced once that upload is attached or uploaded again if it is not.
+	 * 
+	 * @param contents the contents of the uploads, in the same order
+	 */
+	private List<Attachment> awaitUploads(RedmineStepMeta meta, RedmineStepData data, List<AttachmentContent> contents,
+			List<Future<Attachment>> uploads) throws RedmineException {
+		List<Attachment> attachments = new ArrayList<Attachment>(uploads.size());
+		for (int i = 0; i < uploads.size(); i++) {
+			try {
+				Attachment attachment = uploads.get(i).get();
+				if (attachment == null) {
+					attachment = uploadClaimed(meta, data, contents.get(i), attachments);
+				}
+				attachments.add(attachment);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RedmineException("Interrupted while uploading the attachment", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RedmineException) {
+					throw (RedmineException) e.getCause();
+				}
+				throw new RedmineException(e.getCause());
+			}
+		}
+		return attachments;
+	}
+	
+	/**
+	 * Cancels the uploads still running, once they are no longer needed, and
+	 * forgets the finished ones that were not attached.
+	 */
+	private static void cancelUploads(RedmineStepData data, List<Future<Attachment>> uploads) {
+		if (uploads == null) {
+			return;
+		}
+		List<Attachment> finished = new ArrayList<Attachment>();
+		for (Future<Attachment> upload : uploads) {
+			if (!upload.cancel(true)) {
+				try {
+					if (upload.get() != null) {
+						finished.add(upload.get());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					// released by the failed upload
+				}
+			}
+		}
+		discarded(data, finished);
+	}
+	
+	/**
+	 * Runs an operation on an existing issue: sparse update of the mapped
+	 * fields, status transition, note or deletion. Runs on the worker threads.
+	 * 
+	 * @param issueId the issue to change
+	 * @param mapped  the issue mapped from the row, for the update operation
+	 * @param note    the journal note to add, null if none
+	 * @param attachments the contents to attach, for the update operation
+	 */
+	private PendingCall.Result change(RedmineStepMeta meta, RedmineStepData data, int issueId, Issue mapped, String note,
+			List<AttachmentContent> attachments) {
+		Issue target = IssueFactory.create(issueId);
+		try {
+			if (RedmineStepMeta.OPERATION_DELETE.equals(data.operation)) {
+				data.restClient.delete("issues/" + issueId + ".json");
+				return PendingCall.Result.done(target, null, OUTCOME_DELETED);
+			}
+			
+			Map<String, Object> fields = new LinkedHashMap<String, Object>();
+			if (RedmineStepMeta.OPERATION_UPDATE.equals(data.operation)) {
+				if (!Const.isEmpty(mapped.getSubject())) {
+					fields.put("subject", mapped.getSubject());
+				}
+				if (!Const.isEmpty(mapped.getDescription())) {
+					fields.put("description", mapped.getDescription());
+				}
+				if (mapped.getCategory() != null) {
+					fields.put("category_id", mapped.getCategory().getId());
+				}
+				if (mapped.getAssignee() != null) {
+					fields.put("assigned_to_id", mapped.getAssignee().getId());
+				}
+			} else if (RedmineStepMeta.OPERATION_STATUS.equals(data.operation)) {
+				fields.put("status_id", data.statusId);
+			}
+			if (!Const.isEmpty(note)) {
+				fields.put("notes", note);
+			}
+			
+			List<Attachment> uploads = awaitUploads(meta, data, attachments, startUploads(meta, data, attachments));
+			addUploads(data, fields, uploads, "notes");
+			
+			if (fields.isEmpty()) {
+				return PendingCall.Result.done(target, null, OUTCOME_UNCHANGED);
+			}
+			try {
+				data.restClient.updateIssue(issueId, fields);
+			} catch (RedmineException e) {
+				discarded(data, uploads);
+				throw e;
+			}
+			attached(data, uploads);
+			return PendingCall.Result.done(target, null, OUTCOME_UPDATED);
+		} catch (RedmineException e) {
+			return PendingCall.Result.failed(e, null);
+		}
+	}
+	
+	/**
+	 * Logs the time of the row on its issue, or on the step project when the row
+	 * has no issue. The values are read on the step thread, the time entry is
+	 * created on the worker threads.
+	 */
+	private void logTime(RedmineStepMeta meta, final RedmineStepData data, Object[] r, long start) throws KettleException {
+		final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		final Long issueId = data.indexOfIssueIdField >= 0 ? data.inputRowMeta.getInteger(r, data.indexOfIssueIdField) : null;
+		try {
+			if (issueId != null) {
+				fields.put("issue_id", issueId);
+			} else {
+				if (data.project == null) {
+					data.project = data.redmineManager.getProjectManager().getProjectByKey(meta.getRedmineProject());
+				}
+				fields.put("project_id", data.project.getId());
+			}
+			
+			Double hours = data.inputRowMeta.getNumber(r, data.indexOfTimeHoursField);
+			if (hours == null) {
+				throw new RedmineException(BaseMessages.getString( PKG, "RedmineStep.Error.NoHours" ));
+			}
+			fields.put("hours", hours);
+			
+			Long userId = data.indexOfTimeUserField >= 0 ? data.inputRowMeta.getInteger(r, data.indexOfTimeUserField) : null;
+			if (userId != null) {
+				fields.put("user_id", userId);
+			}
+			String activity = data.indexOfTimeActivityField >= 0 ? data.inputRowMeta.getString(r, data.indexOfTimeActivityField) : null;
+			if (!Const.isEmpty(activity)) {
+				fields.put("activity_id", activityId(data, activity));
+			}
+			Date spentOn = data.indexOfTimeDateField >= 0 ? data.inputRowMeta.getDate(r, data.indexOfTimeDateField) : null;
+			if (spentOn != null) {
+				fields.put("spent_on", new SimpleDateFormat("yyyy-MM-dd").format(spentOn));
+			}
+			String comments = data.indexOfTimeCommentsField >= 0 ? data.inputRowMeta.getString(r, data.indexOfTimeCommentsField) : null;
+			if (!Const.isEmpty(comments)) {
+				fields.put("comments", comments);
+			}
+		} catch (RedmineException e) {
+			submit(meta, data, r, start, PendingCall.Result.failed(e, null));
+			return;
+		}
+		
+		submit(meta, data, r, start, new Callable<PendingCall.Result>() {
+			public PendingCall.Result call() {
+				try {
+					int id = data.restClient.createTimeEntry(fields);
+					logDetailed(BaseMessages.getString( PKG, "RedmineStep.Info.TimeEntry", id ));
+					Issue issue = issueId != null ? IssueFactory.create(issueId.intValue()) : null;
+					return PendingCall.Result.timeEntry(issue, id);
+				} catch (RedmineException e) {
+					return PendingCall.Result.failed(e, null);
+				}
+			}
+		}, true);
+	}
+	
+	/**
+	 * @param activity the name or id of a time entry activity
+	 * 
+	 * @return the id of the activity. The activities are read once per step
+	 *         copy, on the step thread.
+	 */
+	private Integer activityId(RedmineStepData data, String activity) throws RedmineException {
+		if (data.activities == null) {
+			data.activities = data.restClient.getTimeEntryActivities();
+			logDetailed(BaseMessages.getString( PKG, "RedmineStep.Info.Activities", data.activities.size() ));
+		}
+		Integer id = data.activities.get(activity.trim().toLowerCase());
+		if (id != null) {
+			return id;
+		}
+		try {
+			return Integer.valueOf(activity.trim());
+		} catch (NumberFormatException e) {
+			throw new RedmineException(BaseMessages.getString( PKG, "RedmineStep.Error.UnknownActivity", activity ));
+		}
+	}
+	
+	/**
+	 * Writes the issue to the CSV import file. The rows are kept until the
+	 * import has run. Category and assignee ids are written as the names the
+	 * import matches on.
+	 */
+	private void addToImport(RedmineStepMeta meta, RedmineStepData data, Object[] r, Issue issue) throws KettleException {
+		try {
+			if (data.importer == null) {
+				data.importer = new IssueImporter(environmentSubstitute(meta.getRedmineUrl()));
+				data.categoryNames = new HashMap<Integer, String>();
+				for (IssueCategory category : data.redmineManager.getIssueManager().getCategories(data.project.getId())) {
+					data.categoryNames.put(category.getId(), category.getName());
+				}
+				data.assigneeNames = new HashMap<Integer, String>();
+				for (Membership membership : data.redmineManager.getMembershipManager().getMemberships(data.project.getId())) {
+					if (membership.getUser() != null) {
+						data.assigneeNames.put(membership.getUser().getId(), membership.getUser().getFullName());
+					}
+				}
+			}
+			String category = null;
+			if (issue.getCategory() != null) {
+				category = data.categoryNames.get(issue.getCategory().getId());
+				if (category == null) {
+					category = String.valueOf(issue.getCategory().getId());
+				}
+			}
+			String assignee = null;
+			if (issue.getAssignee() != null) {
+				assignee = data.assigneeNames.get(issue.getAssignee().getId());
+				if (assignee == null) {
+					assignee = String.valueOf(issue.getAssignee().getId());
+				}
+			}
+			data.importer.add(issue, category, assignee);
+			data.importRows.add(r);
+			data.importSubjects.add(issue.getSubject());
+		} catch (IOException e) {
+			throw new KettleException(e);
+		} catch (RedmineException e) {
+			throw new KettleException(BaseMessages.getString( PKG, "RedmineStep.Error.Api" ), e);
+		}
+	}
+	
+	/**
+	 * Runs the CSV import and answers every row with its position's result.
+	 * The import does not report the ids of the created issues: they are read
+	 * back with a search of the issues created by the bulk login since the
+	 * import started, matched to the positions in id order by subject.
+	 */
+	private void runImport(RedmineStepMeta meta, RedmineStepData data) throws KettleException {
+		long start = System.nanoTime();
+		long started = System.currentTimeMillis();
+		logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.BulkImport", data.importer.getCount() ));
+		
+		Map<Integer, String> failures;
+		try {
+			if (data.project.getTrackers() == null || data.project.getTrackers().isEmpty()) {
+				throw new RedmineException(BaseMessages.getString( PKG, "RedmineStep.Error.NoTracker", data.project.getIdentifier() ));
+			}
+			failures = data.importer.run(environmentSubstitute(meta.getRedmineBulkLogin()),
+					environmentSubstitute(meta.getRedmineBulkPassword()), data.project.getId(),
+					data.project.getTrackers().iterator().next().getId());
+		} catch (RedmineException e) {
+			for (Object[] r : data.importRows) {
+				failRow(meta, data, r, e, null, start);
+			}
+			return;
+		}
+		
+		// the import runs as the bulk login, not as the user of the API key. A
+		// row whose issue is not found is failed, it cannot be told apart from
+		// a row the import dropped silently.
+		Integer[] ids = new Integer[data.importRows.size()];
+		RedmineException readBack = null;
+		try {
+			// server clocks may drift, the subject match discards older issues
+			SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+			format.setTimeZone(TimeZone.getTimeZone("UTC"));
+			Map<String, String> parameters = new HashMap<String, String>();
+			parameters.put("project_id", String.valueOf(data.project.getId()));
+			parameters.put("author_id", String.valueOf(userId(data, environmentSubstitute(meta.getRedmineBulkLogin()))));
+			parameters.put("status_id", "*");
+			parameters.put("created_on", ">=" + format.format(new Date(started - 5 * 60 * 1000L)));
+			parameters.put("sort", "id");
+			List<Issue> created = data.redmineManager.getIssueManager().getIssues(parameters);
+			int next = 0;
+			for (int i = 0; i < ids.length && next < created.size(); i++) {
+				if (failures.containsKey(Integer.valueOf(i + 1))) {
+					continue;
+				}
+				int match = next;
+				while (match < created.size() && !sameText(created.get(match).getSubject(), data.importSubjects.get(i))) {
+					match++;
+				}
+				if (match < created.size()) {
+					ids[i] = created.get(match).getId();
+					next = match + 1;
+				}
+			}
+		} catch (RedmineException e) {
+			readBack = e;
+		}
+		
+		logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.BulkImported", ids.length - failures.size(), failures.size() ));
+		for (int i = 0; i < ids.length; i++) {
+			Object[] r = data.importRows.get(i);
+			String failure = failures.get(Integer.valueOf(i + 1));
+			if (failure != null) {
+				failRow(meta, data, r, new RedmineProcessingException(Collections.singletonList(failure)), null, start);
+			} else if (ids[i] == null) {
+				failRow(meta, data, r, readBack != null ? readBack : new RedmineException(
+						BaseMessages.getString( PKG, "RedmineStep.Error.BulkNotFound", data.importSubjects.get(i) )), null, start);
+			} else {
+				putResult(meta, data, r, IssueFactory.create(ids[i]), null, OUTCOME_CREATED, start);
+			}
+		}
+	}
+	
+	/**
+	 * Adds the note of the row to the buffer of its issue. Buffers are sent as a
+	 * single note once they reach the maximum number of rows or outlive the
+	 * window.
+	 */
+	private void coalesce(RedmineStepMeta meta, RedmineStepData data, Object[] r, int issueId, String note) throws KettleException {
+		long now = System.currentTimeMillis();
+		flushNotes(meta, data, now);
+		
+		Integer key = Integer.valueOf(issueId);
+		NoteBuffer buffer = data.noteBuffers.get(key);
+		if (buffer == null) {
+			buffer = new NoteBuffer(issueId, now);
+			data.noteBuffers.put(key, buffer);
+		}
+		buffer.add(r, note, now);
+		
+		if (buffer.getCount() >= data.coalesceMaxRows) {
+			data.noteBuffers.remove(key);
+			flushNote(meta, data, buffer);
+		}
+	}
+	
+	/**
+	 * Sends the buffers whose window ended before the given time. Buffers are
+	 * kept in creation order, so the scan stops at the first open one.
+	 * 
+	 * @param now the current time, Long.MAX_VALUE to send every buffer
+	 */
+	private void flushNotes(RedmineStepMeta meta, RedmineStepData data, long now) throws KettleException {
+		Iterator<NoteBuffer> buffers = data.noteBuffers.values().iterator();
+		while (buffers.hasNext()) {
+			NoteBuffer buffer = buffers.next();
+			if (now != Long.MAX_VALUE && buffer.getFirstSeen() + data.coalesceWindow > now) {
+				break;
+			}
+			buffers.remove();
+			flushNote(meta, data, buffer);
+		}
+	}
+	
+	/**
+	 * Adds the buffered notes to the issue with a single update, answering
+	 * every buffered row with its outcome.
+	 */
+	private void flushNote(final RedmineStepMeta meta, final RedmineStepData data, final NoteBuffer buffer) throws KettleException {
+		final String note = buffer.getNote();
+		if (isDetailed()) {
+			logDetailed(BaseMessages.getString( PKG, "RedmineStep.Info.Coalesced", buffer.getCount(), buffer.getIssueId() ));
+		}
+		submit(meta, data, buffer.getRows(), System.nanoTime(), new Callable<PendingCall.Result>() {
+			public PendingCall.Result call() {
+				return change(meta, data, buffer.getIssueId(), null, note, Collections.<AttachmentContent>emptyList());
+			}
+		}, true);
+	}
+	
+	/**
+	 * Queues a row whose outcome is already known, keeping it in order behind
+	 * the calls still running.
+	 */
+	private Future<PendingCall.Result> submit(RedmineStepMeta meta, RedmineStepData data, Object[] r, long start,
+			final PendingCall.Result result) throws KettleException {
+		return submit(meta, data, Collections.singletonList(r), start, result);
+	}
+	
+	/**
+	 * Queues rows sharing an outcome already known.
+	 */
+	private Future<PendingCall.Result> submit(RedmineStepMeta meta, RedmineStepData data, List<Object[]> rows, long start,
+			final PendingCall.Result result) throws KettleException {
+		return submit(meta, data, rows, start, new Callable<PendingCall.Result>() {
+			public PendingCall.Result call() {
+				return result;
+			}
+		}, false);
+	}
+	
+	/**
+	 * Runs the Redmine call of a row, on the worker threads when concurrency is
+	 * enabled and the call allows it, inline otherwise. The finished calls at the
+	 * head of the queue are then passed on, blocking while too many are pending.
+	 * 
+	 * @param concurrent true if the call may run in parallel with other rows
+	 * 
+	 * @return the outcome of the call
+	 */
+	private Future<PendingCall.Result> submit(RedmineStepMeta meta, RedmineStepData data, Object[] r, long start,
+			Callable<PendingCall.Result> call, boolean concurrent) throws KettleException {
+		return submit(meta, data, Collections.singletonList(r), start, call, concurrent);
+	}
+	
+	/**
+	 * Runs a Redmine call answering several rows at once.
+	 */
+	private Future<PendingCall.Result> submit(RedmineStepMeta meta, RedmineStepData data, List<Object[]> rows, long start,
+			Callable<PendingCall.Result> call, boolean concurrent) throws KettleException {
+		Future<PendingCall.Result> result;
+		if (concurrent && data.executor != null) {
+			result = data.executor.submit(call);
+		} else {
+			FutureTask<PendingCall.Result> task = new FutureTask<PendingCall.Result>(call);
+			task.run();
+			result = task;
+		}
+		data.pending.add(new PendingCall(rows, start, result));
+		drain(meta, data, data.maxPending);
+		return result;
+	}
+	
+	/**
+	 * Keeps the call creating the issue of an external key, for the rows
+	 * referring to it later in the run. Any later row may refer to it, so it is
+	 * kept until the end of the run. Past MAX_KEYS keys the new ones are no
+	 * longer kept, and the rows referring to them fail as unknown keys.
+	 */
+	private void remember(RedmineStepData data, String key, Future<PendingCall.Result> call) {
+		if (Const.isEmpty(key)) {
+			return;
+		}
+		if (data.issuesByKey.size() >= MAX_KEYS && !data.issuesByKey.containsKey(key)) {
+			if (!data.keysFull) {
+				data.keysFull = true;
+				logMinimal(BaseMessages.getString( PKG, "RedmineStep.Warning.KeysFull", MAX_KEYS, key ));
+			}
+			return;
+		}
+		data.issuesByKey.put(key, call);
+	}
+	
+	/**
+	 * Reads the external keys of the parent and related issues of the row. They
+	 * must belong to rows submitted earlier in the run.
+	 */
+	private IssueLinks readLinks(RedmineStepData data, Object[] r) throws KettleException, RedmineException {
+		IssueLinks links = new IssueLinks();
+		String parentKey = data.indexOfParentKeyField >= 0 ? data.inputRowMeta.getString(r, data.indexOfParentKeyField) : null;
+		if (!Const.isEmpty(parentKey)) {
+			links.setParent(parentKey, issueOfKey(data, parentKey));
+		}
+		for (int i = 0; i < RELATION_TYPES.length; i++) {
+			if (data.indexOfRelationFields[i] < 0) {
+				continue;
+			}
+			String keys = data.inputRowMeta.getString(r, data.indexOfRelationFields[i]);
+			if (Const.isEmpty(keys)) {
+				continue;
+			}
+			for (String key : keys.split(",")) {
+				if (!key.trim().isEmpty()) {
+					links.addRelation(RELATION_TYPES[i], key.trim(), issueOfKey(data, key.trim()));
+				}
+			}
+		}
+		return links;
+	}
+	
+	/**
+	 * @return the call creating the issue of an external key
+	 */
+	private static Future<PendingCall.Result> issueOfKey(RedmineStepData data, String key) throws RedmineException {
+		Future<PendingCall.Result> call = data.issuesByKey.get(key);
+		if (call == null) {
+			throw new RedmineException(BaseMessages.getString( PKG, "RedmineStep.Error.UnknownKey", key ));
+		}
+		return call;
+	}
+	
+	/**
+	 * Passes on the results of the pending calls in arrival order: every finished
+	 * call at the head of the queue, then waits for the head until at most limit
+	 * calls remain.
+	 */
+	private void drain(RedmineStepMeta meta, RedmineStepData data, int limit) throws KettleException {
+		reportAttachmentFailures(data);
+		while (!data.pending.isEmpty()
+				&& (data.pending.size() > limit || data.pending.peek().getResult().isDone())) {
+			PendingCall call = data.pending.poll();
+			PendingCall.Result result;
+			try {
+				result = call.getResult().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new KettleException(e);
+			} catch (ExecutionException e) {
+				throw new KettleException(e.getCause());
+			}
+			for (Object[] r : call.getRows()) {
+				if (result.getFailure() != null) {
+					failRow(meta, data, r, result.getFailure(), result.getDuplicate(), call.getStart());
+				} else {
+					putResult(meta, data, r, result.getIssue(), result.getDuplicate(), result.getOutcome(),
+							result.getTimeEntryId(), call.getStart());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Updates the existing issue with the mapped fields that differ from its
+	 * current values. Nothing is sent when every field is up to date and there
+	 * is no note to add.
+	 * 
+	 * @param mapped   the issue mapped from the row
+	 * @param existing the issue found by the duplicate search, with its current values
+	 * @param notes    a journal note to add with the update, or null
+	 * 
+	 * @return OUTCOME_UPDATED if an update was sent, OUTCOME_DUPLICATE otherwise
+	 */
+	private String upsert(RedmineStepData data, Issue mapped, Issue existing, String notes) throws RedmineException {
+		Map<String, Object> changes = changedFields(mapped, existing);
+		
+		if (changes.isEmpty() && notes == null) {
+			logDetailed(BaseMessages.getString( PKG, "RedmineStep.Info.Unchanged", existing.getId() ));
+			return OUTCOME_DUPLICATE;
+		}
+		
+		logDetailed(BaseMessages.getString( PKG, "RedmineStep.Info.Upserted", existing.getId(), changes.keySet() ));
+		if (notes != null) {
+			changes.put("notes", notes);
+		}
+		data.restClient.updateIssue(existing.getId(), changes);
+		return OUTCOME_UPDATED;
+	}
+	
+	/**
+	 * @param mapped   the issue mapped from the row
+	 * @param existing the matching issue, with its current values
+	 * 
+	 * @return the mapped fields that differ from the current values, as API
+	 *         attributes. An unmapped or empty field keeps its current value.
+	 */
+	private static Map<String, Object> changedFields(Issue mapped, Issue existing) {
+		Map<String, Object> changes = new LinkedHashMap<String, Object>();
+		
+		if (mapped.getSubject() != null && !sameText(mapped.getSubject(), existing.getSubject())) {
+			changes.put("subject", mapped.getSubject());
+		}
+		if (!Const.isEmpty(mapped.getDescription()) && !sameText(mapped.getDescription(), existing.getDescription())) {
+			changes.put("description", mapped.getDescription());
+		}
+		if (mapped.getCategory() != null && (existing.getCategory() == null
+				|| !mapped.getCategory().getId().equals(existing.getCategory().getId()))) {
+			changes.put("category_id", mapped.getCategory().getId());
+		}
+		if (mapped.getAssignee() != null && (existing.getAssignee() == null
+				|| !mapped.getAssignee().getId().equals(existing.getAssignee().getId()))) {
+			changes.put("assigned_to_id", mapped.getAssignee().getId());
+		}
+		return changes;
+	}
+	
+	/**
+	 * Compares two texts the way Redmine stores them: null as empty and with
+	 * normalized line breaks.
+	 */
+	private static boolean sameText(String a, String b) {
+		return normalizeText(a).equals(normalizeText(b));
+	}
+	
+	private static String normalizeText(String text) {
+		return text == null ? "" : text.replace("\r\n", "\n");
+	}
+	
+	/**
+	 * Classifies the row against the snapshot of the project issues and writes
+	 * the planned action to the plan file. Nothing is changed on Redmine: rows
+	 * are passed on with the action as outcome.
+	 * 
+	 * A key without issue is planned for creation once, later rows with the key
+	 * are skipped. A key matching several issues, or an issue updated by an
+	 * earlier row of the plan, is a conflict.
+	 */
+	private void plan(RedmineStepMeta meta, RedmineStepData data, Object[] r, Issue issue, long start) throws KettleException {
+		String key = meta.isRedmineSearchFieldSubject() ? normalizeText(issue.getSubject()) : "";
+		List<Issue> matches = null;
+		if (!meta.isRedmineAllowDuplicates()) {
+			if (data.snapshot == null) {
+				data.snapshot = loadSnapshot(meta, data);
+			}
+			matches = data.snapshot.get(key);
+		}
+		
+		byte action;
+		int target = 0;
+		Map<String, Object> fields = null;
+		if (matches == null) {
+			if (meta.isRedmineAllowDuplicates() || data.plannedKeys.add(key)) {
+				action = ChangePlan.CREATE;
+				fields = newIssueFields(data, issue);
+			} else {
+				// an earlier row of the plan creates the issue
+				action = ChangePlan.SKIP;
+			}
+		} else if (matches.size() > 1) {
+			action = ChangePlan.CONFLICT;
+			target = matches.get(0).getId();
+		} else {
+			Issue existing = matches.get(0);
+			target = existing.getId();
+			fields = meta.isRedmineUpsert() ? changedFields(issue, existing) : null;
+			if (fields == null || fields.isEmpty()) {
+				action = ChangePlan.SKIP;
+				fields = null;
+			} else if (data.plannedUpdates.add(existing.getId())) {
+				action = ChangePlan.UPDATE;
+			} else {
+				action = ChangePlan.CONFLICT;
+				fields = null;
+			}
+		}
+		
+		data.planWriter.write(new ChangePlan.Entry(action, target,
+				fields != null ? new JSONObject(fields).toString() : null, r));
+		data.planCounts[action]++;
+		putResult(meta, data, r, null, target > 0 ? IssueFactory.create(target) : null, ChangePlan.getActionName(action), start);
+	}
+	
+	/**
+	 * Reads, in a single paged search, every issue the duplicate search could
+	 * match, grouped by duplicate key.
+	 */
+	private Map<String, List<Issue>> loadSnapshot(RedmineStepMeta meta, RedmineStepData data) throws KettleException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("project_id", data.project.getIdentifier());
+		if (meta.isRedmineSearchFieldStatus()) {
+			parameters.put("status_id", "1");
+		}
+		
+		List<Issue> issues;
+		try {
+			issues = data.redmineManager.getIssueManager().getIssues(parameters);
+		} catch (RedmineException e) {
+			throw new KettleException(BaseMessages.getString( PKG, "RedmineStep.Error.Api" ), e);
+		}
+		
+		Map<String, List<Issue>> snapshot = new HashMap<String, List<Issue>>();
+		for (Issue issue : issues) {
+			String key = meta.isRedmineSearchFieldSubject() ? normalizeText(issue.getSubject()) : "";
+			List<Issue> matches = snapshot.get(key);
+			if (matches == null) {
+				matches = new ArrayList<Issue>(1);
+				snapshot.put(key, matches);
+			}
+			matches.add(issue);
+		}
+		logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Snapshot", issues.size() ));
+		return snapshot;
+	}
+	
+	/**
+	 * @return the attributes of the issue to create, as API attributes
+	 */
+	private static Map<String, Object> newIssueFields(RedmineStepData data, Issue issue) {
+		Map<String, Object> fields = new LinkedHashMap<String, Object>();
+		fields.put("project_id", data.project.getId());
+		if (issue.getSubject() != null) {
+			fields.put("subject", issue.getSubject());
+		}
+		if (issue.getDescription() != null) {
+			fields.put("description", issue.getDescription());
+		}
+		if (issue.getCategory() != null) {
+			fields.put("category_id", issue.getCategory().getId());
+		}
+		if (issue.getAssignee() != null) {
+			fields.put("assigned_to_id", issue.getAssignee().getId());
+		}
+		return fields;
+	}
+	
+	/**
+	 * Executes the planned action of the row. The plan holds the exact calls to
+	 * send, so nothing is read from Redmine and every call runs in parallel.
+	 */
+	private void apply(final RedmineStepMeta meta, final RedmineStepData data, Object[] r, ChangePlan.Entry entry, long start)
+			throws KettleException {
+		final Issue target = entry.getIssueId() > 0 ? IssueFactory.create(entry.getIssueId()) : null;
+		
+		if (entry.getAction() == ChangePlan.SKIP) {
+			submit(meta, data, r, start, PendingCall.Result.done(null, target, OUTCOME_DUPLICATE));
+			return;
+		}
+		if (entry.getAction() == ChangePlan.CONFLICT) {
+			// conflicts are left to be solved by hand
+			submit(meta, data, r, start, PendingCall.Result.done(null, target, OUTCOME_CONFLICT));
+			return;
+		}
+		
+		final JSONObject fields;
+		try {
+			fields = new JSONObject(entry.getPayload());
+		} catch (JSONException e) {
+			throw new KettleException(e);
+		}
+		final boolean create = entry.getAction() == ChangePlan.CREATE;
+		final List<AttachmentContent> attachments = create
+				? readAttachments(meta, data, r) : Collections.<AttachmentContent>emptyList();
+		submit(meta, data, r, start, new Callable<PendingCall.Result>() {
+			public PendingCall.Result call() {
+				try {
+					if (create && data.attachmentQueue != null) {
+						Issue created = IssueFactory.create(data.restClient.createIssue(fields));
+						logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Success" ), created.getId());
+						deferAttachments(meta, data, created.getId(), attachments);
+						return PendingCall.Result.done(created, null, OUTCOME_CREATED);
+					} else if (create) {
+						List<Attachment> uploads = awaitUploads(meta, data, attachments, startUploads(meta, data, attachments));
+						Map<String, Object> added = new LinkedHashMap<String, Object>();
+						if (fields.has("description")) {
+							added.put("description", fields.getString("description"));
+						}
+						addUploads(data, added, uploads, "description");
+						for (Map.Entry<String, Object> field : added.entrySet()) {
+							fields.put(field.getKey(), field.getValue());
+						}
+						Issue created;
+						try {
+							created = IssueFactory.create(data.restClient.createIssue(fields));
+						} catch (RedmineException e) {
+							discarded(data, uploads);
+							throw e;
+						}
+						logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Success" ), created.getId());
+						attached(data, uploads);
+						return PendingCall.Result.done(created, null, OUTCOME_CREATED);
+					}
+					data.restClient.updateIssue(target.getId(), fields);
+					return PendingCall.Result.done(null, target, OUTCOME_UPDATED);
+				} catch (JSONException e) {
+					return PendingCall.Result.failed(new RedmineFormatException(e), target);
+				} catch (RedmineException e) {
+					return PendingCall.Result.failed(e, target);
+				}
+			}
+		}, true);
+	}
+	
+	/**
+	 * Waits for the call holding the duplicate key, if any, before looking the
+	 * key up in the suppression window. A failed call leaves the window closed,
+	 * so the row takes the key over.
+	 * 
+	 * @return the issue opened for the key inside the window, or null
+	 */
+	private Integer suppressedBy(RedmineStepData data, String key) throws KettleException {
+		Future<PendingCall.Result> holder = key == null ? null : data.suppressionHolders.remove(key);
+		if (holder != null) {
+			try {
+				holder.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new KettleException(e);
+			} catch (ExecutionException e) {
+				// released, the call did not open the window
+			}
+		}
+		return data.suppression.get(key, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Holds the duplicate key for the call creating its issue, so the rows
+	 * repeating the key wait for it instead of creating the issue again. The
+	 * keys of the finished calls are dropped first, at most maxPending calls
+	 * are running.
+	 */
+	private static void reserve(RedmineStepData data, String key, Future<PendingCall.Result> call) {
+		if (data.suppression == null || key == null) {
+			return;
+		}
+		if (data.suppressionHolders.size() > data.maxPending) {
+			for (Iterator<Future<PendingCall.Result>> i = data.suppressionHolders.values().iterator(); i.hasNext();) {
+				if (i.next().isDone()) {
+					i.remove();
+				}
+			}
+		}
+		data.suppressionHolders.put(key, call);
+	}
+	
+	/**
+	 * Opens the suppression window of the duplicate key, when enabled.
+	 * 
+	 * @param key    the duplicate key of the row
+	 * @param target the issue created or matched for the key
+	 */
+	private void suppress(RedmineStepData data, String key, Issue target) {
+		if (data.suppression != null) {
+			data.suppression.put(key, target.getId(), System.currentTimeMillis());
+		}
+	}
+	
+	/**
+	 * Handles a row whose Redmine call failed: logs it, spools it to the dead
+	 * letter file and sends it to the error hop, or passes it on with outcome
+	 * failed when there is no error hop. Without an error hop the failure
+	 * counts as a step error, so the run does not end as successful.
+	 */
+	private void failRow(RedmineStepMeta meta, RedmineStepData data, Object[] r, RedmineException e, Issue duplicate,
+			long start) throws KettleException {
+		logError( BaseMessages.getString( PKG, "RedmineStep.Error.Api" ), e );
+		deadLetter(meta, data, r, e);
+		if (getStepMeta().isDoingErrorHandling()) {
+			putError( data.inputRowMeta, r, 1, e.getMessage(), e.toString(), "-1" );
+		} else {
+			setErrors(getErrors() + 1);
+			putResult(meta, data, r, null, duplicate, OUTCOME_FAILED, start);
+		}
+	}
+	
+	/**
+	 * Adds the row to the group of its duplicate key. Groups are sent to Redmine
+	 * once they reach the maximum number of rows or outlive the window.
+	 */
+	private void aggregate(RedmineStepMeta meta, RedmineStepData data, Object[] r, Issue issue) throws KettleException {
+		long now = System.currentTimeMillis();
+		flushAggregates(meta, data, now);
+		
+		String key = issue.getSubject();
+		IssueAggregate group = data.aggregates.get(key);
+		if (group == null) {
+			group = new IssueAggregate(key, issue, now);
+			data.aggregates.put(key, group);
+		}
+		group.add(r, issue.getDescription(), now);
+		
+		if (group.getCount() >= data.aggregateMaxRows) {
+			data.aggregates.remove(key);
+			flushAggregate(meta, data, group);
+		}
+	}
+	
+	/**
+	 * Sends the groups and note buffers whose window ended, run by the flush
+	 * timer so they are not held until the next row arrives. The rows answered
+	 * are passed on at once.
+	 */
+	private void flushExpired(RedmineStepMeta meta, RedmineStepData data) {
+		synchronized (data) {
+			if (data.flushTimer.isShutdown() || isStopped()) {
+				return;
+			}
+			try {
+				long now = System.currentTimeMillis();
+				int open = data.aggregates.size() + data.noteBuffers.size();
+				flushAggregates(meta, data, now);
+				flushNotes(meta, data, now);
+				if (data.aggregates.size() + data.noteBuffers.size() < open) {
+					drain(meta, data, 0);
+				}
+			} catch (KettleException e) {
+				logError(e.getMessage(), e);
+				setErrors(1);
+				stopAll();
+			}
+		}
+	}
+	
+	/**
+	 * Sends the groups whose window ended before the given time. Groups are
+	 * kept in creation order, so the scan stops at the first open one.
+	 * 
+	 * @param now the current time, Long.MAX_VALUE to send every group
+	 */
+	private void flushAggregates(RedmineStepMeta meta, RedmineStepData data, long now) throws KettleException {
+		Iterator<IssueAggregate> groups = data.aggregates.values().iterator();
+		while (groups.hasNext()) {
+			IssueAggregate group = groups.next();
+			if (now != Long.MAX_VALUE && group.getFirstSeen() + data.aggregateWindow > now) {
+				break;
+			}
+			groups.remove();
+			flushAggregate(meta, data, group);
+		}
+	}
+	
+	/**
+	 * Makes a single Redmine call for the whole group: creates the issue with the
+	 * group summary, or adds the summary as a note to the existing duplicate.
+	 * The call is submitted like a creation, every row of the group is answered
+	 * with its result.
+	 */
+	private void flushAggregate(final RedmineStepMeta meta, final RedmineStepData data, final IssueAggregate group) throws KettleException {
+		long start = System.nanoTime();
+		final List<AttachmentContent> attachments;
+		final List<Watcher> watchers;
+		try {
+			attachments = readAttachments(meta, data, group.getRows().get(0));
+			watchers = readWatchers(meta, data, group.getRows().get(0));
+		} catch (RedmineException e) {
+			submit(meta, data, group.getRows(), start, PendingCall.Result.failed(e, null));
+			return;
+		}
+		reserve(data, group.getKey(), submit(meta, data, group.getRows(), start, new Callable<PendingCall.Result>() {
+			public PendingCall.Result call() {
+				return aggregated(meta, data, group, attachments, watchers);
+			}
+		}, meta.isRedmineAllowDuplicates()));
+	}
+	
+	/**
+	 * Creates or updates the issue of a group, on the worker threads when
+	 * duplicates are allowed.
+	 */
+	private PendingCall.Result aggregated(RedmineStepMeta meta, RedmineStepData data, IssueAggregate group,
+			List<AttachmentContent> attachments, List<Watcher> watchers) {
+		Issue duplicate = null;
+		try {
+			if (!meta.isRedmineAllowDuplicates()) {
+				duplicate = findDuplicate(meta, data.redmineManager, group.getIssue());
+			}
+			
+			if (duplicate == null) {
+				Issue issue = group.getIssue();
+				if (group.getCount() > 1) {
+					String description = issue.getDescription() != null ? issue.getDescription() + "\n\n" : "";
+					issue.setDescription(description + group.getSummary());
+				}
+				if (data.attachmentQueue != null) {
+					issue = createIssue(data, issue, Collections.<Attachment>emptyList(), watchers);
+					deferAttachments(meta, data, issue.getId(), attachments);
+				} else {
+					List<Future<Attachment>> uploads = startUploads(meta, data, attachments);
+					try {
+						issue = createIssue(data, issue, awaitUploads(meta, data, attachments, uploads), watchers);
+					} finally {
+						cancelUploads(data, uploads);
+					}
+				}
+				suppress(data, group.getKey(), issue);
+				return PendingCall.Result.done(issue, null, OUTCOME_CREATED);
+			} else {
+				// a single sparse update carries the note, and the changed fields in
+				// upsert mode
+				if (meta.isRedmineUpsert()) {
+					upsert(data, group.getIssue(), duplicate, group.getSummary());
+				} else {
+					data.restClient.updateIssue(duplicate.getId(), Collections.<String, Object>singletonMap("notes", group.getSummary()));
+				}
+				logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Aggregated", group.getCount(), duplicate.getId() ));
+				suppress(data, group.getKey(), duplicate);
+				return PendingCall.Result.done(null, duplicate, OUTCOME_UPDATED);
+			}
+		} catch (RedmineException e) {
+			return PendingCall.Result.failed(e, duplicate);
+		}
+	}
+	
+	/**
+	 * Passes the row on with the configured result fields filled in.
+	 * 
+	 * @param issue     the created issue, null if none was created
+	 * @param duplicate the existing issue matched by the duplicate search, if any
+	 * @param outcome   one of the OUTCOME_* values
+	 * @param start     System.nanoTime() when the row started calling Redmine
+	 */
+	private void putResult(RedmineStepMeta meta, RedmineStepData data, Object[] r, Issue issue, Issue duplicate,
+			String outcome, long start) throws KettleException {
+		putResult(meta, data, r, issue, duplicate, outcome, null, start);
+	}
+	
+	/**
+	 * @param timeEntryId the logged time entry, null if none
+	 */
+	private void putResult(RedmineStepMeta meta, RedmineStepData data, Object[] r, Issue issue, Issue duplicate,
+			String outcome, Integer timeEntryId, long start) throws KettleException {
+		data.replayAttempts.remove(r);
+		
+		Object[] outputRow = RowDataUtil.resizeArray(r, data.outputRowMeta.size());
+		
+		Issue target = issue != null ? issue : duplicate;
+		if (data.indexOfOutputIssueId >= 0 && target != null) {
+			outputRow[data.indexOfOutputIssueId] = Long.valueOf(target.getId());
+		}
+		if (data.indexOfOutputIssueUrl >= 0 && target != null) {
+			outputRow[data.indexOfOutputIssueUrl] = data.issuesUrl + target.getId();
+		}
+		if (data.indexOfOutputOutcome >= 0) {
+			outputRow[data.indexOfOutputOutcome] = outcome;
+		}
+		if (data.indexOfOutputDuplicateId >= 0 && duplicate != null) {
+			outputRow[data.indexOfOutputDuplicateId] = Long.valueOf(duplicate.getId());
+		}
+		if (data.indexOfOutputLatency >= 0) {
+			outputRow[data.indexOfOutputLatency] = Long.valueOf((System.nanoTime() - start) / 1000000L);
+		}
+		if (data.indexOfOutputTimeEntryId >= 0 && timeEntryId != null) {
+			outputRow[data.indexOfOutputTimeEntryId] = Long.valueOf(timeEntryId.longValue());
+		}
+		
+		putRow(data.outputRowMeta, outputRow);
+	}
+
+	/**
+	 * This method is called by PDI once the step is done processing.
+	 * 
+	 * The dispose() method is the counterpart to init() and should release any
+	 * resources acquired for step execution like file handles or database
+	 * connections.
+	 * 
+	 * The meta and data implementations passed in can safely be cast to the step's
+	 * respective implementations.
+	 * 
+	 * It is mandatory that super.dispose() is called to ensure correct behavior.
+	 * 
+	 * @param smi step meta interface implementation, containing the step settings
+	 * @param sdi step data interface implementation, used to store runtime
+	 *            information
+	 */
+	public void dispose(StepMetaInterface smi, StepDataInterface sdi) {
+
+		// Casting to step-specific implementation classes is safe
+		RedmineStepMeta meta = (RedmineStepMeta) smi;
+		RedmineStepData data = (RedmineStepData) sdi;
+
+		if (data.flushTimer != null) {
+			data.flushTimer.shutdownNow();
+		}
+		
+		// the step was stopped or failed with buffered notes: send them anyway,
+		// the rows can no longer be passed on. The lock waits for a running flush.
+		synchronized (data) {
+			for (NoteBuffer buffer : data.noteBuffers.values()) {
+				PendingCall.Result result = change(meta, data, buffer.getIssueId(), null, buffer.getNote(), Collections.<AttachmentContent>emptyList());
+				if (result.getFailure() != null) {
+					logError(BaseMessages.getString( PKG, "RedmineStep.Error.Api" ), result.getFailure());
+				} else {
+					logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Coalesced", buffer.getCount(), buffer.getIssueId() ));
+				}
+			}
+			data.noteBuffers.clear();
+		}
+		
+		closeDeadLetter(data);
+		closePlan(data);
+		
+		if (data.importer != null) {
+			try {
+				data.importer.close();
+			} catch (IOException e) {
+				logError(e.getMessage(), e);
+			}
+		}
+		
+		if (data.executor != null) {
+			data.executor.shutdownNow();
+		}
+		if (data.uploadExecutor != null) {
+			data.uploadExecutor.shutdownNow();
+		}
+		if (data.attachmentQueue != null) {
+			data.attachmentQueue.shutdown();
+		}
+		
+		if (data.httpClient != null) {
+			try {
+				data.httpClient.close();
+			} catch (IOException e) {
+				logError(e.getMessage(), e);
+			}
+		}
+		
+		if (data.suppression != null) {
+			try {
+				data.suppression.save(System.currentTimeMillis());
+			} catch (KettleException e) {
+				logError(e.getMessage(), e);
+				setErrors(1);
+			}
+		}
+		
+		if (data.attachmentCache != null) {
+			try {
+				data.attachmentCache.save();
+			} catch (KettleException e) {
+				logError(e.getMessage(), e);
+				setErrors(1);
+			}
+		}
+		
+		if (data.replayReader != null) {
+			try {
+				data.replayReader.close();
+			} catch (IOException e) {
+				logError(e.getMessage(), e);
+			}
+			// every spooled row went through the step again and the failures were
+			// written to the new spool. Otherwise the claimed file is kept for the
+			// next run.
+			if (data.replayFinished && data.replaySpooled && !data.replayFile.delete()) {
+				logError(BaseMessages.getString( PKG, "RedmineStep.Error.DeadLetterDelete", data.replayFile ));
+			}
+		}
+
+		// Call superclass dispose()
+		super.dispose(meta, data);
+	}
+	
+	/**
+	 * @return a pool of daemon threads
+	 */
+	private static ExecutorService newPool(final String threadName, int threads) {
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count;
+
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadName + "-" + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * @return the index of the input field, failing when it does not exist
+	 */
+	private int indexOfInputField(RedmineStepData data, String fieldName) throws KettleException {
+		String realFieldName = environmentSubstitute( fieldName );
+		int index = data.inputRowMeta.indexOfValue( realFieldName );
+		if ( index < 0 ) {
+			logError( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorFindingField", realFieldName ) );
+			throw new KettleException( BaseMessages.getString( PKG, "RedmineStep.Error.ErrorFindingField", realFieldName ) );
+		}
+		return index;
+	}
+	
+	/**
+	 * @return the index of the input field, -1 when no field is set
+	 */
+	private int indexOfOptionalInputField(RedmineStepData data, String fieldName) throws KettleException {
+		return Const.isEmpty( fieldName ) ? -1 : indexOfInputField( data, fieldName );
+	}
+	
+	private int indexOfOutputField(RedmineStepData data, String fieldName) {
+		if (fieldName == null || fieldName.trim().isEmpty()) {
+			return -1;
+		}
+		return data.outputRowMeta.indexOfValue( environmentSubstitute( fieldName ) );
+	}
+	
+	/**
+	 * Reads the next row from the claimed dead letter file.
+	 * 
+	 * @return the spooled row, or null when the file has been fully replayed
+	 */
+	private Object[] getReplayRow(RedmineStepData data) throws KettleException {
+		if (data.replayReader == null) {
+			return null;
+		}
+		DeadLetterSpool.Entry entry = data.replayReader.next();
+		if (entry == null) {
+			data.replayFinished = true;
+			return null;
+		}
+		incrementLinesRead();
+		Object[] row = entry.getRow();
+		data.replayAttempts.put(row, Integer.valueOf(entry.getAttempts() + 1));
+		if (isRowLevel()) {
+			logRowlevel("replaying row, previous failure " + entry.getFailureClass() + ": " + entry.getMessage());
+		}
+		return row;
+	}
+	
+	/**
+	 * Reads the next row from the plan file, keeping its planned action.
+	 * 
+	 * @return the planned row, or null when the plan has been fully applied
+	 */
+	private Object[] getPlanRow(RedmineStepData data) throws KettleException {
+		if (data.planReader == null) {
+			return null;
+		}
+		data.planEntry = data.planReader.next();
+		if (data.planEntry == null) {
+			return null;
+		}
+		incrementLinesRead();
+		return data.planEntry.getRow();
+	}
+	
+	private void closePlan(RedmineStepData data) {
+		if (data.planWriter != null) {
+			try {
+				data.planWriter.close();
+				logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.Plan", data.planFile,
+						data.planCounts[ChangePlan.CREATE], data.planCounts[ChangePlan.UPDATE],
+						data.planCounts[ChangePlan.SKIP], data.planCounts[ChangePlan.CONFLICT] ));
+			} catch (IOException e) {
+				logError(e.getMessage(), e);
+				setErrors(1);
+			}
+			data.planWriter = null;
+		}
+		if (data.planReader != null) {
+			try {
+				data.planReader.close();
+			} catch (IOException e) {
+				logError(e.getMessage(), e);
+			}
+			data.planReader = null;
+		}
+	}
+	
+	/**
+	 * Appends the failed row to the dead letter file, when enabled or when
+	 * replaying, with the attempt count it was replayed with. The file is
+	 * opened on the first failure.
+	 */
+	private void deadLetter(RedmineStepMeta meta, RedmineStepData data, Object[] r, Exception e) throws KettleException {
+		Integer attempts = data.replayAttempts.remove(r);
+		// the claimed file is deleted after the replay, its failures must be kept
+		if (!meta.isRedmineDeadLetter() && !meta.isRedmineReplay()) {
+			return;
+		}
+		if (data.deadLetterSpool == null) {
+			data.deadLetterSpool = new DeadLetterSpool(data.deadLetterFile, data.inputRowMeta);
+		}
+		data.deadLetterSpool.append(r, e, attempts != null ? attempts.intValue() : 1);
+	}
+	
+	/**
+	 * @return false if the spool could not be closed, so its rows may be lost
+	 */
+	private boolean closeDeadLetter(RedmineStepData data) {
+		boolean closed = true;
+		if (data.deadLetterSpool != null) {
+			try {
+				data.deadLetterSpool.close();
+				logBasic(BaseMessages.getString( PKG, "RedmineStep.Info.DeadLetter", data.deadLetterSpool.getWritten(), data.deadLetterFile ));
+			} catch (IOException e) {
+				logError(e.getMessage(), e);
+				setErrors(1);
+				closed = false;
+			}
+			data.deadLetterSpool = null;
+		}
+		return closed;
+	}
+	
+	/**
+	 * Searches the issue on Redmine using the configured search fields.
+	 * 
+	 * @return the first matching issue, or null if there is none
+	 */
+	private Issue findDuplicate(RedmineStepMeta meta, RedmineManager mgr, Issue issue) throws RedmineException {
+		
+		Map<String, String> parameters = new HashMap<String, String>();
+		
+		parameters.put("project_id", issue.getProject().getIdentifier());
+		
+		if (meta.isRedmineSearchFieldSubject()) {
+			parameters.put("subject", issue.getSubject());
+		}
+		
+		if (meta.isRedmineSearchFieldStatus()) {
+			parameters.put("status_id", "1");
+		}
+		
+		//List<Issue> result = mgr.getIssueManager().getIssuesBySummary(issue.getProject().getIdentifier(), issue.getSubject());
+		List<Issue> result = mgr.getIssueManager().getIssues(parameters);
+		
+		return result != null && !result.isEmpty() ? result.get(0) : null;
+	}
+	
+	/**
+	 * Reads the contents to attach from the row: the files named by the file
+	 * name field, or the value of the content field. Runs on the step thread,
+	 * value conversions are not thread safe.
+	 * 
+	 * @return the contents to attach, empty if none
+	 */
+	private List<AttachmentContent> readAttachments(RedmineStepMeta meta, RedmineStepData data, Object[] r) throws KettleException {
+		if (!meta.isRedmineAttachFile()) {
+			return Collections.emptyList();
+		}
+		if (!meta.isRedmineAttachFromField()) {
+			String filenames = data.inputRowMeta.getString(r, data.indexOfAttachedFileFilename);
+			if (Const.isEmpty(filenames)) {
+				return Collections.emptyList();
+			}
+			String delimiter = environmentSubstitute(meta.getRedmineAttachDelimiter());
+			List<AttachmentContent> attachments = new ArrayList<AttachmentContent>();
+			for (String filename : Const.isEmpty(delimiter) ? new String[] { filenames } : filenames.split(Pattern.quote(delimiter))) {
+				filename = filename.trim();
+				if (filename.isEmpty()) {
+					continue;
+				}
+				for (File file : meta.isRedmineAttachGlob() ? expandGlob(filename) : Collections.singletonList(new File(filename))) {
+					attachments.add(AttachmentContent.fromFile(file, contentType(meta, file)));
+				}
+			}
+			return attachments;
+		}
+		
+		if (data.inputRowMeta.isNull(r, data.indexOfAttachContentField)) {
+			return Collections.emptyList();
+		}
+		// binary values are sent as they are, strings as UTF-8
+		byte[] content;
+		if (data.inputRowMeta.getValueMeta(data.indexOfAttachContentField).isBinary()) {
+			content = data.inputRowMeta.getBinary(r, data.indexOfAttachContentField);
+		} else {
+			content = data.inputRowMeta.getString(r, data.indexOfAttachContentField).getBytes(StandardCharsets.UTF_8);
+		}
+		String contentType = data.indexOfAttachTypeField >= 0 ? data.inputRowMeta.getString(r, data.indexOfAttachTypeField) : null;
+		return Collections.singletonList(AttachmentContent.fromBytes(data.inputRowMeta.getString(r, data.indexOfAttachNameField),
+				Const.isEmpty(contentType) ? meta.getRedmineAttachFileContent() : contentType, content));
+	}
+	
+	/**
+	 * @return the regular files matching the wildcards of the file name, in
+	 *         name order. The wildcards apply to the last path element only.
+	 */
+	private static List<File> expandGlob(String filename) throws KettleException {
+		Path pattern = Paths.get(filename);
+		Path parent = pattern.toAbsolutePath().getParent();
+		List<File> files = new ArrayList<File>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(parent, pattern.getFileName().toString())) {
+			for (Path path : stream) {
+				if (Files.isRegularFile(path)) {
+					files.add(path.toFile());
+				}
+			}
+		} catch (IOException | PatternSyntaxException e) {
+			throw new KettleException(BaseMessages.getString( PKG, "RedmineStep.Error.AttachGlob", filename ), e);
+		}
+		Collections.sort(files);
+		return files;
+	}
+	
+	/**
+	 * @return the configured content type, or else the one guessed from the
+	 *         file, null to let Redmine guess it
+	 */
+	private static String contentType(RedmineStepMeta meta, File file) {
+		if (!Const.isEmpty(meta.getRedmineAttachFileContent())) {
+			return meta.getRedmineAttachFileContent();
+		}
+		try {
+			return Files.probeContentType(file.toPath());
+		} catch (IOException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Uploads the content to attach, streamed from disk or memory and paced by
+	 * the upload bandwidth cap. The returned attachment holds the upload token,
+	 * which attaches the content to the issue it is sent with.
+	 * 
+	 * When attachments are deduplicated and the content is already attached to
+	 * an issue, nothing is uploaded: the returned attachment has no token and
+	 * is referenced by a link. When another upload of the content is under way,
+	 * nothing is uploaded either and null is returned.
+	 */
+	private Attachment uploadAttachment(RedmineStepMeta meta, RedmineStepData data, AttachmentContent content) throws RedmineException {
+		
+		logRowlevel("attached document: " + content);
+		logRowlevel("attached document content type: " + content.getContentType());
+		File attachmentFile = content.getFile();
+		if (attachmentFile != null && !attachmentFile.isFile()) {
+			throw new RedmineException("Error al subir adjunto a la incidencia: no existe " + attachmentFile);
+		}
+		
+		String hash = null;
+		if (data.attachmentCache != null) {
+			try {
+				hash = attachmentFile != null ? data.attachmentCache.hash(attachmentFile) : AttachmentCache.hash(content.getBytes());
+			} catch (IOException e) {
+				throw new RedmineException("Error al subir adjunto a la incidencia", e);
+			}
+			AttachmentCache.Reference known = data.attachmentCache.get(hash);
+			if (known != null) {
+				return reused(content, known);
+			}
+			if (!data.attachmentCache.claim(hash)) {
+				// left to the caller, waiting here could hold the worker the
+				// claiming upload needs
+				return null;
+			}
+		}
+		return upload(data, content, hash);
+	}
+	
+	/**
+	 * Attaches a content claimed by another upload: waits for that upload to
+	 * be attached and references it. The content is uploaded again when that
+	 * upload fails, belongs to the same issue, or takes too long.
+	 * 
+	 * @param previous the uploads of the same issue before this one
+	 */
+	private Attachment uploadClaimed(RedmineStepMeta meta, RedmineStepData data, AttachmentContent content,
+			List<Attachment> previous) throws RedmineException, InterruptedException {
+		String hash;
+		try {
+			hash = content.getFile() != null ? data.attachmentCache.hash(content.getFile()) : AttachmentCache.hash(content.getBytes());
 		} catch (IOException e) {
 			throw new RedmineException("Error al subir adjunto a la incidencia", e);
 		}
+		for (Attachment upload : previous) {
+			if (upload.getToken() != null && hash.equals(data.attachmentCache.hashOf(upload.getToken()))) {
+				return upload(data, content, null);
+			}
+		}
+		AttachmentCache.Reference known = data.attachmentCache.await(hash, ATTACH_CLAIM_TIMEOUT);
+		if (known != null) {
+			return reused(content, known);
+		}
+		return upload(data, content, data.attachmentCache.claim(hash) ? hash : null);
+	}
+	
+	private Attachment reused(AttachmentContent content, AttachmentCache.Reference known) {
+		logDetailed(BaseMessages.getString( PKG, "RedmineStep.Info.AttachmentReused", content, known.getId() ));
+		Attachment existing = AttachmentFactory.create(known.getId());
+		existing.setFileName(known.getFilename());
+		return existing;
+	}
+	
+	/**
+	 * Uploads the content, releasing its claim if the upload fails.
+	 * 
+	 * @param hash the claimed hash of the content, null if not claimed
+	 */
+	private Attachment upload(RedmineStepData data, AttachmentContent content, String hash) throws RedmineException {
+		Attachment upload = AttachmentFactory.create();
+		try {
+			upload.setToken(data.restClient.upload(content, data.uploadLimiter));
+		} catch (RedmineException e) {
+			if (hash != null) {
+				data.attachmentCache.release(hash);
+			}
+			throw e;
+		}
+		if (hash != null) {
+			data.attachmentCache.uploaded(upload.getToken(), hash);
+		}
+		upload.setFileName(content.getFilename());
+		upload.setFileSize(content.getLength());
+		if (!Const.isEmpty(content.getContentType())) {
+			upload.setContentType(content.getContentType());
+		}
+		return upload;
 	}
 }
@@ -22,21 +22,175 @@
 
 package es.jcozar.pdi.redmine.plugin;
 
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
+import com.taskadapter.redmineapi.RedmineManager;
+import com.taskadapter.redmineapi.bean.Issue;
+import com.taskadapter.redmineapi.bean.Project;
+
+import es.jcozar.pdi.redmine.plugin.utils.BandwidthLimiter;
+
 /**
  * keep track of per-thread resources during step execution.
  */
 public class RedmineStepData extends BaseStepData implements StepDataInterface {
 
 	public RowMetaInterface inputRowMeta;
+	public RowMetaInterface outputRowMeta;
+	
+	public CloseableHttpClient httpClient;
+	public RedmineManager redmineManager;
+	public RedmineRestClient restClient;
+	public Project project;
+	
+	// paces the uploads of the step copy, null when not capped
+	public BandwidthLimiter uploadLimiter;
+	
+	// attachments known by content hash, null when deduplication is disabled
+	public AttachmentCache attachmentCache;
+	
+	// attachments sent in the background once the issue exists, null when
+	// they are sent with the issue
+	public AttachmentQueue attachmentQueue;
 	
 	public int indexOfSubjectField;
 	public int indexOfDescriptionField;
 	public int indexOfAssignedToField;
 	public int indexOfAttachedFileFilename;
+	public int indexOfAttachContentField;
+	public int indexOfAttachNameField;
+	public int indexOfAttachTypeField;
+	public int indexOfIssueIdField;
+	public int indexOfNoteField;
+	
+	// time entry fields, -1 when not set
+	public int indexOfTimeUserField;
+	public int indexOfTimeHoursField;
+	public int indexOfTimeActivityField;
+	public int indexOfTimeDateField;
+	public int indexOfTimeCommentsField;
+	
+	// external key fields of the created issues, -1 when not set. The relation
+	// fields hold relates, blocks and precedes keys.
+	public int indexOfKeyField = -1;
+	public int indexOfParentKeyField = -1;
+	public int[] indexOfRelationFields = { -1, -1, -1 };
+	
+	// calls creating the issues of the external keys seen in the run. Never
+	// evicted: one entry per keyed row, holding the key and the ids of the
+	// result once the call is done. Capped at RedmineStep.MAX_KEYS, the keys
+	// past it are not kept and keysFull is set once the cap is reported.
+	public Map<String, Future<PendingCall.Result>> issuesByKey = new ConcurrentHashMap<String, Future<PendingCall.Result>>();
+	public boolean keysFull;
+	
+	// watchers of the created issues, sent with the creation or added afterwards
+	public int indexOfWatchersField = -1;
+	public boolean watchersOnCreate;
+	
+	// user ids by lower case login, null for unknown logins. Read once per
+	// login and step copy.
+	public Map<String, Integer> userIds = new HashMap<String, Integer>();
+	
+	// time entry activity ids by lower case name, read once per step copy
+	public Map<String, Integer> activities;
+	
+	// operation code and status set by the status transition
+	public String operation;
+	public int statusId;
+	
+	// calls in flight, in arrival order. The executor is null when every call
+	// runs on the step thread.
+	public ExecutorService executor;
+	public Deque<PendingCall> pending = new ArrayDeque<PendingCall>();
+	public int maxPending;
+	
+	// attachment uploads and watcher additions, kept apart from the calls that
+	// wait for them
+	public ExecutorService uploadExecutor;
+	
+	// note buffers by issue id, in creation order
+	public boolean coalesce;
+	public Map<Integer, NoteBuffer> noteBuffers = new LinkedHashMap<Integer, NoteBuffer>();
+	public int coalesceMaxRows;
+	public long coalesceWindow;
+	
+	// CSV import, the rows wait for the import to run
+	public boolean bulk;
+	public IssueImporter importer;
+	public List<Object[]> importRows = new ArrayList<Object[]>();
+	public List<String> importSubjects = new ArrayList<String>();
+	public Map<Integer, String> categoryNames;
+	public Map<Integer, String> assigneeNames;
+	
+	// change plan, written in plan mode and read in apply mode. The snapshot
+	// holds the open issues of the project by duplicate key.
+	public File planFile;
+	public ChangePlan.Writer planWriter;
+	public ChangePlan.Reader planReader;
+	public ChangePlan.Entry planEntry;
+	public Map<String, List<Issue>> snapshot;
+	public Set<String> plannedKeys = new HashSet<String>();
+	public Set<Integer> plannedUpdates = new HashSet<Integer>();
+	public long[] planCounts = new long[5];
+	
+	// result fields, -1 when not emitted
+	public int indexOfOutputIssueId;
+	public int indexOfOutputIssueUrl;
+	public int indexOfOutputOutcome;
+	public int indexOfOutputDuplicateId;
+	public int indexOfOutputLatency;
+	public int indexOfOutputTimeEntryId;
+	public String issuesUrl;
+	public String attachmentsUrl;
+	
+	// sends the groups and note buffers whose window ended while no row
+	// arrives, null when neither is enabled. Holds the data lock while it runs.
+	public ScheduledExecutorService flushTimer;
+	
+	// aggregation groups by duplicate key, in creation order
+	public Map<String, IssueAggregate> aggregates = new LinkedHashMap<String, IssueAggregate>();
+	public long aggregateWindow;
+	public int aggregateMaxRows;
+	
+	// issues opened per duplicate key inside the suppression window, null when disabled
+	public SuppressionWindow suppression;
+	
+	// calls holding a duplicate key until they open its window, by key
+	public Map<String, Future<PendingCall.Result>> suppressionHolders = new HashMap<String, Future<PendingCall.Result>>();
+	
+	// dead letter spool and replay
+	public File deadLetterFile;
+	public File replayFile;
+	public DeadLetterSpool deadLetterSpool;
+	public DeadLetterSpool.Reader replayReader;
+	public boolean replayFinished;
+	
+	// set once the end of the input was handled and the new spool closed, the
+	// claimed file can then be deleted
+	public boolean replaySpooled;
+	
+	// attempts of the replayed rows not answered yet, by row identity. Rows are
+	// answered out of their read order when calls run in parallel.
+	public Map<Object[], Integer> replayAttempts = new IdentityHashMap<Object[], Integer>();
 	
 	public RedmineStepData() {
 		super();
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.events.FocusListener;
 import org.eclipse.swt.events.ModifyEvent;
@@ -100,14 +101,25 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
 
   // checkboxs
   private Button wSubjectInField,wDescriptionInField,wAssignedToInField,wAllowDuplications,
-  				 wSearchFieldSubject,wSearchFieldStatus,wAttachedFileCheckField;
+  				 wSearchFieldSubject,wSearchFieldStatus,wAttachedFileCheckField,
+  				 wDeadLetter,wReplay,wAggregate,wSuppress,wUpsert,wCoalesce,wBulk,wAttachDedup,wAttachFromField,wAttachGlob,
+  				 wAttachDeferred, wWatchersOnCreate;
   
   // combos
   private Label wlSubjectField, wlDescriptionField, wlAssignedToField, wAttachFilenameFieldLabel;
-  private ComboVar wSubjectField,wDescriptionField,wAssignedToField, wAttachFilenameField;
+  private ComboVar wSubjectField,wDescriptionField,wAssignedToField, wAttachFilenameField,
+                   wIssueIdField, wNoteField, wAttachContentField, wAttachNameField, wAttachTypeField,
+                   wTimeUserField, wTimeHoursField, wTimeActivityField, wTimeDateField, wTimeCommentsField,
+                   wKeyField, wParentKeyField, wRelatesField, wBlocksField, wPrecedesField, wWatchersField;
+  private CCombo wOperation, wPlanMode;
   
   private LabelText wRedmineURL, wRedmineToken, wRedmineProject, wRedmineCategory, 
-                    wRedmineAssignedTo, wRedmineSubject, wRedmineDescription, wAttachContentType;
+                    wRedmineAssignedTo, wRedmineSubject, wRedmineDescription, wAttachContentType,
+                    wDeadLetterFile, wOutputIssueId, wOutputIssueUrl, wOutputOutcome, wOutputDuplicateId,
+                    wOutputLatency, wOutputTimeEntryId, wAggregateWindow, wAggregateMaxRows, wSuppressWindow,
+                    wSuppressMaxKeys, wSuppressFile, wThreads, wStatusId, wCoalesceMaxRows,
+                    wCoalesceWindow, wBulkLogin, wBulkPassword, wPlanFile, wUploadRate, wAttachCacheFile,
+                    wAttachDelimiter, wAttachQueueSize, wAttachRetries, wWatchersDelimiter;
 
   /**
    * The constructor should simply invoke super() and save the incoming meta
@@ -222,6 +234,10 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     wRedmineProject = SwtUtils.addLabelText(gSettings, BaseMessages.getString( PKG, "Redmine.Project.Label" ), wRedmineToken);
     wRedmineProject.addModifyListener( lsMod );
     
+    // concurrent calls
+    wThreads = SwtUtils.addLabelText(gSettings, BaseMessages.getString( PKG, "Redmine.Threads.Label" ), wRedmineProject);
+    wThreads.addModifyListener( lsMod );
+    
 
     
 
@@ -392,6 +408,19 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     wAttachContentType.addModifyListener( lsMod );
     
     
+    FocusListener lsStreamFields = new FocusListener() {
+    	public void focusLost( org.eclipse.swt.events.FocusEvent e ) {
+    	}
+
+    	public void focusGained( org.eclipse.swt.events.FocusEvent e ) {
+    		Cursor busy = new Cursor( shell.getDisplay(), SWT.CURSOR_WAIT );
+    		shell.setCursor( busy );
+        	setStreamFields();
+        	shell.setCursor( null );
+        	busy.dispose();
+    	}
+    };
+    
     // attached file filename field
     wAttachFilenameFieldLabel = new Label( gAttached, SWT.RIGHT );
     wAttachFilenameFieldLabel.setText( BaseMessages.getString( PKG, "Redmine.AttachedFile.Filename.Label" ) );
@@ -424,6 +453,222 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     	}
     } );
     
+    // several files per row
+    wAttachDelimiter = SwtUtils.addLabelText(gAttached, BaseMessages.getString( PKG, "Redmine.AttachDelimiter.Label" ), wAttachFilenameField);
+    wAttachDelimiter.addModifyListener( lsMod );
+    
+    wAttachGlob = SwtUtils.addCheckBox(gAttached, BaseMessages.getString( PKG, "Redmine.AttachGlob.Label" ), wAttachDelimiter);
+    wAttachGlob.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	      }
+	} );
+    
+    // content taken from row fields instead of a file
+    wAttachFromField = SwtUtils.addCheckBox(gAttached, BaseMessages.getString( PKG, "Redmine.AttachFromField.Label" ), wAttachGlob);
+    wAttachFromField.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeAttachedFile();
+	      }
+	} );
+    
+    wAttachContentField = SwtUtils.addLabelComboVar(transMeta, gAttached, BaseMessages.getString( PKG, "Redmine.AttachContentField.Label" ), wAttachFromField);
+    wAttachContentField.addModifyListener( lsMod );
+    wAttachContentField.addFocusListener( lsStreamFields );
+    
+    wAttachNameField = SwtUtils.addLabelComboVar(transMeta, gAttached, BaseMessages.getString( PKG, "Redmine.AttachNameField.Label" ), wAttachContentField);
+    wAttachNameField.addModifyListener( lsMod );
+    wAttachNameField.addFocusListener( lsStreamFields );
+    
+    wAttachTypeField = SwtUtils.addLabelComboVar(transMeta, gAttached, BaseMessages.getString( PKG, "Redmine.AttachTypeField.Label" ), wAttachNameField);
+    wAttachTypeField.addModifyListener( lsMod );
+    wAttachTypeField.addFocusListener( lsStreamFields );
+    
+    // upload bandwidth cap
+    wUploadRate = SwtUtils.addLabelText(gAttached, BaseMessages.getString( PKG, "Redmine.UploadRate.Label" ), wAttachTypeField);
+    wUploadRate.addModifyListener( lsMod );
+    
+    // background attachment queue
+    wAttachDeferred = SwtUtils.addCheckBox(gAttached, BaseMessages.getString( PKG, "Redmine.AttachDeferred.Label" ), wUploadRate);
+    wAttachDeferred.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeAttachedFile();
+	      }
+	} );
+    
+    wAttachQueueSize = SwtUtils.addLabelText(gAttached, BaseMessages.getString( PKG, "Redmine.AttachQueueSize.Label" ), wAttachDeferred);
+    wAttachQueueSize.addModifyListener( lsMod );
+    
+    wAttachRetries = SwtUtils.addLabelText(gAttached, BaseMessages.getString( PKG, "Redmine.AttachRetries.Label" ), wAttachQueueSize);
+    wAttachRetries.addModifyListener( lsMod );
+    
+    // content hash deduplication
+    wAttachDedup = SwtUtils.addCheckBox(gAttached, BaseMessages.getString( PKG, "Redmine.AttachDedup.Label" ), wAttachRetries);
+    wAttachDedup.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeAttachedFile();
+	      }
+	} );
+    
+    wAttachCacheFile = SwtUtils.addLabelText(gAttached, BaseMessages.getString( PKG, "Redmine.AttachCacheFile.Label" ), wAttachDedup);
+    wAttachCacheFile.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // operation tab             //
+    // ------------------------- //
+    Composite operationTab = SwtUtils.addTab(shell, wTabFolder, "Operation", wStepname);
+    
+    Group gOperation = SwtUtils.addGroup(operationTab, BaseMessages.getString( PKG, "Redmine.OperationGroup.Label" ), operationTab);
+    
+    String[] operations = new String[RedmineStepMeta.OPERATION_CODES.length];
+    for ( int i = 0; i < operations.length; i++ ) {
+    	operations[i] = RedmineStepMeta.getOperationDescription( RedmineStepMeta.OPERATION_CODES[i] );
+    }
+    wOperation = SwtUtils.addLabelCombo(gOperation, BaseMessages.getString( PKG, "Redmine.Operation.Label" ), operations, gOperation);
+    wOperation.addModifyListener( lsMod );
+    wOperation.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        activeOperation();
+	      }
+	} );
+    
+    wIssueIdField = SwtUtils.addLabelComboVar(transMeta, gOperation, BaseMessages.getString( PKG, "Redmine.IssueIdField.Label" ), wOperation);
+    wIssueIdField.addModifyListener( lsMod );
+    wIssueIdField.addFocusListener( lsStreamFields );
+    
+    wStatusId = SwtUtils.addLabelText(gOperation, BaseMessages.getString( PKG, "Redmine.StatusId.Label" ), wIssueIdField);
+    wStatusId.addModifyListener( lsMod );
+    
+    wNoteField = SwtUtils.addLabelComboVar(transMeta, gOperation, BaseMessages.getString( PKG, "Redmine.NoteField.Label" ), wStatusId);
+    wNoteField.addModifyListener( lsMod );
+    wNoteField.addFocusListener( lsStreamFields );
+    
+    wCoalesce = SwtUtils.addCheckBox(gOperation, BaseMessages.getString( PKG, "Redmine.Coalesce.Label" ), wNoteField);
+    wCoalesce.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeOperation();
+	      }
+	} );
+    
+    wCoalesceMaxRows = SwtUtils.addLabelText(gOperation, BaseMessages.getString( PKG, "Redmine.CoalesceMaxRows.Label" ), wCoalesce);
+    wCoalesceMaxRows.addModifyListener( lsMod );
+    
+    wCoalesceWindow = SwtUtils.addLabelText(gOperation, BaseMessages.getString( PKG, "Redmine.CoalesceWindow.Label" ), wCoalesceMaxRows);
+    wCoalesceWindow.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // time entry group          //
+    // ------------------------- //
+    Group gTimeEntry = SwtUtils.addGroup(operationTab, BaseMessages.getString( PKG, "Redmine.TimeEntryGroup.Label" ), gOperation);
+    
+    wTimeUserField = SwtUtils.addLabelComboVar(transMeta, gTimeEntry, BaseMessages.getString( PKG, "Redmine.TimeUserField.Label" ), gTimeEntry);
+    wTimeUserField.addModifyListener( lsMod );
+    wTimeUserField.addFocusListener( lsStreamFields );
+    
+    wTimeHoursField = SwtUtils.addLabelComboVar(transMeta, gTimeEntry, BaseMessages.getString( PKG, "Redmine.TimeHoursField.Label" ), wTimeUserField);
+    wTimeHoursField.addModifyListener( lsMod );
+    wTimeHoursField.addFocusListener( lsStreamFields );
+    
+    wTimeActivityField = SwtUtils.addLabelComboVar(transMeta, gTimeEntry, BaseMessages.getString( PKG, "Redmine.TimeActivityField.Label" ), wTimeHoursField);
+    wTimeActivityField.addModifyListener( lsMod );
+    wTimeActivityField.addFocusListener( lsStreamFields );
+    
+    wTimeDateField = SwtUtils.addLabelComboVar(transMeta, gTimeEntry, BaseMessages.getString( PKG, "Redmine.TimeDateField.Label" ), wTimeActivityField);
+    wTimeDateField.addModifyListener( lsMod );
+    wTimeDateField.addFocusListener( lsStreamFields );
+    
+    wTimeCommentsField = SwtUtils.addLabelComboVar(transMeta, gTimeEntry, BaseMessages.getString( PKG, "Redmine.TimeCommentsField.Label" ), wTimeDateField);
+    wTimeCommentsField.addModifyListener( lsMod );
+    wTimeCommentsField.addFocusListener( lsStreamFields );
+    
+    // ------------------------- //
+    // external keys group       //
+    // ------------------------- //
+    Group gKeys = SwtUtils.addGroup(operationTab, BaseMessages.getString( PKG, "Redmine.KeysGroup.Label" ), gTimeEntry);
+    
+    wKeyField = SwtUtils.addLabelComboVar(transMeta, gKeys, BaseMessages.getString( PKG, "Redmine.KeyField.Label" ), gKeys);
+    wKeyField.addModifyListener( lsMod );
+    wKeyField.addFocusListener( lsStreamFields );
+    
+    wParentKeyField = SwtUtils.addLabelComboVar(transMeta, gKeys, BaseMessages.getString( PKG, "Redmine.ParentKeyField.Label" ), wKeyField);
+    wParentKeyField.addModifyListener( lsMod );
+    wParentKeyField.addFocusListener( lsStreamFields );
+    
+    wRelatesField = SwtUtils.addLabelComboVar(transMeta, gKeys, BaseMessages.getString( PKG, "Redmine.RelatesField.Label" ), wParentKeyField);
+    wRelatesField.addModifyListener( lsMod );
+    wRelatesField.addFocusListener( lsStreamFields );
+    
+    wBlocksField = SwtUtils.addLabelComboVar(transMeta, gKeys, BaseMessages.getString( PKG, "Redmine.BlocksField.Label" ), wRelatesField);
+    wBlocksField.addModifyListener( lsMod );
+    wBlocksField.addFocusListener( lsStreamFields );
+    
+    wPrecedesField = SwtUtils.addLabelComboVar(transMeta, gKeys, BaseMessages.getString( PKG, "Redmine.PrecedesField.Label" ), wBlocksField);
+    wPrecedesField.addModifyListener( lsMod );
+    wPrecedesField.addFocusListener( lsStreamFields );
+    
+    // ------------------------- //
+    // watchers group            //
+    // ------------------------- //
+    Group gWatchers = SwtUtils.addGroup(operationTab, BaseMessages.getString( PKG, "Redmine.WatchersGroup.Label" ), gKeys);
+    
+    wWatchersField = SwtUtils.addLabelComboVar(transMeta, gWatchers, BaseMessages.getString( PKG, "Redmine.WatchersField.Label" ), gWatchers);
+    wWatchersField.addModifyListener( lsMod );
+    wWatchersField.addFocusListener( lsStreamFields );
+    
+    wWatchersDelimiter = SwtUtils.addLabelText(gWatchers, BaseMessages.getString( PKG, "Redmine.WatchersDelimiter.Label" ), wWatchersField);
+    wWatchersDelimiter.addModifyListener( lsMod );
+    
+    wWatchersOnCreate = SwtUtils.addCheckBox(gWatchers, BaseMessages.getString( PKG, "Redmine.WatchersOnCreate.Label" ), wWatchersDelimiter);
+    wWatchersOnCreate.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	      }
+	} );
+    
+    // ------------------------- //
+    // bulk import group         //
+    // ------------------------- //
+    Group gBulk = SwtUtils.addGroup(operationTab, BaseMessages.getString( PKG, "Redmine.BulkGroup.Label" ), gWatchers);
+    
+    wBulk = SwtUtils.addCheckBox(gBulk, BaseMessages.getString( PKG, "Redmine.Bulk.Label" ), gBulk);
+    wBulk.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeOperation();
+	      }
+	} );
+    
+    wBulkLogin = SwtUtils.addLabelText(gBulk, BaseMessages.getString( PKG, "Redmine.BulkLogin.Label" ), wBulk);
+    wBulkLogin.addModifyListener( lsMod );
+    
+    wBulkPassword = SwtUtils.addLabelText(gBulk, BaseMessages.getString( PKG, "Redmine.BulkPassword.Label" ), wBulkLogin);
+    wBulkPassword.getTextWidget().setEchoChar( '*' );
+    wBulkPassword.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // plan group                //
+    // ------------------------- //
+    Group gPlan = SwtUtils.addGroup(operationTab, BaseMessages.getString( PKG, "Redmine.PlanGroup.Label" ), gBulk);
+    
+    String[] planModes = new String[RedmineStepMeta.PLAN_MODE_CODES.length];
+    for ( int i = 0; i < planModes.length; i++ ) {
+    	planModes[i] = RedmineStepMeta.getPlanModeDescription( RedmineStepMeta.PLAN_MODE_CODES[i] );
+    }
+    wPlanMode = SwtUtils.addLabelCombo(gPlan, BaseMessages.getString( PKG, "Redmine.PlanMode.Label" ), planModes, gPlan);
+    wPlanMode.addModifyListener( lsMod );
+    wPlanMode.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        activeOperation();
+	      }
+	} );
+    
+    wPlanFile = SwtUtils.addLabelText(gPlan, BaseMessages.getString( PKG, "Redmine.PlanFile.Label" ), wPlanMode);
+    wPlanFile.addModifyListener( lsMod );
+    
     // ------------------------- //
     // search tab                //
     // ------------------------- //
@@ -436,6 +681,14 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     
     // allow duplications check
     wAllowDuplications = SwtUtils.addCheckBox(gSearch, BaseMessages.getString( PKG, "Redmine.AllowDuplications.Label" ), gSearch); 
+    wAllowDuplications.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        activeUpsert();
+	      }
+	} );
+    
+    // upsert check
+    wUpsert = SwtUtils.addCheckBox(gSearch, BaseMessages.getString( PKG, "Redmine.Upsert.Label" ), wAllowDuplications);
     
     // ------------------------- //
     // search options group      //
@@ -445,6 +698,104 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     wSearchFieldSubject = SwtUtils.addCheckBox(gSearchOptions, BaseMessages.getString( PKG, "Redmine.SearchFieldSubject.Label" ), gSearchOptions);
     wSearchFieldStatus = SwtUtils.addCheckBox(gSearchOptions, BaseMessages.getString( PKG, "Redmine.SearchFieldStatus.Label" ), wSearchFieldSubject);
     
+    // ------------------------- //
+    // aggregation group         //
+    // ------------------------- //
+    Group gAggregate = SwtUtils.addGroup(searchTab, BaseMessages.getString( PKG, "Redmine.AggregateGroup.Label" ), gSearchOptions);
+    
+    wAggregate = SwtUtils.addCheckBox(gAggregate, BaseMessages.getString( PKG, "Redmine.Aggregate.Label" ), gAggregate);
+    wAggregate.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeAggregate();
+	      }
+	} );
+    
+    wAggregateWindow = SwtUtils.addLabelText(gAggregate, BaseMessages.getString( PKG, "Redmine.AggregateWindow.Label" ), wAggregate);
+    wAggregateWindow.addModifyListener( lsMod );
+    
+    wAggregateMaxRows = SwtUtils.addLabelText(gAggregate, BaseMessages.getString( PKG, "Redmine.AggregateMaxRows.Label" ), wAggregateWindow);
+    wAggregateMaxRows.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // suppression window group  //
+    // ------------------------- //
+    Group gSuppress = SwtUtils.addGroup(searchTab, BaseMessages.getString( PKG, "Redmine.SuppressGroup.Label" ), gAggregate);
+    
+    wSuppress = SwtUtils.addCheckBox(gSuppress, BaseMessages.getString( PKG, "Redmine.Suppress.Label" ), gSuppress);
+    wSuppress.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeSuppress();
+	      }
+	} );
+    
+    wSuppressWindow = SwtUtils.addLabelText(gSuppress, BaseMessages.getString( PKG, "Redmine.SuppressWindow.Label" ), wSuppress);
+    wSuppressWindow.addModifyListener( lsMod );
+    
+    wSuppressMaxKeys = SwtUtils.addLabelText(gSuppress, BaseMessages.getString( PKG, "Redmine.SuppressMaxKeys.Label" ), wSuppressWindow);
+    wSuppressMaxKeys.addModifyListener( lsMod );
+    
+    wSuppressFile = SwtUtils.addLabelText(gSuppress, BaseMessages.getString( PKG, "Redmine.SuppressFile.Label" ), wSuppressMaxKeys);
+    wSuppressFile.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // output tab                //
+    // ------------------------- //
+    Composite outputTab = SwtUtils.addTab(shell, wTabFolder, "Output", wStepname);
+    
+    // ------------------------- //
+    // result fields group       //
+    // ------------------------- //
+    Group gOutput = SwtUtils.addGroup(outputTab, BaseMessages.getString( PKG, "Redmine.OutputGroup.Label" ), outputTab);
+    
+    wOutputIssueId = SwtUtils.addLabelText(gOutput, BaseMessages.getString( PKG, "Redmine.OutputIssueId.Label" ), gOutput);
+    wOutputIssueId.addModifyListener( lsMod );
+    
+    wOutputIssueUrl = SwtUtils.addLabelText(gOutput, BaseMessages.getString( PKG, "Redmine.OutputIssueUrl.Label" ), wOutputIssueId);
+    wOutputIssueUrl.addModifyListener( lsMod );
+    
+    wOutputOutcome = SwtUtils.addLabelText(gOutput, BaseMessages.getString( PKG, "Redmine.OutputOutcome.Label" ), wOutputIssueUrl);
+    wOutputOutcome.addModifyListener( lsMod );
+    
+    wOutputDuplicateId = SwtUtils.addLabelText(gOutput, BaseMessages.getString( PKG, "Redmine.OutputDuplicateId.Label" ), wOutputOutcome);
+    wOutputDuplicateId.addModifyListener( lsMod );
+    
+    wOutputLatency = SwtUtils.addLabelText(gOutput, BaseMessages.getString( PKG, "Redmine.OutputLatency.Label" ), wOutputDuplicateId);
+    wOutputLatency.addModifyListener( lsMod );
+    
+    wOutputTimeEntryId = SwtUtils.addLabelText(gOutput, BaseMessages.getString( PKG, "Redmine.OutputTimeEntryId.Label" ), wOutputLatency);
+    wOutputTimeEntryId.addModifyListener( lsMod );
+    
+    // ------------------------- //
+    // errors tab                //
+    // ------------------------- //
+    Composite errorsTab = SwtUtils.addTab(shell, wTabFolder, "Errors", wStepname);
+    
+    // ------------------------- //
+    // dead letter group         //
+    // ------------------------- //
+    Group gDeadLetter = SwtUtils.addGroup(errorsTab, BaseMessages.getString( PKG, "Redmine.DeadLetterGroup.Label" ), errorsTab);
+    
+    wDeadLetter = SwtUtils.addCheckBox(gDeadLetter, BaseMessages.getString( PKG, "Redmine.DeadLetter.Label" ), gDeadLetter);
+    wDeadLetter.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeDeadLetter();
+	      }
+	} );
+    
+    wDeadLetterFile = SwtUtils.addLabelText(gDeadLetter, BaseMessages.getString( PKG, "Redmine.DeadLetterFile.Label" ), wDeadLetter);
+    wDeadLetterFile.addModifyListener( lsMod );
+    
+    wReplay = SwtUtils.addCheckBox(gDeadLetter, BaseMessages.getString( PKG, "Redmine.Replay.Label" ), wDeadLetterFile);
+    wReplay.addSelectionListener( new SelectionAdapter() {
+	      public void widgetSelected( SelectionEvent e ) {
+	        meta.setChanged();
+	        activeDeadLetter();
+	      }
+	} );
+    
     
     //
     // Search the fields in the background
@@ -522,6 +873,27 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     wRedmineProject.addSelectionListener( lsDef );
     wSearchFieldSubject.addSelectionListener( lsDef );
     wSearchFieldStatus.addSelectionListener( lsDef );
+    wDeadLetterFile.addSelectionListener( lsDef );
+    wAggregateWindow.addSelectionListener( lsDef );
+    wAggregateMaxRows.addSelectionListener( lsDef );
+    wSuppressWindow.addSelectionListener( lsDef );
+    wThreads.addSelectionListener( lsDef );
+    wStatusId.addSelectionListener( lsDef );
+    wCoalesceMaxRows.addSelectionListener( lsDef );
+    wCoalesceWindow.addSelectionListener( lsDef );
+    wBulkLogin.addSelectionListener( lsDef );
+    wBulkPassword.addSelectionListener( lsDef );
+    wPlanFile.addSelectionListener( lsDef );
+    wUploadRate.addSelectionListener( lsDef );
+    wAttachCacheFile.addSelectionListener( lsDef );
+    wSuppressMaxKeys.addSelectionListener( lsDef );
+    wSuppressFile.addSelectionListener( lsDef );
+    wOutputIssueId.addSelectionListener( lsDef );
+    wOutputIssueUrl.addSelectionListener( lsDef );
+    wOutputOutcome.addSelectionListener( lsDef );
+    wOutputDuplicateId.addSelectionListener( lsDef );
+    wOutputLatency.addSelectionListener( lsDef );
+    wOutputTimeEntryId.addSelectionListener( lsDef );
 
     // Detect X or ALT-F4 or something that kills this window and cancel the dialog properly
     shell.addShellListener( new ShellAdapter() {
@@ -609,6 +981,102 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     // search properties
     wAllowDuplications.setSelection(meta.isRedmineAllowDuplicates());
     wSearchFieldStatus.setSelection(meta.isRedmineSearchFieldStatus());
+    wUpsert.setSelection(meta.isRedmineUpsert());
+    
+    if ( meta.getRedmineThreads() != null ) {
+    	wThreads.setText(meta.getRedmineThreads());
+    }
+    
+    // operation
+    wOperation.setText(RedmineStepMeta.getOperationDescription(meta.getOperation()));
+    
+    if ( meta.getRedmineIssueIdField() != null ) {
+    	wIssueIdField.setText(meta.getRedmineIssueIdField());
+    }
+    
+    if ( meta.getRedmineStatusId() != null ) {
+    	wStatusId.setText(meta.getRedmineStatusId());
+    }
+    
+    if ( meta.getRedmineNoteField() != null ) {
+    	wNoteField.setText(meta.getRedmineNoteField());
+    }
+    
+    if ( meta.getRedmineTimeUserField() != null ) {
+    	wTimeUserField.setText(meta.getRedmineTimeUserField());
+    }
+    
+    if ( meta.getRedmineTimeHoursField() != null ) {
+    	wTimeHoursField.setText(meta.getRedmineTimeHoursField());
+    }
+    
+    if ( meta.getRedmineTimeActivityField() != null ) {
+    	wTimeActivityField.setText(meta.getRedmineTimeActivityField());
+    }
+    
+    if ( meta.getRedmineTimeDateField() != null ) {
+    	wTimeDateField.setText(meta.getRedmineTimeDateField());
+    }
+    
+    if ( meta.getRedmineTimeCommentsField() != null ) {
+    	wTimeCommentsField.setText(meta.getRedmineTimeCommentsField());
+    }
+    
+    if ( meta.getRedmineKeyField() != null ) {
+    	wKeyField.setText(meta.getRedmineKeyField());
+    }
+    
+    if ( meta.getRedmineParentKeyField() != null ) {
+    	wParentKeyField.setText(meta.getRedmineParentKeyField());
+    }
+    
+    if ( meta.getRedmineRelatesField() != null ) {
+    	wRelatesField.setText(meta.getRedmineRelatesField());
+    }
+    
+    if ( meta.getRedmineBlocksField() != null ) {
+    	wBlocksField.setText(meta.getRedmineBlocksField());
+    }
+    
+    if ( meta.getRedminePrecedesField() != null ) {
+    	wPrecedesField.setText(meta.getRedminePrecedesField());
+    }
+    
+    if ( meta.getRedmineWatchersField() != null ) {
+    	wWatchersField.setText(meta.getRedmineWatchersField());
+    }
+    
+    if ( meta.getRedmineWatchersDelimiter() != null ) {
+    	wWatchersDelimiter.setText(meta.getRedmineWatchersDelimiter());
+    }
+    
+    wWatchersOnCreate.setSelection(meta.isRedmineWatchersOnCreate());
+    
+    wCoalesce.setSelection(meta.isRedmineCoalesce());
+    
+    if ( meta.getRedmineCoalesceMaxRows() != null ) {
+    	wCoalesceMaxRows.setText(meta.getRedmineCoalesceMaxRows());
+    }
+    
+    if ( meta.getRedmineCoalesceWindow() != null ) {
+    	wCoalesceWindow.setText(meta.getRedmineCoalesceWindow());
+    }
+    
+    wBulk.setSelection(meta.isRedmineBulk());
+    
+    if ( meta.getRedmineBulkLogin() != null ) {
+    	wBulkLogin.setText(meta.getRedmineBulkLogin());
+    }
+    
+    if ( meta.getRedmineBulkPassword() != null ) {
+    	wBulkPassword.setText(meta.getRedmineBulkPassword());
+    }
+    
+    wPlanMode.setText(RedmineStepMeta.getPlanModeDescription(meta.getPlanMode()));
+    
+    if ( meta.getRedminePlanFile() != null ) {
+    	wPlanFile.setText(meta.getRedminePlanFile());
+    }
     wSearchFieldSubject.setSelection(meta.isRedmineSearchFieldSubject());
 
     wAttachedFileCheckField.setSelection(meta.isRedmineAttachFile());
@@ -617,13 +1085,116 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     	wAttachContentType.setText(meta.getRedmineAttachFileContent());
     }
     
+    if ( meta.getRedmineUploadRate() != null ) {
+    	wUploadRate.setText(meta.getRedmineUploadRate());
+    }
+    
+    wAttachDeferred.setSelection(meta.isRedmineAttachDeferred());
+    
+    if ( meta.getRedmineAttachQueueSize() != null ) {
+    	wAttachQueueSize.setText(meta.getRedmineAttachQueueSize());
+    }
+    
+    if ( meta.getRedmineAttachRetries() != null ) {
+    	wAttachRetries.setText(meta.getRedmineAttachRetries());
+    }
+    
+    wAttachDedup.setSelection(meta.isRedmineAttachDedup());
+    
+    if ( meta.getRedmineAttachCacheFile() != null ) {
+    	wAttachCacheFile.setText(meta.getRedmineAttachCacheFile());
+    }
+    
     if ( meta.getRedmineAttachFileName() != null ) {
     	wAttachFilenameField.setText(meta.getRedmineAttachFileName());
     }
     
+    if ( meta.getRedmineAttachDelimiter() != null ) {
+    	wAttachDelimiter.setText(meta.getRedmineAttachDelimiter());
+    }
+    
+    wAttachGlob.setSelection(meta.isRedmineAttachGlob());
+    
+    wAttachFromField.setSelection(meta.isRedmineAttachFromField());
+    
+    if ( meta.getRedmineAttachContentField() != null ) {
+    	wAttachContentField.setText(meta.getRedmineAttachContentField());
+    }
+    
+    if ( meta.getRedmineAttachNameField() != null ) {
+    	wAttachNameField.setText(meta.getRedmineAttachNameField());
+    }
+    
+    if ( meta.getRedmineAttachTypeField() != null ) {
+    	wAttachTypeField.setText(meta.getRedmineAttachTypeField());
+    }
+    
+    wAggregate.setSelection(meta.isRedmineAggregate());
+    
+    if ( meta.getRedmineAggregateWindow() != null ) {
+    	wAggregateWindow.setText(meta.getRedmineAggregateWindow());
+    }
+    
+    if ( meta.getRedmineAggregateMaxRows() != null ) {
+    	wAggregateMaxRows.setText(meta.getRedmineAggregateMaxRows());
+    }
+    
+    wSuppress.setSelection(meta.isRedmineSuppress());
+    
+    if ( meta.getRedmineSuppressWindow() != null ) {
+    	wSuppressWindow.setText(meta.getRedmineSuppressWindow());
+    }
+    
+    if ( meta.getRedmineSuppressMaxKeys() != null ) {
+    	wSuppressMaxKeys.setText(meta.getRedmineSuppressMaxKeys());
+    }
+    
+    if ( meta.getRedmineSuppressFile() != null ) {
+    	wSuppressFile.setText(meta.getRedmineSuppressFile());
+    }
+    
+    // result fields
+    if ( meta.getOutputField() != null ) {
+    	wOutputIssueId.setText(meta.getOutputField());
+    }
+    
+    if ( meta.getOutputIssueUrlField() != null ) {
+    	wOutputIssueUrl.setText(meta.getOutputIssueUrlField());
+    }
+    
+    if ( meta.getOutputOutcomeField() != null ) {
+    	wOutputOutcome.setText(meta.getOutputOutcomeField());
+    }
+    
+    if ( meta.getOutputDuplicateIdField() != null ) {
+    	wOutputDuplicateId.setText(meta.getOutputDuplicateIdField());
+    }
+    
+    if ( meta.getOutputLatencyField() != null ) {
+    	wOutputLatency.setText(meta.getOutputLatencyField());
+    }
+    
+    if ( meta.getOutputTimeEntryIdField() != null ) {
+    	wOutputTimeEntryId.setText(meta.getOutputTimeEntryIdField());
+    }
+    
+    wDeadLetter.setSelection(meta.isRedmineDeadLetter());
+    
+    if ( meta.getRedmineDeadLetterFile() != null ) {
+    	wDeadLetterFile.setText(meta.getRedmineDeadLetterFile());
+    }
+    
+    wReplay.setSelection(meta.isRedmineReplay());
+    
     activeSubjectInfield();
     activeDescriptionInfield();
     activeAssignedToInfield();
+    activeAttachedFile();
+    activeDeadLetter();
+    activeAggregate();
+    activeSuppress();
+    activeUpsert();
+    activeOperation();
   }
 
   /**
@@ -662,10 +1233,65 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
     meta.setRedmineAssignedToInField(wAssignedToInField.getSelection());
     meta.setRedmineAllowDuplicates(wAllowDuplications.getSelection());
     meta.setRedmineSearchFieldStatus(wSearchFieldStatus.getSelection());
+    meta.setRedmineUpsert(wUpsert.getSelection());
+    meta.setRedmineThreads(wThreads.getText() );
+    meta.setRedmineOperation(RedmineStepMeta.getOperationCode(wOperation.getText()));
+    meta.setRedmineIssueIdField(wIssueIdField.getText() );
+    meta.setRedmineStatusId(wStatusId.getText() );
+    meta.setRedmineNoteField(wNoteField.getText() );
+    meta.setRedmineTimeUserField(wTimeUserField.getText() );
+    meta.setRedmineTimeHoursField(wTimeHoursField.getText() );
+    meta.setRedmineTimeActivityField(wTimeActivityField.getText() );
+    meta.setRedmineTimeDateField(wTimeDateField.getText() );
+    meta.setRedmineTimeCommentsField(wTimeCommentsField.getText() );
+    meta.setRedmineKeyField(wKeyField.getText() );
+    meta.setRedmineParentKeyField(wParentKeyField.getText() );
+    meta.setRedmineRelatesField(wRelatesField.getText() );
+    meta.setRedmineBlocksField(wBlocksField.getText() );
+    meta.setRedminePrecedesField(wPrecedesField.getText() );
+    meta.setRedmineWatchersField(wWatchersField.getText() );
+    meta.setRedmineWatchersDelimiter(wWatchersDelimiter.getText() );
+    meta.setRedmineWatchersOnCreate(wWatchersOnCreate.getSelection());
+    meta.setRedmineCoalesce(wCoalesce.getSelection());
+    meta.setRedmineCoalesceMaxRows(wCoalesceMaxRows.getText() );
+    meta.setRedmineCoalesceWindow(wCoalesceWindow.getText() );
+    meta.setRedmineBulk(wBulk.getSelection());
+    meta.setRedmineBulkLogin(wBulkLogin.getText() );
+    meta.setRedmineBulkPassword(wBulkPassword.getText() );
+    meta.setRedminePlanMode(RedmineStepMeta.getPlanModeCode(wPlanMode.getText()));
+    meta.setRedminePlanFile(wPlanFile.getText() );
     meta.setRedmineSearchFieldSubject(wSearchFieldSubject.getSelection());
     meta.setRedmineAttachFile(wAttachedFileCheckField.getSelection());
     meta.setRedmineAttachFileContent(wAttachContentType.getText() );
+    meta.setRedmineUploadRate(wUploadRate.getText() );
+    meta.setRedmineAttachDeferred(wAttachDeferred.getSelection());
+    meta.setRedmineAttachQueueSize(wAttachQueueSize.getText() );
+    meta.setRedmineAttachRetries(wAttachRetries.getText() );
+    meta.setRedmineAttachDedup(wAttachDedup.getSelection());
+    meta.setRedmineAttachCacheFile(wAttachCacheFile.getText() );
     meta.setRedmineAttachFileName(wAttachFilenameField.getText() );
+    meta.setRedmineAttachDelimiter(wAttachDelimiter.getText() );
+    meta.setRedmineAttachGlob(wAttachGlob.getSelection());
+    meta.setRedmineAttachFromField(wAttachFromField.getSelection());
+    meta.setRedmineAttachContentField(wAttachContentField.getText() );
+    meta.setRedmineAttachNameField(wAttachNameField.getText() );
+    meta.setRedmineAttachTypeField(wAttachTypeField.getText() );
+    meta.setRedmineAggregate(wAggregate.getSelection());
+    meta.setRedmineAggregateWindow(wAggregateWindow.getText() );
+    meta.setRedmineAggregateMaxRows(wAggregateMaxRows.getText() );
+    meta.setRedmineSuppress(wSuppress.getSelection());
+    meta.setRedmineSuppressWindow(wSuppressWindow.getText() );
+    meta.setRedmineSuppressMaxKeys(wSuppressMaxKeys.getText() );
+    meta.setRedmineSuppressFile(wSuppressFile.getText() );
+    meta.setOutputField(wOutputIssueId.getText() );
+    meta.setOutputIssueUrlField(wOutputIssueUrl.getText() );
+    meta.setOutputOutcomeField(wOutputOutcome.getText() );
+    meta.setOutputDuplicateIdField(wOutputDuplicateId.getText() );
+    meta.setOutputLatencyField(wOutputLatency.getText() );
+    meta.setOutputTimeEntryIdField(wOutputTimeEntryId.getText() );
+    meta.setRedmineDeadLetter(wDeadLetter.getSelection());
+    meta.setRedmineDeadLetterFile(wDeadLetterFile.getText() );
+    meta.setRedmineReplay(wReplay.getSelection());
     
     // close the SWT dialog window
     dispose();
@@ -691,8 +1317,72 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
   	
   	private void activeAttachedFile() {
     	wAttachContentType.setEnabled(wAttachedFileCheckField.getSelection());
-    	wAttachFilenameFieldLabel.setEnabled(wAttachedFileCheckField.getSelection());
-    	wAttachFilenameField.setEnabled(wAttachedFileCheckField.getSelection());
+    	wAttachFilenameFieldLabel.setEnabled(wAttachedFileCheckField.getSelection() && !wAttachFromField.getSelection());
+    	wAttachFilenameField.setEnabled(wAttachedFileCheckField.getSelection() && !wAttachFromField.getSelection());
+    	wAttachDelimiter.setEnabled(wAttachedFileCheckField.getSelection() && !wAttachFromField.getSelection());
+    	wAttachGlob.setEnabled(wAttachedFileCheckField.getSelection() && !wAttachFromField.getSelection());
+    	wAttachFromField.setEnabled(wAttachedFileCheckField.getSelection());
+    	wAttachContentField.setEnabled(wAttachedFileCheckField.getSelection() && wAttachFromField.getSelection());
+    	wAttachNameField.setEnabled(wAttachedFileCheckField.getSelection() && wAttachFromField.getSelection());
+    	wAttachTypeField.setEnabled(wAttachedFileCheckField.getSelection() && wAttachFromField.getSelection());
+    	wUploadRate.setEnabled(wAttachedFileCheckField.getSelection());
+    	wAttachDeferred.setEnabled(wAttachedFileCheckField.getSelection());
+    	wAttachQueueSize.setEnabled(wAttachedFileCheckField.getSelection() && wAttachDeferred.getSelection());
+    	wAttachRetries.setEnabled(wAttachedFileCheckField.getSelection() && wAttachDeferred.getSelection());
+    	wAttachDedup.setEnabled(wAttachedFileCheckField.getSelection());
+    	wAttachCacheFile.setEnabled(wAttachedFileCheckField.getSelection() && wAttachDedup.getSelection());
+  	}
+  	
+  	private void activeAggregate() {
+  		wAggregateWindow.setEnabled(wAggregate.getSelection());
+  		wAggregateMaxRows.setEnabled(wAggregate.getSelection());
+  	}
+  	
+  	private void activeOperation() {
+  		String operation = RedmineStepMeta.getOperationCode(wOperation.getText());
+  		wIssueIdField.setEnabled(!RedmineStepMeta.OPERATION_CREATE.equals(operation));
+  		wStatusId.setEnabled(RedmineStepMeta.OPERATION_STATUS.equals(operation));
+  		wNoteField.setEnabled(!RedmineStepMeta.OPERATION_CREATE.equals(operation)
+  				&& !RedmineStepMeta.OPERATION_DELETE.equals(operation)
+  				&& !RedmineStepMeta.OPERATION_TIME_ENTRY.equals(operation));
+  		boolean timeEntry = RedmineStepMeta.OPERATION_TIME_ENTRY.equals(operation);
+  		wTimeUserField.setEnabled(timeEntry);
+  		wTimeHoursField.setEnabled(timeEntry);
+  		wTimeActivityField.setEnabled(timeEntry);
+  		wTimeDateField.setEnabled(timeEntry);
+  		wTimeCommentsField.setEnabled(timeEntry);
+  		boolean create = RedmineStepMeta.OPERATION_CREATE.equals(operation);
+  		wKeyField.setEnabled(create);
+  		wParentKeyField.setEnabled(create);
+  		wRelatesField.setEnabled(create);
+  		wBlocksField.setEnabled(create);
+  		wPrecedesField.setEnabled(create);
+  		wWatchersField.setEnabled(create);
+  		wWatchersDelimiter.setEnabled(create);
+  		wWatchersOnCreate.setEnabled(create);
+  		wCoalesce.setEnabled(RedmineStepMeta.OPERATION_NOTE.equals(operation));
+  		wCoalesceMaxRows.setEnabled(RedmineStepMeta.OPERATION_NOTE.equals(operation) && wCoalesce.getSelection());
+  		wCoalesceWindow.setEnabled(RedmineStepMeta.OPERATION_NOTE.equals(operation) && wCoalesce.getSelection());
+  		wBulk.setEnabled(RedmineStepMeta.OPERATION_CREATE.equals(operation));
+  		wBulkLogin.setEnabled(RedmineStepMeta.OPERATION_CREATE.equals(operation) && wBulk.getSelection());
+  		wBulkPassword.setEnabled(RedmineStepMeta.OPERATION_CREATE.equals(operation) && wBulk.getSelection());
+  		wPlanMode.setEnabled(RedmineStepMeta.OPERATION_CREATE.equals(operation));
+  		wPlanFile.setEnabled(RedmineStepMeta.OPERATION_CREATE.equals(operation)
+  				&& !RedmineStepMeta.PLAN_MODE_NONE.equals(RedmineStepMeta.getPlanModeCode(wPlanMode.getText())));
+  	}
+  	
+  	private void activeUpsert() {
+  		wUpsert.setEnabled(!wAllowDuplications.getSelection());
+  	}
+  	
+  	private void activeSuppress() {
+  		wSuppressWindow.setEnabled(wSuppress.getSelection());
+  		wSuppressMaxKeys.setEnabled(wSuppress.getSelection());
+  		wSuppressFile.setEnabled(wSuppress.getSelection());
+  	}
+  	
+  	private void activeDeadLetter() {
+  		wDeadLetterFile.setEnabled(wDeadLetter.getSelection() || wReplay.getSelection());
   	}
   	
   	private void setStreamFields() {
@@ -701,6 +1391,11 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
   	    	String descriptionfield = wDescriptionField.getText();
   	    	String assignedtofield = wAssignedToField.getText();
   	    	String attachFilenameField = wAttachFilenameField.getText();
+  	    	String issueIdField = wIssueIdField.getText();
+  	    	String noteField = wNoteField.getText();
+  	    	String attachContentField = wAttachContentField.getText();
+  	    	String attachNameField = wAttachNameField.getText();
+  	    	String attachTypeField = wAttachTypeField.getText();
   	    	wSubjectField.removeAll();
   	    	
   	    	final Map<String, Integer> fields = new HashMap<String, Integer>();
@@ -731,6 +1426,31 @@ public class RedmineStepDialog extends BaseStepDialog implements StepDialogInter
   	    		wAttachFilenameField.setText( attachFilenameField );
   	    	}
   	    	
+  	    	wIssueIdField.setItems( entries.toArray( new String[entries.size()] ) );
+  	    	if ( issueIdField != null ) {
+  	    		wIssueIdField.setText( issueIdField );
+  	    	}
+  	    	
+  	    	wNoteField.setItems( entries.toArray( new String[entries.size()] ) );
+  	    	if ( noteField != null ) {
+  	    		wNoteField.setText( noteField );
+  	    	}
+  	    	
+  	    	wAttachContentField.setItems( entries.toArray( new String[entries.size()] ) );
+  	    	if ( attachContentField != null ) {
+  	    		wAttachContentField.setText( attachContentField );
+  	    	}
+  	    	
+  	    	wAttachNameField.setItems( entries.toArray( new String[entries.size()] ) );
+  	    	if ( attachNameField != null ) {
+  	    		wAttachNameField.setText( attachNameField );
+  	    	}
+  	    	
+  	    	wAttachTypeField.setItems( entries.toArray( new String[entries.size()] ) );
+  	    	if ( attachTypeField != null ) {
+  	    		wAttachTypeField.setText( attachTypeField );
+  	    	}
+  	    	
   	    	gotPreviousFields = true;
   	    }
   	}
@@ -27,8 +27,10 @@ import java.util.List;
 import org.eclipse.swt.widgets.Shell;
 import org.pentaho.di.core.CheckResult;
 import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.encryption.Encr;
 import org.pentaho.di.core.exception.KettleException;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.exception.KettleValueException;
@@ -36,6 +38,9 @@ import org.pentaho.di.core.exception.KettleXMLException;
 import org.pentaho.di.core.injection.Injection;
 import org.pentaho.di.core.injection.InjectionSupported;
 import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.core.xml.XMLHandler;
 import org.pentaho.di.i18n.BaseMessages;
@@ -81,11 +86,59 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	private static final Class<?> PKG = RedmineStepMeta.class; // for i18n purposes
 
 	/**
-	 * Stores the name of the field added to the row-stream.
+	 * Operation codes, as stored in the transformation.
+	 */
+	public static final String OPERATION_CREATE = "create";
+	public static final String OPERATION_UPDATE = "update";
+	public static final String OPERATION_STATUS = "status";
+	public static final String OPERATION_NOTE = "note";
+	public static final String OPERATION_DELETE = "delete";
+	public static final String OPERATION_TIME_ENTRY = "timeentry";
+
+	public static final String[] OPERATION_CODES = { OPERATION_CREATE, OPERATION_UPDATE, OPERATION_STATUS,
+			OPERATION_NOTE, OPERATION_DELETE, OPERATION_TIME_ENTRY };
+
+	/**
+	 * Plan mode codes, as stored in the transformation. The plan mode writes the
+	 * classified rows to the plan file, the apply mode executes the plan file.
+	 */
+	public static final String PLAN_MODE_NONE = "none";
+	public static final String PLAN_MODE_PLAN = "plan";
+	public static final String PLAN_MODE_APPLY = "apply";
+
+	public static final String[] PLAN_MODE_CODES = { PLAN_MODE_NONE, PLAN_MODE_PLAN, PLAN_MODE_APPLY };
+
+	/**
+	 * Output field saved by the earlier versions, which never added it to the
+	 * row-stream. It is read as no field.
+	 */
+	private static final String LEGACY_OUTPUT_FIELD = "demo_field";
+
+	/**
+	 * Stores the name of the field added to the row-stream with the id of the
+	 * created (or matched duplicate) issue.
 	 */
 	@Injection(name = "OUTPUT_FIELD")
 	private String outputField;
 
+	/*
+	 * RESULT FIELDS, not added to the row-stream when empty
+	 */
+	@Injection(name = "OUTPUT_ISSUE_URL_FIELD")
+	private String outputIssueUrlField;
+
+	@Injection(name = "OUTPUT_OUTCOME_FIELD")
+	private String outputOutcomeField;
+
+	@Injection(name = "OUTPUT_DUPLICATE_ID_FIELD")
+	private String outputDuplicateIdField;
+
+	@Injection(name = "OUTPUT_LATENCY_FIELD")
+	private String outputLatencyField;
+
+	@Injection(name = "OUTPUT_TIME_ENTRY_ID_FIELD")
+	private String outputTimeEntryIdField;
+
 	@Injection(name = "REDMINE_URL")
 	private String redmineUrl;
 
@@ -95,6 +148,9 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	@Injection(name = "REDMINE_PROJECT")
 	private String redmineProject;
 
+	@Injection(name = "REDMINE_THREADS")
+	private String redmineThreads;
+
 	@Injection(name = "REDMINE_SUBJECT")
 	private String redmineSubject;
 
@@ -125,6 +181,81 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	@Injection(name = "REDMINE_CATEGORY")
 	private String redmineCategory;
 
+	@Injection(name = "REDMINE_OPERATION")
+	private String redmineOperation;
+
+	@Injection(name = "REDMINE_ISSUE_ID_FIELD")
+	private String redmineIssueIdField;
+
+	@Injection(name = "REDMINE_STATUS_ID")
+	private String redmineStatusId;
+
+	@Injection(name = "REDMINE_NOTE_FIELD")
+	private String redmineNoteField;
+
+	@Injection(name = "REDMINE_TIME_USER_FIELD")
+	private String redmineTimeUserField;
+
+	@Injection(name = "REDMINE_TIME_HOURS_FIELD")
+	private String redmineTimeHoursField;
+
+	@Injection(name = "REDMINE_TIME_ACTIVITY_FIELD")
+	private String redmineTimeActivityField;
+
+	@Injection(name = "REDMINE_TIME_DATE_FIELD")
+	private String redmineTimeDateField;
+
+	@Injection(name = "REDMINE_TIME_COMMENTS_FIELD")
+	private String redmineTimeCommentsField;
+
+	@Injection(name = "REDMINE_KEY_FIELD")
+	private String redmineKeyField;
+
+	@Injection(name = "REDMINE_PARENT_KEY_FIELD")
+	private String redmineParentKeyField;
+
+	@Injection(name = "REDMINE_RELATES_FIELD")
+	private String redmineRelatesField;
+
+	@Injection(name = "REDMINE_BLOCKS_FIELD")
+	private String redmineBlocksField;
+
+	@Injection(name = "REDMINE_PRECEDES_FIELD")
+	private String redminePrecedesField;
+
+	@Injection(name = "REDMINE_WATCHERS_FIELD")
+	private String redmineWatchersField;
+
+	@Injection(name = "REDMINE_WATCHERS_DELIMITER")
+	private String redmineWatchersDelimiter;
+
+	@Injection(name = "REDMINE_WATCHERS_ON_CREATE")
+	private boolean redmineWatchersOnCreate;
+
+	@Injection(name = "REDMINE_COALESCE")
+	private boolean redmineCoalesce;
+
+	@Injection(name = "REDMINE_COALESCE_MAX_ROWS")
+	private String redmineCoalesceMaxRows;
+
+	@Injection(name = "REDMINE_COALESCE_WINDOW")
+	private String redmineCoalesceWindow;
+
+	@Injection(name = "REDMINE_BULK")
+	private boolean redmineBulk;
+
+	@Injection(name = "REDMINE_BULK_LOGIN")
+	private String redmineBulkLogin;
+
+	@Injection(name = "REDMINE_BULK_PASSWORD")
+	private String redmineBulkPassword;
+
+	@Injection(name = "REDMINE_PLAN_MODE")
+	private String redminePlanMode;
+
+	@Injection(name = "REDMINE_PLAN_FILE")
+	private String redminePlanFile;
+
 	/*
 	 * ATTACH FILE 
 	 */
@@ -134,9 +265,45 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	@Injection(name = "REDMINE_ATTACH_FILE_NAME")
 	private String redmineAttachFileName;
 
+	@Injection(name = "REDMINE_ATTACH_DELIMITER")
+	private String redmineAttachDelimiter;
+
+	@Injection(name = "REDMINE_ATTACH_GLOB")
+	private boolean redmineAttachGlob;
+
 	@Injection(name = "REDMINE_ATTACH_FILE_CONTENT")
 	private String redmineAttachFileContent;
 
+	@Injection(name = "REDMINE_ATTACH_FROM_FIELD")
+	private boolean redmineAttachFromField;
+
+	@Injection(name = "REDMINE_ATTACH_CONTENT_FIELD")
+	private String redmineAttachContentField;
+
+	@Injection(name = "REDMINE_ATTACH_NAME_FIELD")
+	private String redmineAttachNameField;
+
+	@Injection(name = "REDMINE_ATTACH_TYPE_FIELD")
+	private String redmineAttachTypeField;
+
+	@Injection(name = "REDMINE_UPLOAD_RATE")
+	private String redmineUploadRate;
+
+	@Injection(name = "REDMINE_ATTACH_DEFERRED")
+	private boolean redmineAttachDeferred;
+
+	@Injection(name = "REDMINE_ATTACH_QUEUE_SIZE")
+	private String redmineAttachQueueSize;
+
+	@Injection(name = "REDMINE_ATTACH_RETRIES")
+	private String redmineAttachRetries;
+
+	@Injection(name = "REDMINE_ATTACH_DEDUP")
+	private boolean redmineAttachDedup;
+
+	@Injection(name = "REDMINE_ATTACH_CACHE_FILE")
+	private String redmineAttachCacheFile;
+
 	
 	
 	
@@ -149,6 +316,48 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	
 	@Injection(name = "REDMINE_SEARCH_FIELD_STATUS")
 	private boolean redmineSearchFieldStatus;
+
+	@Injection(name = "REDMINE_UPSERT")
+	private boolean redmineUpsert;
+	
+	/*
+	 * AGGREGATION
+	 */
+	@Injection(name = "REDMINE_AGGREGATE")
+	private boolean redmineAggregate;
+
+	@Injection(name = "REDMINE_AGGREGATE_WINDOW")
+	private String redmineAggregateWindow;
+
+	@Injection(name = "REDMINE_AGGREGATE_MAX_ROWS")
+	private String redmineAggregateMaxRows;
+	
+	/*
+	 * SUPPRESSION WINDOW
+	 */
+	@Injection(name = "REDMINE_SUPPRESS")
+	private boolean redmineSuppress;
+
+	@Injection(name = "REDMINE_SUPPRESS_WINDOW")
+	private String redmineSuppressWindow;
+
+	@Injection(name = "REDMINE_SUPPRESS_MAX_KEYS")
+	private String redmineSuppressMaxKeys;
+
+	@Injection(name = "REDMINE_SUPPRESS_FILE")
+	private String redmineSuppressFile;
+	
+	/*
+	 * DEAD LETTER SPOOL
+	 */
+	@Injection(name = "REDMINE_DEAD_LETTER")
+	private boolean redmineDeadLetter;
+
+	@Injection(name = "REDMINE_DEAD_LETTER_FILE")
+	private String redmineDeadLetterFile;
+
+	@Injection(name = "REDMINE_REPLAY")
+	private boolean redmineReplay;
 	
 	/**
 	 * Constructor should call super() to make sure the base class has a chance to
@@ -203,10 +412,16 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	 * will be used by Spoon when a new step is created.
 	 */
 	public void setDefault() {
-		setOutputField("demo_field");
+		setOutputField("redmine_issue_id");
+		setOutputIssueUrlField("redmine_issue_url");
+		setOutputOutcomeField("redmine_outcome");
+		setOutputDuplicateIdField("redmine_duplicate_id");
+		setOutputLatencyField("redmine_latency_ms");
+		setOutputTimeEntryIdField("");
 		setRedmineUrl("http://localhost:8080/Redmine/api");
 		setRedmineToken("");
 		setRedmineProject("");
+		setRedmineThreads("1");
 		setRedmineSubject("");
 		setRedmineDescription("");
 		setRedmineSubjectField("");
@@ -214,15 +429,63 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		setRedmineDescriptionField("");
 		setRedmineDescriptionInField(false);
 		setRedmineCategory("");
+		setRedmineOperation(OPERATION_CREATE);
+		setRedmineIssueIdField("");
+		setRedmineStatusId("");
+		setRedmineNoteField("");
+		setRedmineTimeUserField("");
+		setRedmineTimeHoursField("");
+		setRedmineTimeActivityField("");
+		setRedmineTimeDateField("");
+		setRedmineTimeCommentsField("");
+		setRedmineKeyField("");
+		setRedmineParentKeyField("");
+		setRedmineRelatesField("");
+		setRedmineBlocksField("");
+		setRedminePrecedesField("");
+		setRedmineWatchersField("");
+		setRedmineWatchersDelimiter(",");
+		setRedmineWatchersOnCreate(true);
+		setRedmineCoalesce(false);
+		setRedmineCoalesceMaxRows("100");
+		setRedmineCoalesceWindow("60");
+		setRedmineBulk(false);
+		setRedminePlanMode("");
+		setRedminePlanFile("");
+		setRedmineBulkLogin("");
+		setRedmineBulkPassword("");
 		setRedmineAssigned("");
 		setRedmineAssignedToField("");
 		setRedmineAssignedToInField(false);
 		setRedmineAllowDuplicates(false);
 		setRedmineSearchFieldSubject(true);
 		setRedmineSearchFieldStatus(true);
+		setRedmineUpsert(false);
 		setRedmineAttachFile(false);
 		setRedmineAttachFileContent("");
+		setRedmineAttachFromField(false);
+		setRedmineAttachContentField("");
+		setRedmineAttachNameField("");
+		setRedmineAttachTypeField("");
+		setRedmineUploadRate("");
+		setRedmineAttachDeferred(false);
+		setRedmineAttachQueueSize("100");
+		setRedmineAttachRetries("3");
+		setRedmineAttachDedup(false);
+		setRedmineAttachCacheFile("");
 		setRedmineAttachFileName("");
+		setRedmineAttachDelimiter("");
+		setRedmineAttachGlob(false);
+		setRedmineAggregate(false);
+		setRedmineAggregateWindow("60");
+		setRedmineAggregateMaxRows("1000");
+		setRedmineSuppress(false);
+		setRedmineSuppressWindow("1800");
+		setRedmineSuppressMaxKeys("100000");
+		setRedmineSuppressFile("");
+		setRedmineDeadLetter(false);
+		setRedmineDeadLetterFile("${java.io.tmpdir}/redmine-dead-letter.bin");
+		setRedmineReplay(false);
 	}
 	
 	@Override
@@ -248,6 +511,54 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		this.outputField = outputField;
 	}
 
+	/**
+	 * @return the output field read, null for the legacy default so upgraded
+	 *         transformations keep their row layout
+	 */
+	private static String withoutLegacyDefault(String outputField) {
+		return LEGACY_OUTPUT_FIELD.equals(outputField) ? null : outputField;
+	}
+
+	public String getOutputIssueUrlField() {
+		return outputIssueUrlField;
+	}
+
+	public void setOutputIssueUrlField(String outputIssueUrlField) {
+		this.outputIssueUrlField = outputIssueUrlField;
+	}
+
+	public String getOutputOutcomeField() {
+		return outputOutcomeField;
+	}
+
+	public void setOutputOutcomeField(String outputOutcomeField) {
+		this.outputOutcomeField = outputOutcomeField;
+	}
+
+	public String getOutputDuplicateIdField() {
+		return outputDuplicateIdField;
+	}
+
+	public void setOutputDuplicateIdField(String outputDuplicateIdField) {
+		this.outputDuplicateIdField = outputDuplicateIdField;
+	}
+
+	public String getOutputLatencyField() {
+		return outputLatencyField;
+	}
+
+	public void setOutputLatencyField(String outputLatencyField) {
+		this.outputLatencyField = outputLatencyField;
+	}
+
+	public String getOutputTimeEntryIdField() {
+		return outputTimeEntryIdField;
+	}
+
+	public void setOutputTimeEntryIdField(String outputTimeEntryIdField) {
+		this.outputTimeEntryIdField = outputTimeEntryIdField;
+	}
+
 	public String getRedmineUrl() {
 		return redmineUrl;
 	}
@@ -312,6 +623,321 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		this.redmineCategory = redmineCategory;
 	}
 
+	/**
+	 * @return one of the OPERATION_* codes
+	 */
+	public String getRedmineOperation() {
+		return redmineOperation;
+	}
+
+	public void setRedmineOperation(String redmineOperation) {
+		this.redmineOperation = redmineOperation;
+	}
+
+	/**
+	 * @return the operation code, create when not set
+	 */
+	public String getOperation() {
+		return Const.isEmpty(redmineOperation) ? OPERATION_CREATE : redmineOperation;
+	}
+
+	/**
+	 * @return the localized description of an operation code
+	 */
+	public static String getOperationDescription(String code) {
+		return BaseMessages.getString(PKG, "Redmine.Operation." + code);
+	}
+
+	/**
+	 * @return the operation code of a localized description, create if unknown
+	 */
+	public static String getOperationCode(String description) {
+		for (String code : OPERATION_CODES) {
+			if (getOperationDescription(code).equals(description)) {
+				return code;
+			}
+		}
+		return OPERATION_CREATE;
+	}
+
+	/**
+	 * @return the plan mode code, none when not set
+	 */
+	public String getPlanMode() {
+		return Const.isEmpty(redminePlanMode) ? PLAN_MODE_NONE : redminePlanMode;
+	}
+
+	/**
+	 * @return the localized description of a plan mode code
+	 */
+	public static String getPlanModeDescription(String code) {
+		return BaseMessages.getString(PKG, "Redmine.PlanMode." + code);
+	}
+
+	/**
+	 * @return the plan mode code of a localized description, none if unknown
+	 */
+	public static String getPlanModeCode(String description) {
+		for (String code : PLAN_MODE_CODES) {
+			if (getPlanModeDescription(code).equals(description)) {
+				return code;
+			}
+		}
+		return PLAN_MODE_NONE;
+	}
+
+	/**
+	 * @return the field holding the id of the issue to change, for every operation but create
+	 */
+	public String getRedmineIssueIdField() {
+		return redmineIssueIdField;
+	}
+
+	public void setRedmineIssueIdField(String redmineIssueIdField) {
+		this.redmineIssueIdField = redmineIssueIdField;
+	}
+
+	/**
+	 * @return the status id set by the status transition operation
+	 */
+	public String getRedmineStatusId() {
+		return redmineStatusId;
+	}
+
+	public void setRedmineStatusId(String redmineStatusId) {
+		this.redmineStatusId = redmineStatusId;
+	}
+
+	/**
+	 * @return the field holding the journal note added by the update, status and note operations
+	 */
+	public String getRedmineNoteField() {
+		return redmineNoteField;
+	}
+
+	public void setRedmineNoteField(String redmineNoteField) {
+		this.redmineNoteField = redmineNoteField;
+	}
+
+	/**
+	 * @return the field holding the id of the user the time is logged for, empty for the API user
+	 */
+	public String getRedmineTimeUserField() {
+		return redmineTimeUserField;
+	}
+
+	public void setRedmineTimeUserField(String redmineTimeUserField) {
+		this.redmineTimeUserField = redmineTimeUserField;
+	}
+
+	/**
+	 * @return the field holding the hours spent
+	 */
+	public String getRedmineTimeHoursField() {
+		return redmineTimeHoursField;
+	}
+
+	public void setRedmineTimeHoursField(String redmineTimeHoursField) {
+		this.redmineTimeHoursField = redmineTimeHoursField;
+	}
+
+	/**
+	 * @return the field holding the activity, by name or id, empty for the default activity
+	 */
+	public String getRedmineTimeActivityField() {
+		return redmineTimeActivityField;
+	}
+
+	public void setRedmineTimeActivityField(String redmineTimeActivityField) {
+		this.redmineTimeActivityField = redmineTimeActivityField;
+	}
+
+	/**
+	 * @return the field holding the day the time was spent, empty for today
+	 */
+	public String getRedmineTimeDateField() {
+		return redmineTimeDateField;
+	}
+
+	public void setRedmineTimeDateField(String redmineTimeDateField) {
+		this.redmineTimeDateField = redmineTimeDateField;
+	}
+
+	/**
+	 * @return the field holding the comments of the time entry
+	 */
+	public String getRedmineTimeCommentsField() {
+		return redmineTimeCommentsField;
+	}
+
+	public void setRedmineTimeCommentsField(String redmineTimeCommentsField) {
+		this.redmineTimeCommentsField = redmineTimeCommentsField;
+	}
+
+	/**
+	 * @return the field holding the external key other rows refer to the created issue by
+	 */
+	public String getRedmineKeyField() {
+		return redmineKeyField;
+	}
+
+	public void setRedmineKeyField(String redmineKeyField) {
+		this.redmineKeyField = redmineKeyField;
+	}
+
+	/**
+	 * @return the field holding the external key of the parent issue
+	 */
+	public String getRedmineParentKeyField() {
+		return redmineParentKeyField;
+	}
+
+	public void setRedmineParentKeyField(String redmineParentKeyField) {
+		this.redmineParentKeyField = redmineParentKeyField;
+	}
+
+	/**
+	 * @return the field holding the external keys of the related issues, comma separated
+	 */
+	public String getRedmineRelatesField() {
+		return redmineRelatesField;
+	}
+
+	public void setRedmineRelatesField(String redmineRelatesField) {
+		this.redmineRelatesField = redmineRelatesField;
+	}
+
+	/**
+	 * @return the field holding the external keys of the issues blocked by the created one, comma separated
+	 */
+	public String getRedmineBlocksField() {
+		return redmineBlocksField;
+	}
+
+	public void setRedmineBlocksField(String redmineBlocksField) {
+		this.redmineBlocksField = redmineBlocksField;
+	}
+
+	/**
+	 * @return the field holding the external keys of the issues following the created one, comma separated
+	 */
+	public String getRedminePrecedesField() {
+		return redminePrecedesField;
+	}
+
+	public void setRedminePrecedesField(String redminePrecedesField) {
+		this.redminePrecedesField = redminePrecedesField;
+	}
+
+	/**
+	 * @return the field holding the logins or ids of the watchers of the created issue
+	 */
+	public String getRedmineWatchersField() {
+		return redmineWatchersField;
+	}
+
+	public void setRedmineWatchersField(String redmineWatchersField) {
+		this.redmineWatchersField = redmineWatchersField;
+	}
+
+	public String getRedmineWatchersDelimiter() {
+		return redmineWatchersDelimiter;
+	}
+
+	public void setRedmineWatchersDelimiter(String redmineWatchersDelimiter) {
+		this.redmineWatchersDelimiter = redmineWatchersDelimiter;
+	}
+
+	/**
+	 * @return true to send the watchers with the creation (Redmine 2.3 or later), false to add them afterwards
+	 */
+	public boolean isRedmineWatchersOnCreate() {
+		return redmineWatchersOnCreate;
+	}
+
+	public void setRedmineWatchersOnCreate(boolean redmineWatchersOnCreate) {
+		this.redmineWatchersOnCreate = redmineWatchersOnCreate;
+	}
+
+	/**
+	 * @return true to buffer the notes of the rows targeting the same issue and add them as one note
+	 */
+	public boolean isRedmineCoalesce() {
+		return redmineCoalesce;
+	}
+
+	public void setRedmineCoalesce(boolean redmineCoalesce) {
+		this.redmineCoalesce = redmineCoalesce;
+	}
+
+	public String getRedmineCoalesceMaxRows() {
+		return redmineCoalesceMaxRows;
+	}
+
+	public void setRedmineCoalesceMaxRows(String redmineCoalesceMaxRows) {
+		this.redmineCoalesceMaxRows = redmineCoalesceMaxRows;
+	}
+
+	/**
+	 * @return the longest time a note is buffered, in seconds
+	 */
+	public String getRedmineCoalesceWindow() {
+		return redmineCoalesceWindow;
+	}
+
+	public void setRedmineCoalesceWindow(String redmineCoalesceWindow) {
+		this.redmineCoalesceWindow = redmineCoalesceWindow;
+	}
+
+	/**
+	 * @return true to create the issues through the Redmine CSV import instead of one call per row
+	 */
+	public boolean isRedmineBulk() {
+		return redmineBulk;
+	}
+
+	public void setRedmineBulk(boolean redmineBulk) {
+		this.redmineBulk = redmineBulk;
+	}
+
+	/**
+	 * @return the plan mode, one of the PLAN_MODE_* codes
+	 */
+	public String getRedminePlanMode() {
+		return redminePlanMode;
+	}
+
+	public void setRedminePlanMode(String redminePlanMode) {
+		this.redminePlanMode = redminePlanMode;
+	}
+
+	public String getRedminePlanFile() {
+		return redminePlanFile;
+	}
+
+	public void setRedminePlanFile(String redminePlanFile) {
+		this.redminePlanFile = redminePlanFile;
+	}
+
+	/**
+	 * @return the login the CSV import runs as, the import does not accept API keys
+	 */
+	public String getRedmineBulkLogin() {
+		return redmineBulkLogin;
+	}
+
+	public void setRedmineBulkLogin(String redmineBulkLogin) {
+		this.redmineBulkLogin = redmineBulkLogin;
+	}
+
+	public String getRedmineBulkPassword() {
+		return redmineBulkPassword;
+	}
+
+	public void setRedmineBulkPassword(String redmineBulkPassword) {
+		this.redmineBulkPassword = redmineBulkPassword;
+	}
+
 	public String getRedmineProject() {
 		return redmineProject;
 	}
@@ -320,6 +946,17 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		this.redmineProject = redmineProject;
 	}
 
+	/**
+	 * @return the number of Redmine calls a step copy keeps in flight
+	 */
+	public String getRedmineThreads() {
+		return redmineThreads;
+	}
+
+	public void setRedmineThreads(String redmineThreads) {
+		this.redmineThreads = redmineThreads;
+	}
+
 	public boolean isRedmineSubjectInField() {
 		return redmineSubjectInField;
 	}
@@ -376,6 +1013,17 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		this.redmineSearchFieldStatus = redmineSearchFieldStatus;
 	}
 
+	/**
+	 * @return true to update the issue found by the duplicate search with the changed fields
+	 */
+	public boolean isRedmineUpsert() {
+		return redmineUpsert;
+	}
+
+	public void setRedmineUpsert(boolean redmineUpsert) {
+		this.redmineUpsert = redmineUpsert;
+	}
+
 	public boolean isRedmineAttachFile() {
 		return redmineAttachFile;
 	}
@@ -392,6 +1040,25 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		this.redmineAttachFileName = redmineAttachFileName;
 	}
 
+	/**
+	 * @return the separator of the file names in the file name field, empty for a single file
+	 */
+	public String getRedmineAttachDelimiter() {
+		return redmineAttachDelimiter;
+	}
+
+	public void setRedmineAttachDelimiter(String redmineAttachDelimiter) {
+		this.redmineAttachDelimiter = redmineAttachDelimiter;
+	}
+
+	public boolean isRedmineAttachGlob() {
+		return redmineAttachGlob;
+	}
+
+	public void setRedmineAttachGlob(boolean redmineAttachGlob) {
+		this.redmineAttachGlob = redmineAttachGlob;
+	}
+
 	public String getRedmineAttachFileContent() {
 		return redmineAttachFileContent;
 	}
@@ -400,6 +1067,187 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		this.redmineAttachFileContent = redmineAttachFileContent;
 	}
 
+	public boolean isRedmineAttachFromField() {
+		return redmineAttachFromField;
+	}
+
+	public void setRedmineAttachFromField(boolean redmineAttachFromField) {
+		this.redmineAttachFromField = redmineAttachFromField;
+	}
+
+	public String getRedmineAttachContentField() {
+		return redmineAttachContentField;
+	}
+
+	public void setRedmineAttachContentField(String redmineAttachContentField) {
+		this.redmineAttachContentField = redmineAttachContentField;
+	}
+
+	public String getRedmineAttachNameField() {
+		return redmineAttachNameField;
+	}
+
+	public void setRedmineAttachNameField(String redmineAttachNameField) {
+		this.redmineAttachNameField = redmineAttachNameField;
+	}
+
+	public String getRedmineAttachTypeField() {
+		return redmineAttachTypeField;
+	}
+
+	public void setRedmineAttachTypeField(String redmineAttachTypeField) {
+		this.redmineAttachTypeField = redmineAttachTypeField;
+	}
+
+	/**
+	 * @return the upload bandwidth cap of the step copy, in KB/s, empty for none
+	 */
+	public String getRedmineUploadRate() {
+		return redmineUploadRate;
+	}
+
+	public void setRedmineUploadRate(String redmineUploadRate) {
+		this.redmineUploadRate = redmineUploadRate;
+	}
+
+	/**
+	 * @return true to attach the files in the background, once the issue is created
+	 */
+	public boolean isRedmineAttachDeferred() {
+		return redmineAttachDeferred;
+	}
+
+	public void setRedmineAttachDeferred(boolean redmineAttachDeferred) {
+		this.redmineAttachDeferred = redmineAttachDeferred;
+	}
+
+	/**
+	 * @return the maximum number of issues waiting for their attachments
+	 */
+	public String getRedmineAttachQueueSize() {
+		return redmineAttachQueueSize;
+	}
+
+	public void setRedmineAttachQueueSize(String redmineAttachQueueSize) {
+		this.redmineAttachQueueSize = redmineAttachQueueSize;
+	}
+
+	/**
+	 * @return the number of times a failed background attachment is retried
+	 */
+	public String getRedmineAttachRetries() {
+		return redmineAttachRetries;
+	}
+
+	public void setRedmineAttachRetries(String redmineAttachRetries) {
+		this.redmineAttachRetries = redmineAttachRetries;
+	}
+
+	public boolean isRedmineAttachDedup() {
+		return redmineAttachDedup;
+	}
+
+	public void setRedmineAttachDedup(boolean redmineAttachDedup) {
+		this.redmineAttachDedup = redmineAttachDedup;
+	}
+
+	public String getRedmineAttachCacheFile() {
+		return redmineAttachCacheFile;
+	}
+
+	public void setRedmineAttachCacheFile(String redmineAttachCacheFile) {
+		this.redmineAttachCacheFile = redmineAttachCacheFile;
+	}
+
+	public boolean isRedmineAggregate() {
+		return redmineAggregate;
+	}
+
+	public void setRedmineAggregate(boolean redmineAggregate) {
+		this.redmineAggregate = redmineAggregate;
+	}
+
+	/**
+	 * @return the aggregation window in seconds
+	 */
+	public String getRedmineAggregateWindow() {
+		return redmineAggregateWindow;
+	}
+
+	public void setRedmineAggregateWindow(String redmineAggregateWindow) {
+		this.redmineAggregateWindow = redmineAggregateWindow;
+	}
+
+	public String getRedmineAggregateMaxRows() {
+		return redmineAggregateMaxRows;
+	}
+
+	public void setRedmineAggregateMaxRows(String redmineAggregateMaxRows) {
+		this.redmineAggregateMaxRows = redmineAggregateMaxRows;
+	}
+
+	public boolean isRedmineSuppress() {
+		return redmineSuppress;
+	}
+
+	public void setRedmineSuppress(boolean redmineSuppress) {
+		this.redmineSuppress = redmineSuppress;
+	}
+
+	/**
+	 * @return the suppression window in seconds
+	 */
+	public String getRedmineSuppressWindow() {
+		return redmineSuppressWindow;
+	}
+
+	public void setRedmineSuppressWindow(String redmineSuppressWindow) {
+		this.redmineSuppressWindow = redmineSuppressWindow;
+	}
+
+	public String getRedmineSuppressMaxKeys() {
+		return redmineSuppressMaxKeys;
+	}
+
+	public void setRedmineSuppressMaxKeys(String redmineSuppressMaxKeys) {
+		this.redmineSuppressMaxKeys = redmineSuppressMaxKeys;
+	}
+
+	/**
+	 * @return the file keeping the window between runs, empty to keep it in memory only
+	 */
+	public String getRedmineSuppressFile() {
+		return redmineSuppressFile;
+	}
+
+	public void setRedmineSuppressFile(String redmineSuppressFile) {
+		this.redmineSuppressFile = redmineSuppressFile;
+	}
+
+	public boolean isRedmineDeadLetter() {
+		return redmineDeadLetter;
+	}
+
+	public void setRedmineDeadLetter(boolean redmineDeadLetter) {
+		this.redmineDeadLetter = redmineDeadLetter;
+	}
+
+	public String getRedmineDeadLetterFile() {
+		return redmineDeadLetterFile;
+	}
+
+	public void setRedmineDeadLetterFile(String redmineDeadLetterFile) {
+		this.redmineDeadLetterFile = redmineDeadLetterFile;
+	}
+
+	public boolean isRedmineReplay() {
+		return redmineReplay;
+	}
+
+	public void setRedmineReplay(boolean redmineReplay) {
+		this.redmineReplay = redmineReplay;
+	}
+
 	/**
 	 * This method is used when a step is duplicated in Spoon. It needs to return a
 	 * deep copy of this step meta object. Be sure to create proper deep copies if
@@ -428,8 +1276,12 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	public String getXML() throws KettleValueException {
 		StringBuilder xml = new StringBuilder();
 
-		// only one field to serialize
 		xml.append(XMLHandler.addTagValue("outputfield", outputField));
+		xml.append(XMLHandler.addTagValue("outputIssueUrlField", outputIssueUrlField));
+		xml.append(XMLHandler.addTagValue("outputOutcomeField", outputOutcomeField));
+		xml.append(XMLHandler.addTagValue("outputDuplicateIdField", outputDuplicateIdField));
+		xml.append(XMLHandler.addTagValue("outputLatencyField", outputLatencyField));
+		xml.append(XMLHandler.addTagValue("outputTimeEntryIdField", outputTimeEntryIdField));
 		xml.append(XMLHandler.addTagValue("redmineUrl", redmineUrl));
 		xml.append(XMLHandler.addTagValue("redmineToken", redmineToken));
 		xml.append(XMLHandler.addTagValue("redmineSubject", redmineSubject));
@@ -442,13 +1294,62 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 		xml.append(XMLHandler.addTagValue("redmineAssignedToField", redmineAssignedToField));
 		xml.append(XMLHandler.addTagValue("redmineAssignedToInField", redmineAssignedToInField));
 		xml.append(XMLHandler.addTagValue("redmineCategory", redmineCategory));
+		xml.append(XMLHandler.addTagValue("redmineOperation", redmineOperation));
+		xml.append(XMLHandler.addTagValue("redmineIssueIdField", redmineIssueIdField));
+		xml.append(XMLHandler.addTagValue("redmineStatusId", redmineStatusId));
+		xml.append(XMLHandler.addTagValue("redmineNoteField", redmineNoteField));
+		xml.append(XMLHandler.addTagValue("redmineTimeUserField", redmineTimeUserField));
+		xml.append(XMLHandler.addTagValue("redmineTimeHoursField", redmineTimeHoursField));
+		xml.append(XMLHandler.addTagValue("redmineTimeActivityField", redmineTimeActivityField));
+		xml.append(XMLHandler.addTagValue("redmineTimeDateField", redmineTimeDateField));
+		xml.append(XMLHandler.addTagValue("redmineTimeCommentsField", redmineTimeCommentsField));
+		xml.append(XMLHandler.addTagValue("redmineKeyField", redmineKeyField));
+		xml.append(XMLHandler.addTagValue("redmineParentKeyField", redmineParentKeyField));
+		xml.append(XMLHandler.addTagValue("redmineRelatesField", redmineRelatesField));
+		xml.append(XMLHandler.addTagValue("redmineBlocksField", redmineBlocksField));
+		xml.append(XMLHandler.addTagValue("redminePrecedesField", redminePrecedesField));
+		xml.append(XMLHandler.addTagValue("redmineWatchersField", redmineWatchersField));
+		xml.append(XMLHandler.addTagValue("redmineWatchersDelimiter", redmineWatchersDelimiter));
+		xml.append(XMLHandler.addTagValue("redmineWatchersOnCreate", redmineWatchersOnCreate));
+		xml.append(XMLHandler.addTagValue("redmineCoalesce", redmineCoalesce));
+		xml.append(XMLHandler.addTagValue("redmineCoalesceMaxRows", redmineCoalesceMaxRows));
+		xml.append(XMLHandler.addTagValue("redmineCoalesceWindow", redmineCoalesceWindow));
+		xml.append(XMLHandler.addTagValue("redmineBulk", redmineBulk));
+		xml.append(XMLHandler.addTagValue("redminePlanMode", redminePlanMode));
+		xml.append(XMLHandler.addTagValue("redminePlanFile", redminePlanFile));
+		xml.append(XMLHandler.addTagValue("redmineBulkLogin", redmineBulkLogin));
+		xml.append(XMLHandler.addTagValue("redmineBulkPassword", Encr.encryptPasswordIfNotUsingVariables(redmineBulkPassword)));
 		xml.append(XMLHandler.addTagValue("redmineProject", redmineProject));
+		xml.append(XMLHandler.addTagValue("redmineThreads", redmineThreads));
 		xml.append(XMLHandler.addTagValue("redmineAllowDuplicates", redmineAllowDuplicates));
 		xml.append(XMLHandler.addTagValue("redmineSearchFieldStatus", redmineSearchFieldStatus));
+		xml.append(XMLHandler.addTagValue("redmineUpsert", redmineUpsert));
 		xml.append(XMLHandler.addTagValue("redmineSearchFieldSubject", redmineSearchFieldSubject));
 		xml.append(XMLHandler.addTagValue("redmineAttachFile", redmineAttachFile));
 		xml.append(XMLHandler.addTagValue("redmineAttachFileName", redmineAttachFileName));
+		xml.append(XMLHandler.addTagValue("redmineAttachDelimiter", redmineAttachDelimiter));
+		xml.append(XMLHandler.addTagValue("redmineAttachGlob", redmineAttachGlob));
 		xml.append(XMLHandler.addTagValue("redmineAttachFileContent", redmineAttachFileContent));
+		xml.append(XMLHandler.addTagValue("redmineAttachFromField", redmineAttachFromField));
+		xml.append(XMLHandler.addTagValue("redmineAttachContentField", redmineAttachContentField));
+		xml.append(XMLHandler.addTagValue("redmineAttachNameField", redmineAttachNameField));
+		xml.append(XMLHandler.addTagValue("redmineAttachTypeField", redmineAttachTypeField));
+		xml.append(XMLHandler.addTagValue("redmineUploadRate", redmineUploadRate));
+		xml.append(XMLHandler.addTagValue("redmineAttachDeferred", redmineAttachDeferred));
+		xml.append(XMLHandler.addTagValue("redmineAttachQueueSize", redmineAttachQueueSize));
+		xml.append(XMLHandler.addTagValue("redmineAttachRetries", redmineAttachRetries));
+		xml.append(XMLHandler.addTagValue("redmineAttachDedup", redmineAttachDedup));
+		xml.append(XMLHandler.addTagValue("redmineAttachCacheFile", redmineAttachCacheFile));
+		xml.append(XMLHandler.addTagValue("redmineAggregate", redmineAggregate));
+		xml.append(XMLHandler.addTagValue("redmineAggregateWindow", redmineAggregateWindow));
+		xml.append(XMLHandler.addTagValue("redmineAggregateMaxRows", redmineAggregateMaxRows));
+		xml.append(XMLHandler.addTagValue("redmineSuppress", redmineSuppress));
+		xml.append(XMLHandler.addTagValue("redmineSuppressWindow", redmineSuppressWindow));
+		xml.append(XMLHandler.addTagValue("redmineSuppressMaxKeys", redmineSuppressMaxKeys));
+		xml.append(XMLHandler.addTagValue("redmineSuppressFile", redmineSuppressFile));
+		xml.append(XMLHandler.addTagValue("redmineDeadLetter", redmineDeadLetter));
+		xml.append(XMLHandler.addTagValue("redmineDeadLetterFile", redmineDeadLetterFile));
+		xml.append(XMLHandler.addTagValue("redmineReplay", redmineReplay));
 		
 		return xml.toString();
 	}
@@ -466,7 +1367,12 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	 */
 	public void loadXML(Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore) throws KettleXMLException {
 		try {
-			setOutputField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputfield")));
+			setOutputField(withoutLegacyDefault(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputfield"))));
+			setOutputIssueUrlField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputIssueUrlField")));
+			setOutputOutcomeField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputOutcomeField")));
+			setOutputDuplicateIdField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputDuplicateIdField")));
+			setOutputLatencyField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputLatencyField")));
+			setOutputTimeEntryIdField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "outputTimeEntryIdField")));
 			setRedmineUrl(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineUrl")));
 			setRedmineToken(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineToken")));
 			setRedmineSubject(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineSubject")));
@@ -479,13 +1385,62 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 			setRedmineAssignedToField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAssignedToField")));
 			setRedmineAssignedToInField("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAssignedToInField"))));
 			setRedmineCategory(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineCategory")));
+			setRedmineOperation(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineOperation")));
+			setRedmineIssueIdField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineIssueIdField")));
+			setRedmineStatusId(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineStatusId")));
+			setRedmineNoteField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineNoteField")));
+			setRedmineTimeUserField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineTimeUserField")));
+			setRedmineTimeHoursField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineTimeHoursField")));
+			setRedmineTimeActivityField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineTimeActivityField")));
+			setRedmineTimeDateField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineTimeDateField")));
+			setRedmineTimeCommentsField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineTimeCommentsField")));
+			setRedmineKeyField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineKeyField")));
+			setRedmineParentKeyField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineParentKeyField")));
+			setRedmineRelatesField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineRelatesField")));
+			setRedmineBlocksField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineBlocksField")));
+			setRedminePrecedesField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redminePrecedesField")));
+			setRedmineWatchersField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineWatchersField")));
+			setRedmineWatchersDelimiter(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineWatchersDelimiter")));
+			setRedmineWatchersOnCreate("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineWatchersOnCreate"))));
+			setRedmineCoalesce("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineCoalesce"))));
+			setRedmineCoalesceMaxRows(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineCoalesceMaxRows")));
+			setRedmineCoalesceWindow(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineCoalesceWindow")));
+			setRedmineBulk("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineBulk"))));
+			setRedminePlanMode(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redminePlanMode")));
+			setRedminePlanFile(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redminePlanFile")));
+			setRedmineBulkLogin(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineBulkLogin")));
+			setRedmineBulkPassword(Encr.decryptPasswordOptionallyEncrypted(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineBulkPassword"))));
 			setRedmineProject(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineProject")));
+			setRedmineThreads(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineThreads")));
 			setRedmineAllowDuplicates("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAllowDuplicates"))));
 			setRedmineSearchFieldStatus("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineSearchFieldStatus"))));
+			setRedmineUpsert("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineUpsert"))));
 			setRedmineSearchFieldSubject("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineSearchFieldSubject"))));
 			setRedmineAttachFile("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachFile"))));
 			setRedmineAttachFileName(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachFileName")));
+			setRedmineAttachDelimiter(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachDelimiter")));
+			setRedmineAttachGlob("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachGlob"))));
 			setRedmineAttachFileContent(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachFileContent")));
+			setRedmineAttachFromField("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachFromField"))));
+			setRedmineAttachContentField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachContentField")));
+			setRedmineAttachNameField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachNameField")));
+			setRedmineAttachTypeField(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachTypeField")));
+			setRedmineUploadRate(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineUploadRate")));
+			setRedmineAttachDeferred("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachDeferred"))));
+			setRedmineAttachQueueSize(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachQueueSize")));
+			setRedmineAttachRetries(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachRetries")));
+			setRedmineAttachDedup("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachDedup"))));
+			setRedmineAttachCacheFile(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAttachCacheFile")));
+			setRedmineAggregate("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAggregate"))));
+			setRedmineAggregateWindow(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAggregateWindow")));
+			setRedmineAggregateMaxRows(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineAggregateMaxRows")));
+			setRedmineSuppress("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineSuppress"))));
+			setRedmineSuppressWindow(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineSuppressWindow")));
+			setRedmineSuppressMaxKeys(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineSuppressMaxKeys")));
+			setRedmineSuppressFile(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineSuppressFile")));
+			setRedmineDeadLetter("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineDeadLetter"))));
+			setRedmineDeadLetterFile(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineDeadLetterFile")));
+			setRedmineReplay("Y".equalsIgnoreCase(XMLHandler.getNodeValue(XMLHandler.getSubNode(stepnode, "redmineReplay"))));
 			
 		} catch (Exception e) {
 			throw new KettleXMLException("Redmine plugin unable to read step info from XML node", e);
@@ -506,6 +1461,11 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 			throws KettleException {
 		try {
 			rep.saveStepAttribute(id_transformation, id_step, "outputfield", outputField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "outputIssueUrlField", outputIssueUrlField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "outputOutcomeField", outputOutcomeField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "outputDuplicateIdField", outputDuplicateIdField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "outputLatencyField", outputLatencyField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "outputTimeEntryIdField", outputTimeEntryIdField); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineUrl", redmineUrl); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineToken", redmineToken); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineSubject", redmineSubject); //$NON-NLS-1$
@@ -518,13 +1478,62 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 			rep.saveStepAttribute(id_transformation, id_step, "redmineAssignedToField", redmineAssignedToField); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineAssignedToInField", redmineAssignedToInField); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineCategory", redmineCategory); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineOperation", redmineOperation); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineIssueIdField", redmineIssueIdField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineStatusId", redmineStatusId); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineNoteField", redmineNoteField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineTimeUserField", redmineTimeUserField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineTimeHoursField", redmineTimeHoursField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineTimeActivityField", redmineTimeActivityField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineTimeDateField", redmineTimeDateField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineTimeCommentsField", redmineTimeCommentsField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineKeyField", redmineKeyField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineParentKeyField", redmineParentKeyField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineRelatesField", redmineRelatesField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineBlocksField", redmineBlocksField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redminePrecedesField", redminePrecedesField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineWatchersField", redmineWatchersField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineWatchersDelimiter", redmineWatchersDelimiter); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineWatchersOnCreate", redmineWatchersOnCreate); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineCoalesce", redmineCoalesce); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineCoalesceMaxRows", redmineCoalesceMaxRows); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineCoalesceWindow", redmineCoalesceWindow); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineBulk", redmineBulk); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redminePlanMode", redminePlanMode); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redminePlanFile", redminePlanFile); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineBulkLogin", redmineBulkLogin); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineBulkPassword", Encr.encryptPasswordIfNotUsingVariables(redmineBulkPassword)); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineProject", redmineProject); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineThreads", redmineThreads); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineAllowDuplicates", redmineAllowDuplicates); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineSearchFieldStatus", redmineSearchFieldStatus); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineUpsert", redmineUpsert); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineSearchFieldSubject", redmineSearchFieldSubject); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachFile", redmineAttachFile); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachFileName", redmineAttachFileName); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachDelimiter", redmineAttachDelimiter); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachGlob", redmineAttachGlob); //$NON-NLS-1$
 			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachFileContent", redmineAttachFileContent); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachFromField", redmineAttachFromField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachContentField", redmineAttachContentField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachNameField", redmineAttachNameField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachTypeField", redmineAttachTypeField); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineUploadRate", redmineUploadRate); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachDeferred", redmineAttachDeferred); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachQueueSize", redmineAttachQueueSize); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachRetries", redmineAttachRetries); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachDedup", redmineAttachDedup); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAttachCacheFile", redmineAttachCacheFile); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAggregate", redmineAggregate); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAggregateWindow", redmineAggregateWindow); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineAggregateMaxRows", redmineAggregateMaxRows); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineSuppress", redmineSuppress); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineSuppressWindow", redmineSuppressWindow); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineSuppressMaxKeys", redmineSuppressMaxKeys); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineSuppressFile", redmineSuppressFile); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineDeadLetter", redmineDeadLetter); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineDeadLetterFile", redmineDeadLetterFile); //$NON-NLS-1$
+			rep.saveStepAttribute(id_transformation, id_step, "redmineReplay", redmineReplay); //$NON-NLS-1$
 			
 		} catch (Exception e) {
 			throw new KettleException("Unable to save step into repository: " + id_step, e);
@@ -543,7 +1552,12 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	 */
 	public void readRep(Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases) throws KettleException {
 		try {
-			outputField = rep.getStepAttributeString(id_step, "outputfield"); //$NON-NLS-1$
+			outputField = withoutLegacyDefault(rep.getStepAttributeString(id_step, "outputfield")); //$NON-NLS-1$
+			outputIssueUrlField = rep.getStepAttributeString(id_step, "outputIssueUrlField"); //$NON-NLS-1$
+			outputOutcomeField = rep.getStepAttributeString(id_step, "outputOutcomeField"); //$NON-NLS-1$
+			outputDuplicateIdField = rep.getStepAttributeString(id_step, "outputDuplicateIdField"); //$NON-NLS-1$
+			outputLatencyField = rep.getStepAttributeString(id_step, "outputLatencyField"); //$NON-NLS-1$
+			outputTimeEntryIdField = rep.getStepAttributeString(id_step, "outputTimeEntryIdField"); //$NON-NLS-1$
 			redmineUrl = rep.getStepAttributeString(id_step, "redmineUrl"); //$NON-NLS-1$
 			redmineToken = rep.getStepAttributeString(id_step, "redmineToken"); //$NON-NLS-1$
 			redmineSubject = rep.getStepAttributeString(id_step, "redmineSubject"); //$NON-NLS-1$
@@ -556,13 +1570,62 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 			redmineAssignedToField = rep.getStepAttributeString(id_step, "redmineAssignedToField"); //$NON-NLS-1$
 			redmineAssignedToInField = rep.getStepAttributeBoolean(id_step, "redmineAssignedToInField"); //$NON-NLS-1$
 			redmineCategory = rep.getStepAttributeString(id_step, "redmineCategory"); //$NON-NLS-1$
+			redmineOperation = rep.getStepAttributeString(id_step, "redmineOperation"); //$NON-NLS-1$
+			redmineIssueIdField = rep.getStepAttributeString(id_step, "redmineIssueIdField"); //$NON-NLS-1$
+			redmineStatusId = rep.getStepAttributeString(id_step, "redmineStatusId"); //$NON-NLS-1$
+			redmineNoteField = rep.getStepAttributeString(id_step, "redmineNoteField"); //$NON-NLS-1$
+			redmineTimeUserField = rep.getStepAttributeString(id_step, "redmineTimeUserField"); //$NON-NLS-1$
+			redmineTimeHoursField = rep.getStepAttributeString(id_step, "redmineTimeHoursField"); //$NON-NLS-1$
+			redmineTimeActivityField = rep.getStepAttributeString(id_step, "redmineTimeActivityField"); //$NON-NLS-1$
+			redmineTimeDateField = rep.getStepAttributeString(id_step, "redmineTimeDateField"); //$NON-NLS-1$
+			redmineTimeCommentsField = rep.getStepAttributeString(id_step, "redmineTimeCommentsField"); //$NON-NLS-1$
+			redmineKeyField = rep.getStepAttributeString(id_step, "redmineKeyField"); //$NON-NLS-1$
+			redmineParentKeyField = rep.getStepAttributeString(id_step, "redmineParentKeyField"); //$NON-NLS-1$
+			redmineRelatesField = rep.getStepAttributeString(id_step, "redmineRelatesField"); //$NON-NLS-1$
+			redmineBlocksField = rep.getStepAttributeString(id_step, "redmineBlocksField"); //$NON-NLS-1$
+			redminePrecedesField = rep.getStepAttributeString(id_step, "redminePrecedesField"); //$NON-NLS-1$
+			redmineWatchersField = rep.getStepAttributeString(id_step, "redmineWatchersField"); //$NON-NLS-1$
+			redmineWatchersDelimiter = rep.getStepAttributeString(id_step, "redmineWatchersDelimiter"); //$NON-NLS-1$
+			redmineWatchersOnCreate = rep.getStepAttributeBoolean(id_step, "redmineWatchersOnCreate"); //$NON-NLS-1$
+			redmineCoalesce = rep.getStepAttributeBoolean(id_step, "redmineCoalesce"); //$NON-NLS-1$
+			redmineCoalesceMaxRows = rep.getStepAttributeString(id_step, "redmineCoalesceMaxRows"); //$NON-NLS-1$
+			redmineCoalesceWindow = rep.getStepAttributeString(id_step, "redmineCoalesceWindow"); //$NON-NLS-1$
+			redmineBulk = rep.getStepAttributeBoolean(id_step, "redmineBulk"); //$NON-NLS-1$
+			redminePlanMode = rep.getStepAttributeString(id_step, "redminePlanMode"); //$NON-NLS-1$
+			redminePlanFile = rep.getStepAttributeString(id_step, "redminePlanFile"); //$NON-NLS-1$
+			redmineBulkLogin = rep.getStepAttributeString(id_step, "redmineBulkLogin"); //$NON-NLS-1$
+			redmineBulkPassword = Encr.decryptPasswordOptionallyEncrypted(rep.getStepAttributeString(id_step, "redmineBulkPassword")); //$NON-NLS-1$
 			redmineProject = rep.getStepAttributeString(id_step, "redmineProject"); //$NON-NLS-1$
+			redmineThreads = rep.getStepAttributeString(id_step, "redmineThreads"); //$NON-NLS-1$
 			redmineAllowDuplicates = rep.getStepAttributeBoolean(id_step, "redmineAllowDuplicates"); //$NON-NLS-1$
 			redmineSearchFieldStatus = rep.getStepAttributeBoolean(id_step, "redmineSearchFieldStatus"); //$NON-NLS-1$
+			redmineUpsert = rep.getStepAttributeBoolean(id_step, "redmineUpsert"); //$NON-NLS-1$
 			redmineSearchFieldSubject = rep.getStepAttributeBoolean(id_step, "redmineSearchFieldSubject"); //$NON-NLS-1$
 			redmineAttachFile = rep.getStepAttributeBoolean(id_step, "redmineAttachFile"); //$NON-NLS-1$
 			redmineAttachFileName = rep.getStepAttributeString(id_step, "redmineAttachFileName"); //$NON-NLS-1$
+			redmineAttachDelimiter = rep.getStepAttributeString(id_step, "redmineAttachDelimiter"); //$NON-NLS-1$
+			redmineAttachGlob = rep.getStepAttributeBoolean(id_step, "redmineAttachGlob"); //$NON-NLS-1$
 			redmineAttachFileContent = rep.getStepAttributeString(id_step, "redmineAttachFileContent"); //$NON-NLS-1$
+			redmineAttachFromField = rep.getStepAttributeBoolean(id_step, "redmineAttachFromField"); //$NON-NLS-1$
+			redmineAttachContentField = rep.getStepAttributeString(id_step, "redmineAttachContentField"); //$NON-NLS-1$
+			redmineAttachNameField = rep.getStepAttributeString(id_step, "redmineAttachNameField"); //$NON-NLS-1$
+			redmineAttachTypeField = rep.getStepAttributeString(id_step, "redmineAttachTypeField"); //$NON-NLS-1$
+			redmineUploadRate = rep.getStepAttributeString(id_step, "redmineUploadRate"); //$NON-NLS-1$
+			redmineAttachDeferred = rep.getStepAttributeBoolean(id_step, "redmineAttachDeferred"); //$NON-NLS-1$
+			redmineAttachQueueSize = rep.getStepAttributeString(id_step, "redmineAttachQueueSize"); //$NON-NLS-1$
+			redmineAttachRetries = rep.getStepAttributeString(id_step, "redmineAttachRetries"); //$NON-NLS-1$
+			redmineAttachDedup = rep.getStepAttributeBoolean(id_step, "redmineAttachDedup"); //$NON-NLS-1$
+			redmineAttachCacheFile = rep.getStepAttributeString(id_step, "redmineAttachCacheFile"); //$NON-NLS-1$
+			redmineAggregate = rep.getStepAttributeBoolean(id_step, "redmineAggregate"); //$NON-NLS-1$
+			redmineAggregateWindow = rep.getStepAttributeString(id_step, "redmineAggregateWindow"); //$NON-NLS-1$
+			redmineAggregateMaxRows = rep.getStepAttributeString(id_step, "redmineAggregateMaxRows"); //$NON-NLS-1$
+			redmineSuppress = rep.getStepAttributeBoolean(id_step, "redmineSuppress"); //$NON-NLS-1$
+			redmineSuppressWindow = rep.getStepAttributeString(id_step, "redmineSuppressWindow"); //$NON-NLS-1$
+			redmineSuppressMaxKeys = rep.getStepAttributeString(id_step, "redmineSuppressMaxKeys"); //$NON-NLS-1$
+			redmineSuppressFile = rep.getStepAttributeString(id_step, "redmineSuppressFile"); //$NON-NLS-1$
+			redmineDeadLetter = rep.getStepAttributeBoolean(id_step, "redmineDeadLetter"); //$NON-NLS-1$
+			redmineDeadLetterFile = rep.getStepAttributeString(id_step, "redmineDeadLetterFile"); //$NON-NLS-1$
+			redmineReplay = rep.getStepAttributeBoolean(id_step, "redmineReplay"); //$NON-NLS-1$
 			
 		} catch (Exception e) {
 			throw new KettleException("Unable to load step from repository", e);
@@ -587,7 +1650,25 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 	public void getFields(RowMetaInterface inputRowMeta, String name, RowMetaInterface[] info, StepMeta nextStep,
 			VariableSpace space, Repository repository, IMetaStore metaStore) throws KettleStepException {
 
-		// do nothing
+		addField(inputRowMeta, new ValueMetaInteger(), outputField, name, space);
+		addField(inputRowMeta, new ValueMetaString(), outputIssueUrlField, name, space);
+		addField(inputRowMeta, new ValueMetaString(), outputOutcomeField, name, space);
+		addField(inputRowMeta, new ValueMetaInteger(), outputDuplicateIdField, name, space);
+		addField(inputRowMeta, new ValueMetaInteger(), outputLatencyField, name, space);
+		addField(inputRowMeta, new ValueMetaInteger(), outputTimeEntryIdField, name, space);
+	}
+
+	/**
+	 * Adds a result field to the row-stream, unless its name is empty.
+	 */
+	private void addField(RowMetaInterface rowMeta, ValueMetaInterface valueMeta, String fieldName, String origin,
+			VariableSpace space) {
+		if (fieldName == null || fieldName.trim().isEmpty()) {
+			return;
+		}
+		valueMeta.setName(space.environmentSubstitute(fieldName));
+		valueMeta.setOrigin(origin);
+		rowMeta.addValueMeta(valueMeta);
 	}
 
 	/**
@@ -615,8 +1696,22 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 			IMetaStore metaStore) {
 		CheckResult cr;
 
-		// See if there are input streams leading to this step!
-		if (input != null && input.length > 0) {
+		// See if there are input streams leading to this step! In replay mode the
+		// rows come from the dead letter file instead, in apply mode from the plan.
+		if (PLAN_MODE_APPLY.equals(getPlanMode())) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_COMMENT,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.Apply.COMMENT"), stepMeta);
+			remarks.add(cr);
+		} else if (redmineReplay && input != null && input.length > 0) {
+			// the input rows would never be read and block the previous step
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.Replay.ERROR"), stepMeta);
+			remarks.add(cr);
+		} else if (redmineReplay) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_COMMENT,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.Replay.COMMENT"), stepMeta);
+			remarks.add(cr);
+		} else if (input != null && input.length > 0) {
 			cr = new CheckResult(CheckResult.TYPE_RESULT_OK,
 					BaseMessages.getString(PKG, "Redmine.CheckResult.ReceivingRows.OK"), stepMeta);
 			remarks.add(cr);
@@ -625,5 +1720,63 @@ public class RedmineStepMeta extends BaseStepMeta implements StepMetaInterface {
 					BaseMessages.getString(PKG, "Redmine.CheckResult.ReceivingRows.ERROR"), stepMeta);
 			remarks.add(cr);
 		}
+
+		// every operation but create targets an issue by id. Time entries are
+		// logged on the issue when given, on the project otherwise.
+		if (!OPERATION_CREATE.equals(getOperation()) && !OPERATION_TIME_ENTRY.equals(getOperation())
+				&& Const.isEmpty(redmineIssueIdField)) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.IssueIdField.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+
+		if (OPERATION_TIME_ENTRY.equals(getOperation()) && Const.isEmpty(redmineTimeHoursField)) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.TimeHoursField.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+
+		if (OPERATION_STATUS.equals(getOperation()) && Const.isEmpty(redmineStatusId)) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.StatusId.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+
+		if (redmineBulk && (!OPERATION_CREATE.equals(getOperation()) || Const.isEmpty(redmineBulkLogin))) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.Bulk.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+
+		if (redmineAttachFile && redmineAttachFromField
+				&& (Const.isEmpty(redmineAttachContentField) || Const.isEmpty(redmineAttachNameField))) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.AttachFromField.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+
+		if (!PLAN_MODE_NONE.equals(getPlanMode())
+				&& (!OPERATION_CREATE.equals(getOperation()) || Const.isEmpty(redminePlanFile))) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_ERROR,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.Plan.ERROR"), stepMeta);
+			remarks.add(cr);
+		}
+
+		// external keys are resolved by the calls creating the issues one by one
+		boolean links = !Const.isEmpty(redmineParentKeyField) || !Const.isEmpty(redmineRelatesField)
+				|| !Const.isEmpty(redmineBlocksField) || !Const.isEmpty(redminePrecedesField);
+		if (links && (!OPERATION_CREATE.equals(getOperation()) || redmineBulk || redmineAggregate
+				|| !PLAN_MODE_NONE.equals(getPlanMode()))) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.Links.WARNING"), stepMeta);
+			remarks.add(cr);
+		}
+
+		// upsert reuses the issue found by the duplicate search
+		if (redmineUpsert && redmineAllowDuplicates) {
+			cr = new CheckResult(CheckResult.TYPE_RESULT_WARNING,
+					BaseMessages.getString(PKG, "Redmine.CheckResult.UpsertWithoutSearch.WARNING"), stepMeta);
+			remarks.add(cr);
+		}
 	}
 }
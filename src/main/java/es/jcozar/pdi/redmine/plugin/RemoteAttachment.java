@@ -0,0 +1,84 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+
+package es.jcozar.pdi.redmine.plugin;
+
+/**
+ * An attachment on Redmine, as listed with its issue: what is needed to
+ * download it, and the output row of its attributes.
+ */
+public class RemoteAttachment {
+
+	private final int id;
+	private final String fileName;
+	private final long fileSize;
+	private final String contentUrl;
+	private final String digest;
+	private final Object[] row;
+
+	/**
+	 * @param id         the attachment id
+	 * @param fileName   the name of the file
+	 * @param fileSize   the size of the file, -1 if unknown
+	 * @param contentUrl the URL of the content
+	 * @param digest     the hex checksum of the content, null if not given
+	 * @param row        the output row of the attachment
+	 */
+	public RemoteAttachment(int id, String fileName, long fileSize, String contentUrl, String digest, Object[] row) {
+		this.id = id;
+		this.fileName = fileName;
+		this.fileSize = fileSize;
+		this.contentUrl = contentUrl;
+		this.digest = digest;
+		this.row = row;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	public String getContentUrl() {
+		return contentUrl;
+	}
+
+	public String getDigest() {
+		return digest;
+	}
+
+	public Object[] getRow() {
+		return row;
+	}
+
+	@Override
+	public String toString() {
+		return "attachment #" + id + " (" + fileName + ")";
+	}
+}
@@ -0,0 +1,165 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.pentaho.di.core.exception.KettleException;
+
+import es.jcozar.pdi.redmine.plugin.utils.TtlCache;
+
+/**
+ * Remembers the issue opened for each duplicate key during the suppression
+ * window, so the rows repeating a key inside the window are answered without
+ * calling Redmine.
+ *
+ * The window can be kept in a local file to survive between runs. The file
+ * holds the entry count followed by key, expiry time and issue id for every
+ * live entry. Keys are written as their UTF-8 length and bytes, so they are
+ * not limited to the 64 KB of modified UTF-8.
+ */
+public class SuppressionWindow {
+
+	private static final int MAGIC = 0x52535732; // "RSW2"
+	private static final int MAGIC_V1 = 0x52535731; // "RSW1", keys in modified UTF-8
+
+	private final TtlCache<String, Integer> issues;
+	private final File file;
+
+	/**
+	 * @param window  length of the window, in milliseconds
+	 * @param maxKeys maximum number of keys remembered, the oldest are forgotten first
+	 * @param file    the file keeping the window between runs, null to keep it in memory only
+	 */
+	public SuppressionWindow(long window, int maxKeys, File file) {
+		this.issues = new TtlCache<String, Integer>(window, maxKeys, false);
+		this.file = file;
+	}
+
+	/**
+	 * @return the issue opened for the key inside the window, or null
+	 */
+	public Integer get(String key, long now) {
+		return key == null ? null : issues.get(key, now);
+	}
+
+	/**
+	 * Starts the window of the key, unless it is already open.
+	 */
+	public void put(String key, int issueId, long now) {
+		if (key != null && issues.get(key, now) == null) {
+			issues.put(key, Integer.valueOf(issueId), now);
+		}
+	}
+
+	public int size() {
+		return issues.size();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Restores the entries saved by a previous run, dropping the expired ones.
+	 */
+	public void load(long now) throws KettleException {
+		if (file == null || !file.exists()) {
+			return;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				int magic = in.readInt();
+				if (magic != MAGIC && magic != MAGIC_V1) {
+					throw new KettleException("File " + file + " is not a suppression window file");
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					String key = magic == MAGIC_V1 ? in.readUTF() : readKey(in);
+					long expires = in.readLong();
+					int issueId = in.readInt();
+					issues.put(key, Integer.valueOf(issueId), now, expires);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new KettleException("Unable to read suppression window file " + file, e);
+		}
+	}
+
+	private static String readKey(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Invalid key length " + length);
+		}
+		byte[] key = new byte[length];
+		in.readFully(key);
+		return new String(key, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the live entries, replacing the file atomically.
+	 */
+	public void save(long now) throws KettleException {
+		if (file == null) {
+			return;
+		}
+		Map<String, TtlCache.Entry<Integer>> entries = issues.snapshot(now);
+		File temp = new File(file.getPath() + ".tmp");
+		try {
+			if (file.getParentFile() != null) {
+				file.getParentFile().mkdirs();
+			}
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(entries.size());
+				for (Map.Entry<String, TtlCache.Entry<Integer>> entry : entries.entrySet()) {
+					byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+					out.writeInt(key.length);
+					out.write(key);
+					out.writeLong(entry.getValue().getExpires());
+					out.writeInt(entry.getValue().getValue().intValue());
+				}
+			} finally {
+				out.close();
+			}
+			if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+				throw new IOException("Unable to replace " + file);
+			}
+		} catch (IOException e) {
+			throw new KettleException("Unable to write suppression window file " + file, e);
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin.utils;
+
+/**
+ * Paces the bytes sent by several threads to a shared rate.
+ *
+ * Every call reserves the time its bytes take at the configured rate on a
+ * virtual clock, and sleeps until its reservation starts. Up to one second
+ * of unused rate is kept as credit, so short idle gaps do not slow down the
+ * next burst.
+ */
+public class BandwidthLimiter {
+
+	private static final long SECOND = 1000000000L;
+
+	private final long bytesPerSecond;
+	private long next;
+
+	/**
+	 * @param bytesPerSecond the maximum rate, shared by every caller
+	 */
+	public BandwidthLimiter(long bytesPerSecond) {
+		this.bytesPerSecond = bytesPerSecond;
+		this.next = System.nanoTime() - SECOND;
+	}
+
+	/**
+	 * Waits until the given number of bytes may be sent.
+	 */
+	public void acquire(int bytes) throws InterruptedException {
+		long wait;
+		synchronized (this) {
+			long now = System.nanoTime();
+			next = Math.max(next, now - SECOND) + bytes * SECOND / bytesPerSecond;
+			wait = next - now;
+		}
+		if (wait > 0) {
+			Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+		}
+	}
+}
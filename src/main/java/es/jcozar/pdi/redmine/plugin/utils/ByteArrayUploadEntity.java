@@ -0,0 +1,86 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Request body sending a byte array as is, without copying it, in slices
+ * paced by an optional bandwidth limiter.
+ */
+public class ByteArrayUploadEntity extends AbstractHttpEntity {
+
+	private static final int SLICE_SIZE = 64 * 1024;
+
+	private final byte[] content;
+	private final BandwidthLimiter limiter;
+
+	/**
+	 * @param content the bytes to send
+	 * @param limiter the limiter pacing the upload, null for no limit
+	 */
+	public ByteArrayUploadEntity(byte[] content, BandwidthLimiter limiter) {
+		this.content = content;
+		this.limiter = limiter;
+		setContentType(ContentType.APPLICATION_OCTET_STREAM.toString());
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return content.length;
+	}
+
+	public InputStream getContent() throws IOException {
+		return new ByteArrayInputStream(content);
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		for (int offset = 0; offset < content.length; offset += SLICE_SIZE) {
+			int length = Math.min(SLICE_SIZE, content.length - offset);
+			if (limiter != null) {
+				try {
+					limiter.acquire(length);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Upload interrupted");
+				}
+			}
+			out.write(content, offset, length);
+		}
+		out.flush();
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
@@ -0,0 +1,98 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Request body streaming a file from disk through a fixed size buffer, so the
+ * heap used by an upload does not depend on the file size. The bytes written
+ * are paced by an optional bandwidth limiter.
+ */
+public class FileUploadEntity extends AbstractHttpEntity {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+	private final BandwidthLimiter limiter;
+
+	/**
+	 * @param file    the file to send
+	 * @param limiter the limiter pacing the upload, null for no limit
+	 */
+	public FileUploadEntity(File file, BandwidthLimiter limiter) {
+		this.file = file;
+		this.limiter = limiter;
+		setContentType(ContentType.APPLICATION_OCTET_STREAM.toString());
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return file.length();
+	}
+
+	public InputStream getContent() throws IOException {
+		return new FileInputStream(file);
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			int read;
+			while ((read = channel.read(buffer)) != -1) {
+				if (limiter != null) {
+					try {
+						limiter.acquire(read);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("Upload of " + file + " interrupted");
+					}
+				}
+				out.write(buffer.array(), 0, read);
+				buffer.clear();
+			}
+			out.flush();
+		} finally {
+			in.close();
+		}
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
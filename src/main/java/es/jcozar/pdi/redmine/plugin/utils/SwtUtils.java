@@ -1,6 +1,7 @@
 package es.jcozar.pdi.redmine.plugin.utils;
 
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
 import org.eclipse.swt.custom.CTabFolder;
 import org.eclipse.swt.custom.CTabItem;
 import org.eclipse.swt.layout.FormAttachment;
@@ -12,7 +13,9 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.pentaho.di.core.Const;
+import org.pentaho.di.core.variables.VariableSpace;
 import org.pentaho.di.ui.core.PropsUI;
+import org.pentaho.di.ui.core.widget.ComboVar;
 import org.pentaho.di.ui.core.widget.LabelText;
 
 public class SwtUtils {
@@ -95,4 +98,50 @@ public class SwtUtils {
 	    
 	    return result;
 	}
+	
+	public static CCombo addLabelCombo(Composite parent, String label, String[] items, Control top) {
+		
+		addLabel(parent, label, top);
+		
+		CCombo result = new CCombo( parent, SWT.BORDER | SWT.READ_ONLY );
+		result.setItems( items );
+		FormData formData = new FormData();
+		formData.left = new FormAttachment( Const.MIDDLE_PCT, 0 );
+		formData.top = new FormAttachment( top, Const.MARGIN );
+		formData.right = new FormAttachment( 100, 0 );
+		result.setLayoutData( formData );
+		PropsUI.getInstance().setLook(result);
+		
+		return result;
+	}
+	
+	public static ComboVar addLabelComboVar(VariableSpace space, Composite parent, String label, Control top) {
+		
+		addLabel(parent, label, top);
+		
+		ComboVar result = new ComboVar( space, parent, SWT.BORDER | SWT.READ_ONLY );
+		result.setEditable( true );
+		FormData formData = new FormData();
+		formData.left = new FormAttachment( Const.MIDDLE_PCT, 0 );
+		formData.top = new FormAttachment( top, Const.MARGIN );
+		formData.right = new FormAttachment( 100, 0 );
+		result.setLayoutData( formData );
+		PropsUI.getInstance().setLook(result);
+		
+		return result;
+	}
+	
+	private static Label addLabel(Composite parent, String label, Control top) {
+		
+		Label result = new Label( parent, SWT.RIGHT );
+		result.setText( label );
+		FormData formData = new FormData();
+		formData.left = new FormAttachment( 0, 0 );
+		formData.top = new FormAttachment( top, Const.MARGIN );
+		formData.right = new FormAttachment( Const.MIDDLE_PCT, -Const.MARGIN );
+		result.setLayoutData( formData );
+		PropsUI.getInstance().setLook(result);
+		
+		return result;
+	}
 }
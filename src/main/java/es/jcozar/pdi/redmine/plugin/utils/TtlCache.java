@@ -0,0 +1,145 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache whose entries expire a fixed time after they are
+ * written.
+ *
+ * Expiry is lazy: expired entries are dropped when read, and every write drops
+ * the expired entries at the head of the map. In insertion order the head is
+ * always the entry closest to expiry, so the scan stops at the first live
+ * entry. With access order the cache also behaves as an LRU. When the cache
+ * is full the eldest entry is evicted.
+ */
+public class TtlCache<K, V> {
+
+	private final long ttl;
+	private final LinkedHashMap<K, Entry<V>> entries;
+
+	/**
+	 * A cached value and the time it expires at.
+	 */
+	public static class Entry<V> {
+
+		private final V value;
+		private final long expires;
+
+		Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+
+		public V getValue() {
+			return value;
+		}
+
+		public long getExpires() {
+			return expires;
+		}
+	}
+
+	/**
+	 * @param ttl         time to live of the entries, in milliseconds
+	 * @param maxSize     maximum number of entries kept
+	 * @param accessOrder true to evict the least recently read entry instead of
+	 *                    the eldest written one
+	 */
+	public TtlCache(long ttl, final int maxSize, boolean accessOrder) {
+		this.ttl = ttl;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, accessOrder) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, TtlCache.Entry<V>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the live value for the key, or null if absent or expired
+	 */
+	public synchronized V get(K key, long now) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expires <= now) {
+			entries.remove(key);
+			return null;
+		}
+		return entry.value;
+	}
+
+	/**
+	 * Stores the value, expiring ttl milliseconds from now.
+	 */
+	public synchronized void put(K key, V value, long now) {
+		put(key, value, now, now + ttl);
+	}
+
+	/**
+	 * Stores the value with an explicit expiry time, used when restoring a
+	 * saved cache.
+	 */
+	public synchronized void put(K key, V value, long now, long expires) {
+		if (expires <= now) {
+			return;
+		}
+		// re-inserting keeps the insertion order equal to the expiry order
+		entries.remove(key);
+		entries.put(key, new Entry<V>(value, expires));
+		expire(now);
+	}
+
+	public synchronized void remove(K key) {
+		entries.remove(key);
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return a copy of the live entries, for persisting the cache
+	 */
+	public synchronized Map<K, Entry<V>> snapshot(long now) {
+		expire(now);
+		return new LinkedHashMap<K, Entry<V>>(entries);
+	}
+
+	private void expire(long now) {
+		Iterator<Entry<V>> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().expires > now) {
+				break;
+			}
+			iterator.remove();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+/**
+ * Writes plan files and reads them back.
+ */
+public class ChangePlanTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RowMetaInterface rowMeta;
+	private File file;
+
+	@BeforeClass
+	public static void setUpClass() throws KettleException {
+		KettleClientEnvironment.init();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		rowMeta = new RowMeta();
+		rowMeta.addValueMeta(new ValueMetaString("subject"));
+		rowMeta.addValueMeta(new ValueMetaInteger("priority"));
+		file = new File(folder.getRoot(), "plans/run.plan");
+	}
+
+	private void writePlan() throws Exception {
+		ChangePlan.Writer writer = new ChangePlan.Writer(file, rowMeta);
+		try {
+			writer.write(new ChangePlan.Entry(ChangePlan.CREATE, 0, "{\"subject\":\"Disk full\"}",
+					new Object[] { "Disk full", Long.valueOf(3) }));
+			writer.write(new ChangePlan.Entry(ChangePlan.UPDATE, 42, "{\"description\":\"\u00d1and\u00fa\"}",
+					new Object[] { "Printer", null }));
+			writer.write(new ChangePlan.Entry(ChangePlan.SKIP, 7, null, new Object[] { "Printer", Long.valueOf(1) }));
+			assertEquals(3, writer.getWritten());
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void readsBackEveryRecordInOrder() throws Exception {
+		writePlan();
+
+		ChangePlan.Reader reader = new ChangePlan.Reader(file);
+		try {
+			assertArrayEquals(new String[] { "subject", "priority" }, reader.getRowMeta().getFieldNames());
+
+			ChangePlan.Entry entry = reader.next();
+			assertEquals(ChangePlan.CREATE, entry.getAction());
+			assertEquals(0, entry.getIssueId());
+			assertEquals("{\"subject\":\"Disk full\"}", entry.getPayload());
+			assertEquals("Disk full", entry.getRow()[0]);
+			assertEquals(Long.valueOf(3), entry.getRow()[1]);
+
+			entry = reader.next();
+			assertEquals(ChangePlan.UPDATE, entry.getAction());
+			assertEquals(42, entry.getIssueId());
+			assertEquals("{\"description\":\"\u00d1and\u00fa\"}", entry.getPayload());
+			assertNull(entry.getRow()[1]);
+
+			entry = reader.next();
+			assertEquals(ChangePlan.SKIP, entry.getAction());
+			assertNull(entry.getPayload());
+
+			assertNull(reader.next());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void namesTheActions() {
+		assertEquals("create", ChangePlan.getActionName(ChangePlan.CREATE));
+		assertEquals("update", ChangePlan.getActionName(ChangePlan.UPDATE));
+		assertEquals("skip", ChangePlan.getActionName(ChangePlan.SKIP));
+		assertEquals("conflict", ChangePlan.getActionName(ChangePlan.CONFLICT));
+	}
+
+	@Test
+	public void failsOnATruncatedRecord() throws Exception {
+		writePlan();
+		RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+		try {
+			truncated.setLength(file.length() - 3);
+		} finally {
+			truncated.close();
+		}
+
+		ChangePlan.Reader reader = new ChangePlan.Reader(file);
+		try {
+			reader.next();
+			reader.next();
+			reader.next();
+			fail();
+		} catch (KettleException e) {
+			// the last record is incomplete
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test(expected = KettleException.class)
+	public void rejectsAFileThatIsNotAPlan() throws Exception {
+		FileOutputStream out = new FileOutputStream(folder.newFile("other.plan"));
+		try {
+			out.write("RDL1 not a plan".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		new ChangePlan.Reader(new File(folder.getRoot(), "other.plan"));
+	}
+}
@@ -0,0 +1,191 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.KettleClientEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import com.taskadapter.redmineapi.NotFoundException;
+import com.taskadapter.redmineapi.RedmineTransportException;
+
+/**
+ * Spools failed rows and reads them back.
+ */
+public class DeadLetterSpoolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private RowMetaInterface rowMeta;
+	private File file;
+
+	@BeforeClass
+	public static void setUpClass() throws KettleException {
+		KettleClientEnvironment.init();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		rowMeta = new RowMeta();
+		rowMeta.addValueMeta(new ValueMetaString("subject"));
+		rowMeta.addValueMeta(new ValueMetaInteger("priority"));
+		file = new File(folder.getRoot(), "spool/failed.rdl");
+	}
+
+	private void spool(Object[]... rows) throws Exception {
+		DeadLetterSpool spool = new DeadLetterSpool(file, rowMeta);
+		try {
+			for (int i = 0; i < rows.length; i++) {
+				spool.append(rows[i], new RedmineTransportException("timeout " + i), i + 1);
+			}
+			assertEquals(rows.length, spool.getWritten());
+		} finally {
+			spool.close();
+		}
+	}
+
+	private List<DeadLetterSpool.Entry> readAll() throws Exception {
+		List<DeadLetterSpool.Entry> entries = new ArrayList<DeadLetterSpool.Entry>();
+		DeadLetterSpool.Reader reader = new DeadLetterSpool.Reader(file);
+		try {
+			DeadLetterSpool.Entry entry;
+			while ((entry = reader.next()) != null) {
+				entries.add(entry);
+			}
+		} finally {
+			reader.close();
+		}
+		return entries;
+	}
+
+	private void truncate(long length) throws Exception {
+		RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+		try {
+			truncated.setLength(length);
+		} finally {
+			truncated.close();
+		}
+	}
+
+	@Test
+	public void readsBackTheRowsWithTheirFailure() throws Exception {
+		spool(new Object[] { "Disk full", Long.valueOf(3) }, new Object[] { "Printer", null });
+
+		DeadLetterSpool.Reader reader = new DeadLetterSpool.Reader(file);
+		try {
+			assertArrayEquals(new String[] { "subject", "priority" }, reader.getRowMeta().getFieldNames());
+		} finally {
+			reader.close();
+		}
+		List<DeadLetterSpool.Entry> entries = readAll();
+		assertEquals(2, entries.size());
+		assertEquals(1, entries.get(0).getAttempts());
+		assertEquals(RedmineTransportException.class.getName(), entries.get(0).getFailureClass());
+		assertEquals("timeout 0", entries.get(0).getMessage());
+		assertEquals("Disk full", entries.get(0).getRow()[0]);
+		assertEquals(Long.valueOf(3), entries.get(0).getRow()[1]);
+		assertEquals(2, entries.get(1).getAttempts());
+		assertNull(entries.get(1).getRow()[1]);
+	}
+
+	@Test
+	public void keepsTheRowAsItWasWhenSpooled() throws Exception {
+		Object[] row = { "Disk full", Long.valueOf(3) };
+		DeadLetterSpool spool = new DeadLetterSpool(file, rowMeta);
+		try {
+			spool.append(row, new NotFoundException("gone"), 1);
+			row[0] = "changed";
+		} finally {
+			spool.close();
+		}
+
+		assertEquals("Disk full", readAll().get(0).getRow()[0]);
+	}
+
+	@Test
+	public void appendsToAnExistingSpool() throws Exception {
+		spool(new Object[] { "Disk full", Long.valueOf(3) });
+		spool(new Object[] { "Printer", Long.valueOf(1) }, new Object[] { "Network", Long.valueOf(2) });
+
+		List<DeadLetterSpool.Entry> entries = readAll();
+		assertEquals(3, entries.size());
+		assertEquals("Disk full", entries.get(0).getRow()[0]);
+		assertEquals("Network", entries.get(2).getRow()[0]);
+	}
+
+	@Test(expected = KettleException.class)
+	public void rejectsAnExistingSpoolWithAnotherLayout() throws Exception {
+		spool(new Object[] { "Disk full", Long.valueOf(3) });
+
+		RowMetaInterface other = new RowMeta();
+		other.addValueMeta(new ValueMetaString("subject"));
+		new DeadLetterSpool(file, other);
+	}
+
+	@Test
+	public void failsOnARecordCutInItsRow() throws Exception {
+		spool(new Object[] { "Disk full", Long.valueOf(3) }, new Object[] { "Printer", Long.valueOf(1) });
+		truncate(file.length() - 3);
+
+		try {
+			readAll();
+			fail();
+		} catch (KettleException e) {
+			// the second record is incomplete
+		}
+	}
+
+	@Test
+	public void failsOnARecordCutInItsAttemptCount() throws Exception {
+		spool(new Object[] { "Disk full", Long.valueOf(3) });
+		long first = file.length();
+		spool(new Object[] { "Printer", Long.valueOf(1) });
+		truncate(first + 2);
+
+		try {
+			readAll();
+			fail();
+		} catch (KettleException e) {
+			// only two bytes of the second record are left
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.pentaho.di.core.exception.KettleException;
+
+/**
+ * Orders issue positions and keeps them between runs.
+ */
+public class IssueCheckpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void ordersByTheUpdateTime() {
+		IssueCheckpoint earlier = new IssueCheckpoint("2018-03-01T09:59:59Z", 90);
+		IssueCheckpoint later = new IssueCheckpoint("2018-03-01T10:00:00Z", 12);
+
+		assertTrue(earlier.compareTo(later) < 0);
+		assertTrue(later.compareTo(earlier) > 0);
+	}
+
+	@Test
+	public void breaksTiesOnTheUpdateTimeByIssueId() {
+		IssueCheckpoint first = new IssueCheckpoint("2018-03-01T10:00:00Z", 12);
+		IssueCheckpoint second = new IssueCheckpoint("2018-03-01T10:00:00Z", 90);
+
+		assertTrue(first.compareTo(second) < 0);
+		assertTrue(second.compareTo(first) > 0);
+		assertEquals(0, first.compareTo(new IssueCheckpoint("2018-03-01T10:00:00Z", 12)));
+		assertSame(second, IssueCheckpoint.max(first, second));
+		assertSame(second, IssueCheckpoint.max(second, first));
+	}
+
+	@Test
+	public void takesTheMaximumOfMissingPositions() {
+		IssueCheckpoint position = new IssueCheckpoint("2018-03-01T10:00:00Z", 12);
+
+		assertSame(position, IssueCheckpoint.max(null, position));
+		assertSame(position, IssueCheckpoint.max(position, null));
+		assertNull(IssueCheckpoint.max(null, null));
+	}
+
+	@Test
+	public void savesAndLoadsThePosition() throws Exception {
+		File file = new File(folder.getRoot(), "state/issues.checkpoint");
+		new IssueCheckpoint("2018-03-01T10:00:00Z", 12).save(file);
+		new IssueCheckpoint("2018-03-02T08:30:00Z", 7).save(file);
+
+		IssueCheckpoint loaded = IssueCheckpoint.load(file);
+		assertEquals("2018-03-02T08:30:00Z", loaded.getUpdatedOn());
+		assertEquals(7, loaded.getId());
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+	}
+
+	@Test
+	public void loadsNothingWithoutAFile() throws Exception {
+		assertNull(IssueCheckpoint.load(new File(folder.getRoot(), "missing.checkpoint")));
+	}
+
+	@Test(expected = KettleException.class)
+	public void rejectsAFileThatIsNotACheckpoint() throws Exception {
+		File file = folder.newFile("other.checkpoint");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write("RPL1 not a checkpoint".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		IssueCheckpoint.load(file);
+	}
+}
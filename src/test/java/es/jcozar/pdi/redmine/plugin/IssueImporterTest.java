@@ -0,0 +1,302 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.taskadapter.redmineapi.RedmineAuthenticationException;
+import com.taskadapter.redmineapi.RedmineFormatException;
+import com.taskadapter.redmineapi.RedmineTransportException;
+import com.taskadapter.redmineapi.bean.IssueFactory;
+
+/**
+ * Runs the CSV import against a local stand-in of the Redmine import screens.
+ */
+public class IssueImporterTest {
+
+	private static final String LOGIN_PAGE = "<form><input type=\"hidden\" name=\"authenticity_token\" value=\"login&amp;token\" /></form>";
+	private static final String NEW_IMPORT_PAGE = "<form><input name=\"authenticity_token\" type=\"hidden\" value=\"import-token\" /></form>";
+	private static final String RESULT_PAGE = "<table class=\"list\"><tbody>"
+			+ "<tr><td>2</td><td>Subject cannot be blank &amp; <b>more</b></td></tr>"
+			+ "<tr><td> 3 </td><td>\n  Category is not included in the list\n</td></tr>"
+			+ "</tbody></table>";
+
+	/**
+	 * A request received by the stand-in.
+	 */
+	private static class Received {
+		final String method;
+		final String path;
+		final String cookie;
+		final String contentType;
+		final String body;
+
+		Received(HttpExchange exchange, String body) {
+			this.method = exchange.getRequestMethod();
+			this.path = exchange.getRequestURI().getPath();
+			this.cookie = exchange.getRequestHeaders().getFirst("Cookie");
+			this.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			this.body = body;
+		}
+
+		Map<String, String> form() throws IOException {
+			Map<String, String> form = new LinkedHashMap<String, String>();
+			for (String pair : body.split("&")) {
+				int equals = pair.indexOf('=');
+				form.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+						URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+			}
+			return form;
+		}
+	}
+
+	private HttpServer server;
+	private String url;
+	private List<Received> received = new ArrayList<Received>();
+	private Map<String, String> redirects = new HashMap<String, String>();
+	private Map<String, String> pages = new HashMap<String, String>();
+	private int runSlices = 3;
+	private IssueImporter importer;
+
+	@Before
+	public void setUp() throws Exception {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange);
+			}
+		});
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/redmine";
+
+		pages.put("GET /redmine/login", LOGIN_PAGE);
+		pages.put("GET /redmine/issues/imports/new", NEW_IMPORT_PAGE);
+		pages.put("GET /redmine/imports/42", RESULT_PAGE);
+		redirects.put("POST /redmine/login", "/redmine/my/page");
+		redirects.put("POST /redmine/imports", "/redmine/imports/42/settings");
+		redirects.put("POST /redmine/imports/42/settings", "/redmine/imports/42/mapping");
+		redirects.put("POST /redmine/imports/42/mapping", "/redmine/imports/42/run");
+
+		importer = new IssueImporter(url);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		importer.close();
+		server.stop(0);
+	}
+
+	private void respond(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			body.write(buffer, 0, read);
+		}
+		Received request = new Received(exchange, new String(body.toByteArray(), StandardCharsets.UTF_8));
+		synchronized (received) {
+			received.add(request);
+		}
+
+		String key = request.method + " " + request.path;
+		if ("POST /redmine/login".equals(key)) {
+			exchange.getResponseHeaders().add("Set-Cookie", "_redmine_session=s1; path=/");
+		}
+		if ("POST /redmine/imports/42/run".equals(key)) {
+			// every call imports a slice until the last one
+			redirects.put(key, --runSlices > 0 ? "/redmine/imports/42/run" : "/redmine/imports/42");
+		}
+		String location = redirects.get(key);
+		String page = pages.get(key);
+		if (location != null) {
+			exchange.getResponseHeaders().add("Location", url.substring(0, url.indexOf("/redmine")) + location);
+			exchange.sendResponseHeaders(302, -1);
+		} else if (page != null) {
+			byte[] content = page.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+			exchange.sendResponseHeaders(200, content.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(content);
+			out.close();
+		} else {
+			exchange.sendResponseHeaders(200, -1);
+		}
+		exchange.close();
+	}
+
+	private List<Received> received(String method, String path) {
+		List<Received> matches = new ArrayList<Received>();
+		synchronized (received) {
+			for (Received request : received) {
+				if (request.method.equals(method) && request.path.equals(path)) {
+					matches.add(request);
+				}
+			}
+		}
+		return matches;
+	}
+
+	private void addIssues() throws IOException {
+		importer.add(IssueFactory.createWithSubject("Disk full"), "Hardware", "jsmith");
+		importer.add(IssueFactory.createWithSubject(""), null, null);
+		importer.add(IssueFactory.createWithSubject("Quote \"here\""), "Unknown", null);
+	}
+
+	@Test
+	public void signsInWithTheAuthenticityToken() throws Exception {
+		addIssues();
+		importer.run("admin", "secret", 7, 3);
+
+		Map<String, String> form = received("POST", "/redmine/login").get(0).form();
+		assertEquals("login&token", form.get("authenticity_token"));
+		assertEquals("admin", form.get("username"));
+		assertEquals("secret", form.get("password"));
+
+		// the later steps carry the session and the token of the import form
+		Received settings = received("POST", "/redmine/imports/42/settings").get(0);
+		assertTrue(settings.cookie, settings.cookie.contains("_redmine_session=s1"));
+		assertEquals("import-token", settings.form().get("authenticity_token"));
+	}
+
+	@Test
+	public void uploadsTheRowsAsCsv() throws Exception {
+		addIssues();
+		assertEquals(3, importer.getCount());
+		importer.run("admin", "secret", 7, 3);
+
+		Received upload = received("POST", "/redmine/imports").get(0);
+		assertTrue(upload.contentType, upload.contentType.startsWith("multipart/form-data; boundary="));
+		String boundary = upload.contentType.substring(upload.contentType.indexOf('=') + 1);
+		assertTrue(upload.body.startsWith("--" + boundary + "\r\n"));
+		assertTrue(upload.body.endsWith("\r\n--" + boundary + "--\r\n"));
+		assertTrue(upload.body.contains("name=\"authenticity_token\"\r\n\r\nimport-token\r\n"));
+		assertTrue(upload.body.contains("name=\"type\"\r\n\r\nIssueImport\r\n"));
+		assertTrue(upload.body.contains("name=\"project_id\"\r\n\r\n7\r\n"));
+		assertTrue(upload.body.contains("Content-Type: text/csv\r\n\r\n"
+				+ "\"subject\",\"description\",\"category\",\"assigned_to\"\r\n"
+				+ "\"Disk full\",\"\",\"Hardware\",\"jsmith\"\r\n"
+				+ "\"\",\"\",\"\",\"\"\r\n"
+				+ "\"Quote \"\"here\"\"\",\"\",\"Unknown\",\"\"\r\n"
+				+ "\r\n--" + boundary + "--"));
+	}
+
+	@Test
+	public void sendsTheSettingsAndTheColumnMapping() throws Exception {
+		addIssues();
+		importer.run("admin", "secret", 7, 3);
+
+		Map<String, String> settings = received("POST", "/redmine/imports/42/settings").get(0).form();
+		assertEquals(",", settings.get("import_settings[separator]"));
+		assertEquals("\"", settings.get("import_settings[wrapper]"));
+		assertEquals("UTF-8", settings.get("import_settings[encoding]"));
+
+		Map<String, String> mapping = received("POST", "/redmine/imports/42/mapping").get(0).form();
+		assertEquals("7", mapping.get("import_settings[mapping][project_id]"));
+		assertEquals("value:3", mapping.get("import_settings[mapping][tracker]"));
+		assertEquals("0", mapping.get("import_settings[mapping][subject]"));
+		assertEquals("1", mapping.get("import_settings[mapping][description]"));
+		assertEquals("2", mapping.get("import_settings[mapping][category]"));
+		assertEquals("3", mapping.get("import_settings[mapping][assigned_to]"));
+	}
+
+	@Test
+	public void pollsTheRunUntilTheImportIsFinished() throws Exception {
+		addIssues();
+		importer.run("admin", "secret", 7, 3);
+
+		assertEquals(3, received("POST", "/redmine/imports/42/run").size());
+		assertEquals(1, received("GET", "/redmine/imports/42").size());
+	}
+
+	@Test
+	public void readsTheFailedPositionsFromTheResultPage() throws Exception {
+		addIssues();
+		Map<Integer, String> failures = importer.run("admin", "secret", 7, 3);
+
+		assertEquals(2, failures.size());
+		assertEquals("Subject cannot be blank & more", failures.get(2));
+		assertEquals("Category is not included in the list", failures.get(3));
+	}
+
+	@Test
+	public void reportsNoFailuresForACleanImport() throws Exception {
+		pages.put("GET /redmine/imports/42", "<p>3 issues imported</p>");
+		addIssues();
+
+		assertTrue(importer.run("admin", "secret", 7, 3).isEmpty());
+	}
+
+	@Test
+	public void rejectsAFailedLogin() throws Exception {
+		redirects.put("POST /redmine/login", "/redmine/login?back_url=x");
+		addIssues();
+		try {
+			importer.run("admin", "wrong", 7, 3);
+			fail();
+		} catch (RedmineAuthenticationException e) {
+			assertTrue(received("POST", "/redmine/imports").isEmpty());
+		}
+	}
+
+	@Test(expected = RedmineFormatException.class)
+	public void failsWithoutAnAuthenticityToken() throws Exception {
+		pages.put("GET /redmine/login", "<html>Redmine 3.4</html>");
+		importer.run("admin", "secret", 7, 3);
+	}
+
+	@Test(expected = RedmineFormatException.class)
+	public void failsWhenTheUploadIsNotAnImport() throws Exception {
+		redirects.put("POST /redmine/imports", "/redmine/projects/7");
+		importer.run("admin", "secret", 7, 3);
+	}
+
+	@Test(expected = RedmineTransportException.class)
+	public void failsWhenAStepIsNotAccepted() throws Exception {
+		redirects.remove("POST /redmine/imports/42/mapping");
+		importer.run("admin", "secret", 7, 3);
+	}
+}
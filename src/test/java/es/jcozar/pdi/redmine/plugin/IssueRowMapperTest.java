@@ -0,0 +1,150 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.List;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+import com.taskadapter.redmineapi.RedmineFormatException;
+
+/**
+ * Parses Redmine listings into rows.
+ */
+public class IssueRowMapperTest {
+
+	private static final String[] ATTRIBUTES = { "id", "subject", "status.name", "updated_on", "estimated_hours",
+			"is_private", "due_date", "custom_fields.5", "custom_fields.7" };
+
+	private static InputStream json(String content) {
+		return new ByteArrayInputStream(content.replace('\'', '"').getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Object timestamp(String text) throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.parse(text);
+	}
+
+	@Test
+	public void readsTheBoundAttributesOfEachIssue() throws Exception {
+		IssuePage page = new IssueRowMapper(ATTRIBUTES, ATTRIBUTES.length + 2).readPage(json("{'issues':["
+				+ "{'id':12,'project':{'id':1,'name':'Ops'},'status':{'id':2,'name':'In progress'},"
+				+ "'subject':'Disk full','journals':[{'id':3,'details':[]}],'estimated_hours':1.5,"
+				+ "'is_private':false,'due_date':'2018-03-05','updated_on':'2018-03-01T10:00:00Z'},"
+				+ "{'id':13,'subject':'Printer','estimated_hours':null,'updated_on':'2018-03-02T08:30:00Z'}"
+				+ "],'limit':25,'offset':50,'total_count':52}"), 50);
+
+		assertEquals(50, page.getOffset());
+		assertEquals(52, page.getTotalCount());
+		assertEquals(2, page.getRows().size());
+
+		Object[] row = page.getRows().get(0);
+		assertEquals(ATTRIBUTES.length + 2, row.length);
+		assertEquals(Long.valueOf(12), row[0]);
+		assertEquals("Disk full", row[1]);
+		assertEquals("In progress", row[2]);
+		assertEquals(timestamp("2018-03-01T10:00:00Z"), row[3]);
+		assertEquals(Double.valueOf(1.5), row[4]);
+		assertEquals(Boolean.FALSE, row[5]);
+		assertEquals(new SimpleDateFormat("yyyy-MM-dd").parse("2018-03-05"), row[6]);
+
+		row = page.getRows().get(1);
+		assertEquals("Printer", row[1]);
+		assertNull(row[2]);
+		assertNull(row[4]);
+	}
+
+	@Test
+	public void keepsThePositionOfEachIssue() throws Exception {
+		IssuePage page = new IssueRowMapper(new String[] { "subject" }, 1).readPage(json("{'total_count':2,'issues':["
+				+ "{'updated_on':'2018-03-01T10:00:00Z','subject':'Disk full','id':12},"
+				+ "{'id':13,'updated_on':'2018-03-01T10:00:00Z'}]}"), 0);
+
+		assertEquals(2, page.getPositions().size());
+		assertEquals(0, page.getPositions().get(0).compareTo(new IssueCheckpoint("2018-03-01T10:00:00Z", 12)));
+		assertEquals(0, page.getPositions().get(1).compareTo(new IssueCheckpoint("2018-03-01T10:00:00Z", 13)));
+	}
+
+	@Test
+	public void readsCustomFieldsWhateverTheOrderOfTheirAttributes() throws Exception {
+		IssuePage page = new IssueRowMapper(ATTRIBUTES, ATTRIBUTES.length).readPage(json("{'total_count':1,'issues':[{"
+				+ "'id':12,'updated_on':'2018-03-01T10:00:00Z','custom_fields':["
+				+ "{'value':'High','id':5,'name':'Impact'},"
+				+ "{'id':6,'name':'Unbound','value':'ignored'},"
+				+ "{'name':'Teams','multiple':true,'value':['Ops','Dev'],'id':7}]}]}"), 0);
+
+		Object[] row = page.getRows().get(0);
+		assertEquals("High", row[7]);
+		assertEquals("Ops,Dev", row[8]);
+	}
+
+	@Test
+	public void readsTheDetailsOfEachJournal() throws Exception {
+		IssueRowMapper mapper = new IssueRowMapper(IssueRowMapper.JOURNAL_ATTRIBUTES,
+				IssueRowMapper.JOURNAL_ATTRIBUTES.length);
+		List<Object[]> rows = mapper.readJournals(json("{'issue':{'id':12,'subject':'Disk full','journals':["
+				+ "{'id':3,'notes':'only a note','details':[]},"
+				+ "{'id':4,'details':["
+				+ "{'property':'attr','name':'status_id','old_value':'1','new_value':'2'},"
+				+ "{'property':'cf','name':'5','old_value':null,'new_value':'High'}],"
+				+ "'user':{'id':9,'name':'John Smith'},'created_on':'2018-03-01T10:00:00Z'}]}}"), 12);
+
+		assertEquals(2, rows.size());
+		Object[] row = rows.get(0);
+		assertEquals(Long.valueOf(12), row[0]);
+		assertEquals(Long.valueOf(4), row[1]);
+		assertEquals(Long.valueOf(9), row[2]);
+		assertEquals("John Smith", row[3]);
+		assertEquals(timestamp("2018-03-01T10:00:00Z"), row[4]);
+		assertEquals("attr", row[6]);
+		assertEquals("status_id", row[7]);
+		assertEquals("2", row[9]);
+		assertNull(rows.get(1)[8]);
+		assertEquals("High", rows.get(1)[9]);
+	}
+
+	@Test(expected = RedmineFormatException.class)
+	public void failsWithoutATotalCount() throws Exception {
+		new IssueRowMapper(ATTRIBUTES, ATTRIBUTES.length).readPage(json("{'issues':[]}"), 0);
+	}
+
+	@Test(expected = RedmineFormatException.class)
+	public void failsOnAnIssueWithoutUpdateTime() throws Exception {
+		new IssueRowMapper(ATTRIBUTES, ATTRIBUTES.length).readPage(json("{'total_count':1,'issues':[{'id':12}]}"), 0);
+	}
+
+	@Test(expected = RedmineFormatException.class)
+	public void failsOnAnInvalidNumber() throws Exception {
+		new IssueRowMapper(ATTRIBUTES, ATTRIBUTES.length).readPage(json("{'total_count':1,'issues':["
+				+ "{'id':12,'updated_on':'2018-03-01T10:00:00Z','estimated_hours':'soon'}]}"), 0);
+	}
+}
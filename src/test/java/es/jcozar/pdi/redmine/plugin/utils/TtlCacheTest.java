@@ -0,0 +1,109 @@
+/*! ******************************************************************************
+*
+* Pentaho Data Integration
+*
+* Copyright (C) 2002-2017 by Hitachi Vantara : http://www.pentaho.com
+*
+*******************************************************************************
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with
+* the License. You may obtain a copy of the License at
+*
+*    http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*
+******************************************************************************/
+
+package es.jcozar.pdi.redmine.plugin.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Expires and evicts cached values.
+ */
+public class TtlCacheTest {
+
+	@Test
+	public void expiresTheValuesAfterTheirTtl() {
+		TtlCache<String, Integer> cache = new TtlCache<String, Integer>(1000, 10, false);
+		cache.put("disk", 1, 0);
+
+		assertEquals(Integer.valueOf(1), cache.get("disk", 999));
+		assertNull(cache.get("disk", 1000));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void evictsTheEldestWriteAtMaxKeys() {
+		TtlCache<String, Integer> cache = new TtlCache<String, Integer>(1000, 2, false);
+		cache.put("disk", 1, 0);
+		cache.put("printer", 2, 1);
+		cache.get("disk", 2);
+		cache.put("network", 3, 3);
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get("disk", 4));
+		assertEquals(Integer.valueOf(2), cache.get("printer", 4));
+		assertEquals(Integer.valueOf(3), cache.get("network", 4));
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyReadInAccessOrder() {
+		TtlCache<String, Integer> cache = new TtlCache<String, Integer>(1000, 2, true);
+		cache.put("disk", 1, 0);
+		cache.put("printer", 2, 1);
+		cache.get("disk", 2);
+		cache.put("network", 3, 3);
+
+		assertEquals(2, cache.size());
+		assertEquals(Integer.valueOf(1), cache.get("disk", 4));
+		assertNull(cache.get("printer", 4));
+	}
+
+	@Test
+	public void rewritingAKeyRestartsItsTtl() {
+		TtlCache<String, Integer> cache = new TtlCache<String, Integer>(1000, 2, false);
+		cache.put("disk", 1, 0);
+		cache.put("printer", 2, 100);
+		cache.put("disk", 3, 500);
+
+		assertNull(cache.get("printer", 1200));
+		assertEquals(Integer.valueOf(3), cache.get("disk", 1200));
+	}
+
+	@Test
+	public void ignoresAnExplicitExpiryInThePast() {
+		TtlCache<String, Integer> cache = new TtlCache<String, Integer>(1000, 10, false);
+		cache.put("disk", 1, 500, 500);
+		cache.put("printer", 2, 500, 800);
+
+		assertNull(cache.get("disk", 500));
+		assertEquals(Integer.valueOf(2), cache.get("printer", 700));
+	}
+
+	@Test
+	public void snapshotsOnlyTheLiveEntries() {
+		TtlCache<String, Integer> cache = new TtlCache<String, Integer>(1000, 10, false);
+		cache.put("disk", 1, 0);
+		cache.put("printer", 2, 500);
+		cache.put("network", 3, 900);
+
+		Map<String, TtlCache.Entry<Integer>> snapshot = cache.snapshot(1200);
+		assertEquals(Arrays.asList("printer", "network"), new ArrayList<String>(snapshot.keySet()));
+		assertEquals(1500, snapshot.get("printer").getExpires());
+		assertEquals(Integer.valueOf(3), snapshot.get("network").getValue());
+	}
+}